@@ -0,0 +1,287 @@
+package com.lyit.csd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AccountEngine class hosts many accounts in one JVM. All accounts share one quote provider and
+ * one quote cache, so an account only keeps its portfolio and funds, and a symbol held by thousands
+ * of accounts is fetched once while its quote is fresh.
+ * <p>
+ * Accounts are split between shards by their id and every shard has one worker thread. Work
+ * submitted for an account runs on the worker of its shard, so work of one account runs in order
+ * and accounts of different shards run in parallel. A tick fetches quotes of all symbols held by
+ * any account in one request and revalues the accounts of every shard on its worker. Accounts of
+ * different shards asking for the same symbol at the same time share one fetch.
+ */
+public class AccountEngine implements Closeable {
+
+  public static final int DEFAULT_SHARD_COUNT = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Work done for one account.
+   */
+  @FunctionalInterface
+  public interface AccountTask<T> {
+
+    /**
+     * Runs the work.
+     *
+     * @param user account to work on.
+     * @return result of the work.
+     */
+    T run(User user) throws IOException, InterruptedException;
+  }
+
+  private final QuoteProvider quoteProvider;
+  private final QuoteCache quoteCache;
+  private final Shard[] shards;
+  private final AtomicLong tickCount = new AtomicLong();
+
+
+  /**
+   * Constructor to instantiate an engine with its own quote cache and one shard for every
+   * processor.
+   *
+   * @param quoteProvider source of live quotes of all accounts.
+   */
+  public AccountEngine(QuoteProvider quoteProvider) {
+    this(quoteProvider, new QuoteCache(), DEFAULT_SHARD_COUNT);
+  }
+
+
+  /**
+   * Constructor to instantiate an engine. Fetches of the provider are shared between accounts.
+   *
+   * @param quoteProvider source of live quotes of all accounts.
+   * @param quoteCache    cache of live quotes shared by all accounts.
+   * @param shardCount    number of shards, each with its own worker thread.
+   */
+  public AccountEngine(QuoteProvider quoteProvider, QuoteCache quoteCache, int shardCount) {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("shard count must be at least 1");
+    }
+    this.quoteProvider = quoteProvider instanceof CoalescingQuoteProvider ? quoteProvider
+        : new CoalescingQuoteProvider(quoteProvider);
+    this.quoteCache = quoteCache;
+    this.shards = new Shard[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard("account-shard-" + i);
+    }
+  }
+
+
+  /**
+   * Opens an account with the pre-populated portfolio.
+   *
+   * @param accountId id of the account.
+   * @return the new account.
+   */
+  public User openAccount(String accountId) {
+    return openAccount(accountId, new Portfolio());
+  }
+
+
+  /**
+   * Opens an account with an existing portfolio, for example one recovered from a journal.
+   *
+   * @param accountId id of the account.
+   * @param portfolio portfolio of the account.
+   * @return the new account.
+   */
+  public User openAccount(String accountId, Portfolio portfolio) {
+    User user = new User(quoteProvider, quoteCache, portfolio);
+    if (shardOf(accountId).accounts.putIfAbsent(accountId, user) != null) {
+      throw new IllegalArgumentException("account is already open: " + accountId);
+    }
+    return user;
+  }
+
+
+  /**
+   * Returns an open account.
+   *
+   * @param accountId id of the account.
+   * @return the account or null if it is not open.
+   */
+  public User getAccount(String accountId) {
+    return shardOf(accountId).accounts.get(accountId);
+  }
+
+
+  /**
+   * Closes an account. Work already submitted for it still runs.
+   *
+   * @param accountId id of the account.
+   * @return true if the account was open.
+   */
+  public boolean closeAccount(String accountId) {
+    return shardOf(accountId).accounts.remove(accountId) != null;
+  }
+
+
+  /**
+   * Returns number of open accounts.
+   *
+   * @return number of accounts.
+   */
+  public int getAccountCount() {
+    int count = 0;
+    for (Shard shard : shards) {
+      count += shard.accounts.size();
+    }
+    return count;
+  }
+
+
+  /**
+   * Runs work for an account on the worker of its shard.
+   *
+   * @param accountId id of the account.
+   * @param task      work to run.
+   * @return future completed with the result of the work, or exceptionally with
+   *     IllegalArgumentException if the account is not open or with the exception of the work.
+   */
+  public <T> CompletableFuture<T> submit(String accountId, AccountTask<T> task) {
+    Shard shard = shardOf(accountId);
+    User user = shard.accounts.get(accountId);
+    if (user == null) {
+      return CompletableFuture.failedFuture(
+          new IllegalArgumentException("account is not open: " + accountId));
+    }
+
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return task.run(user);
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CompletionException(e);
+      }
+    }, shard.worker);
+  }
+
+
+  /**
+   * Fetches live quotes of every symbol held by any account in one request, puts them in the
+   * shared cache and updates the value of every account. Accounts are revalued on the workers of
+   * their shards, the tick returns when all of them are.
+   *
+   * @return number of symbols fetched.
+   * @throws IOException          thrown if quotes could not be fetched.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for quotes.
+   */
+  public int tick() throws IOException, InterruptedException {
+    Set<String> symbols = new HashSet<>();
+    for (Shard shard : shards) {
+      for (User user : shard.accounts.values()) {
+        for (String symbol : user.getUserPortfolio().getValuation().getSymbols()) {
+          symbols.add(QuoteCache.normalise(symbol));
+        }
+      }
+    }
+    if (symbols.isEmpty()) {
+      return 0;
+    }
+
+    Map<String, AssetQuote> quotes = quoteProvider.getQuotes(symbols);
+    for (AssetQuote quote : quotes.values()) {
+      quoteCache.put(quote);
+    }
+
+    Collection<AssetQuote> fetched = quotes.values();
+    List<CompletableFuture<Void>> revaluations = new ArrayList<>(shards.length);
+    for (Shard shard : shards) {
+      revaluations.add(CompletableFuture.runAsync(() -> {
+        for (User user : shard.accounts.values()) {
+          user.getUserPortfolio().getValuation().updatePrices(fetched);
+        }
+      }, shard.worker));
+    }
+    CompletableFuture.allOf(revaluations.toArray(new CompletableFuture<?>[0])).join();
+
+    tickCount.incrementAndGet();
+    return symbols.size();
+  }
+
+
+  /**
+   * Stops the workers after the work already submitted.
+   */
+  @Override
+  public void close() {
+    for (Shard shard : shards) {
+      shard.worker.shutdown();
+    }
+    try {
+      for (Shard shard : shards) {
+        shard.worker.awaitTermination(1, TimeUnit.MINUTES);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+  public QuoteProvider getQuoteProvider() {
+    return quoteProvider;
+  }
+
+
+  public QuoteCache getQuoteCache() {
+    return quoteCache;
+  }
+
+
+  public int getShardCount() {
+    return shards.length;
+  }
+
+
+  public long getTickCount() {
+    return tickCount.get();
+  }
+
+
+  /**
+   * Helper method to find the shard of an account.
+   *
+   * @param accountId id of the account.
+   * @return shard the account belongs to.
+   */
+  private Shard shardOf(String accountId) {
+    return shards[Math.floorMod(accountId.hashCode(), shards.length)];
+  }
+
+
+  /**
+   * Accounts of one shard and their worker.
+   */
+  private static final class Shard {
+
+    private final Map<String, User> accounts = new ConcurrentHashMap<>();
+    private final ExecutorService worker;
+
+    private Shard(String name) {
+      worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+
+/**
+ * ApiResponseException is thrown when the finance api answers a request with a status code which
+ * is not a success, so its body is not read as quotes.
+ */
+public class ApiResponseException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int statusCode;
+
+
+  /**
+   * Constructor to instantiate the exception.
+   *
+   * @param statusCode HTTP status code of the response.
+   * @param path       path of the request.
+   */
+  public ApiResponseException(int statusCode, String path) {
+    super("finance api answered " + statusCode + " for " + path);
+    this.statusCode = statusCode;
+  }
+
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+
+  /**
+   * Returns if the same request may succeed later, the api was busy or failed on its side.
+   *
+   * @return true for too many requests and server errors.
+   */
+  public boolean isRetryable() {
+    return statusCode == 429 || statusCode >= 500;
+  }
+}
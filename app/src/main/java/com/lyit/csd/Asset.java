@@ -107,12 +107,12 @@ public class Asset {
     @Override
     public String toString() {
         return "Asset: " +
-                "assetSymbol='" + assetSymbol + '\'' +
-                ", assetFullName='" + assetFullName + '\'' +
-                ", assetType='" + assetType + '\'' +
-                ", timeStamp=" + timeStamp +
-                ", priceBought=" + priceBought +
-                ", amount=" + amount +
+                "assetSymbol='" + getAssetSymbol() + '\'' +
+                ", assetFullName='" + getAssetFullName() + '\'' +
+                ", assetType='" + getAssetType() + '\'' +
+                ", timeStamp=" + getTimeStamp() +
+                ", priceBought=" + getPriceBought() +
+                ", amount=" + getAmount() +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.lyit.csd;
+
+import java.util.List;
+
+/**
+ * AssetLookup class tells which assets of the portfolio one asset name was found as and their live
+ * quotes, or why the name was not found.
+ */
+public class AssetLookup {
+
+  private final String assetName;
+  private final List<String> symbols;
+  private final List<AssetQuote> quotes;
+  private final String failure;
+
+  /**
+   * AssetLookup constructor
+   *
+   * @param assetName name, partial name or symbol asked for
+   * @param symbols   symbols of the portfolio the name was found as
+   * @param quotes    live quotes of the symbols which have one, in order of the symbols
+   * @param failure   reason the name or some of its symbols have no quote, null if all have one
+   */
+  public AssetLookup(String assetName, List<String> symbols, List<AssetQuote> quotes,
+      String failure) {
+    this.assetName = assetName;
+    this.symbols = List.copyOf(symbols);
+    this.quotes = List.copyOf(quotes);
+    this.failure = failure;
+  }
+
+  public String getAssetName() {
+    return assetName;
+  }
+
+  public List<String> getSymbols() {
+    return symbols;
+  }
+
+  public List<AssetQuote> getQuotes() {
+    return quotes;
+  }
+
+  public String getFailure() {
+    return failure;
+  }
+
+  /**
+   * Returns if every symbol of the name has a live quote.
+   *
+   * @return true if the name was found and fully quoted
+   */
+  public boolean isFound() {
+    return failure == null;
+  }
+
+  @Override
+  public String toString() {
+    return assetName + (failure == null ? " found as " + symbols : " not found: " + failure);
+  }
+}
@@ -1,5 +1,6 @@
 package com.lyit.csd;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class AssetQuote {
@@ -45,6 +46,13 @@ public class AssetQuote {
   @JsonProperty("regularMarketPrice")
   private double livePrice;
 
+  /**
+   * True if this is the last known quote, served while the finance API is unavailable.
+   */
+
+  @JsonIgnore
+  private boolean stale;
+
 
   /**
    * Constructor to instantiate AssetQuote object.
@@ -98,5 +106,22 @@ public class AssetQuote {
   }
 
 
+  public boolean isStale() {
+    return stale;
+  }
+
+
+  /**
+   * Returns a copy of this quote marked stale.
+   *
+   * @return stale copy.
+   */
+  AssetQuote asStale() {
+    AssetQuote copy = new AssetQuote(assetSymbol, assetFullName, assetType, timeStamp, livePrice);
+    copy.stale = true;
+    return copy;
+  }
+
+
 
 }
@@ -0,0 +1,30 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+
+/**
+ * CircuitOpenException is thrown when a request to the finance api is not made because recent
+ * requests kept failing, so the caller fails fast instead of waiting for a timeout.
+ */
+public class CircuitOpenException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long retryAfterMillis;
+
+
+  /**
+   * Constructor to instantiate the exception.
+   *
+   * @param retryAfterMillis time until a request is tried again.
+   */
+  public CircuitOpenException(long retryAfterMillis) {
+    super("finance api is unavailable, next request in " + retryAfterMillis + " ms");
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+}
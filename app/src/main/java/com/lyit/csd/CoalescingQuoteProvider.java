@@ -0,0 +1,293 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CoalescingQuoteProvider class shares fetches of the same symbols between callers. A symbol which
+ * is already being fetched for one caller is not requested again for another, the second caller
+ * waits for the fetch in flight and gets its quote. Callers asking for overlapping sets of symbols
+ * only request the symbols nobody is fetching yet. Nothing is kept once a fetch is done, fresh
+ * quotes are served by the QuoteCache.
+ * <p>
+ * A trade lookup does not join a report fetch, which may be waiting behind the quota of a rate
+ * limited provider, it fetches the symbol itself. Report lookups join any fetch. Historic prices
+ * are asked from the underlying provider as they are.
+ */
+public class CoalescingQuoteProvider implements QuoteProvider, HistoryProvider {
+
+  private final QuoteProvider provider;
+  // fetches in flight keyed by upper cased symbol, completed with null for unknown symbols
+  private final Map<String, Fetch> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicLong callCount = new AtomicLong();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong deduplicatedCallCount = new AtomicLong();
+  private final AtomicLong deduplicatedSymbolCount = new AtomicLong();
+
+
+  /**
+   * Constructor to instantiate a provider sharing fetches of another one.
+   *
+   * @param provider source of quotes.
+   */
+  public CoalescingQuoteProvider(QuoteProvider provider) {
+    this.provider = provider;
+  }
+
+
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+      throws IOException, InterruptedException {
+    return getQuotes(symbols, Priority.REPORT);
+  }
+
+
+  /**
+   * Returns live quotes. Symbols nobody is fetching are requested in the calling thread.
+   */
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols, Priority priority)
+      throws IOException, InterruptedException {
+
+    Map<String, CompletableFuture<AssetQuote>> quotes = new LinkedHashMap<>();
+    Map<String, Fetch> own = join(symbols, priority, quotes);
+    if (!own.isEmpty()) {
+      requestCount.incrementAndGet();
+      try {
+        complete(own, provider.getQuotes(own.keySet(), priority), null);
+      } catch (IOException | InterruptedException | RuntimeException | Error e) {
+        complete(own, null, e);
+        throw e;
+      }
+    }
+
+    try {
+      return collect(quotes);
+    } catch (ExecutionException e) {
+      throw ConnectionPort.unwrap(e);
+    }
+  }
+
+
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+    return getQuotesAsync(symbols, Priority.REPORT);
+  }
+
+
+  /**
+   * Returns live quotes without blocking the calling thread. Symbols nobody is fetching are
+   * requested with one asynchronous request.
+   */
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols,
+      Priority priority) {
+
+    Map<String, CompletableFuture<AssetQuote>> quotes = new LinkedHashMap<>();
+    Map<String, Fetch> own = join(symbols, priority, quotes);
+    if (!own.isEmpty()) {
+      requestCount.incrementAndGet();
+      CompletableFuture<Map<String, AssetQuote>> response;
+      try {
+        response = provider.getQuotesAsync(own.keySet(), priority);
+      } catch (RuntimeException e) {
+        response = CompletableFuture.failedFuture(e);
+      }
+      response.whenComplete((fetched, error) -> complete(own, fetched, error));
+    }
+
+    return CompletableFuture.allOf(quotes.values().toArray(new CompletableFuture<?>[0]))
+        .thenApply(done -> {
+          try {
+            return collect(quotes);
+          } catch (ExecutionException | InterruptedException e) {
+            // every future is done already
+            throw new IllegalStateException(e);
+          }
+        });
+  }
+
+
+  /**
+   * Returns historic prices of the underlying provider. Empty if it has no historic prices.
+   */
+  @Override
+  public List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+      throws IOException, InterruptedException {
+
+    if (!(provider instanceof HistoryProvider)) {
+      return List.of();
+    }
+    return ((HistoryProvider) provider).getHistory(symbol, interval, start, end);
+  }
+
+
+  /**
+   * Returns number of calls for quotes.
+   *
+   * @return number of calls.
+   */
+  public long getCallCount() {
+    return callCount.get();
+  }
+
+
+  /**
+   * Returns number of requests made to the underlying provider.
+   *
+   * @return number of requests.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+
+  /**
+   * Returns number of calls which made no request because all their symbols were being fetched.
+   *
+   * @return number of calls.
+   */
+  public long getDeduplicatedCallCount() {
+    return deduplicatedCallCount.get();
+  }
+
+
+  /**
+   * Returns number of symbols which were not requested because they were being fetched.
+   *
+   * @return number of symbols.
+   */
+  public long getDeduplicatedSymbolCount() {
+    return deduplicatedSymbolCount.get();
+  }
+
+
+  /**
+   * Returns number of symbols being fetched at this moment.
+   *
+   * @return number of symbols.
+   */
+  public int getInFlightCount() {
+    return inFlight.size();
+  }
+
+
+  public QuoteProvider getProvider() {
+    return provider;
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to join fetches in flight and start new ones for the other symbols.
+   *
+   * @param symbols  asset symbols.
+   * @param priority what the quotes are needed for.
+   * @param quotes   map the future of every symbol is put in, in request order.
+   * @return fetches of the symbols the caller has to make, keyed by upper cased symbol.
+   */
+  private Map<String, Fetch> join(Collection<String> symbols, Priority priority,
+      Map<String, CompletableFuture<AssetQuote>> quotes) {
+
+    callCount.incrementAndGet();
+    Set<String> requested = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      String normalised = QuoteCache.normalise(symbol);
+      if (!normalised.isEmpty()) {
+        requested.add(normalised);
+      }
+    }
+
+    Map<String, Fetch> own = new LinkedHashMap<>();
+    for (String symbol : requested) {
+      Fetch fetch = new Fetch(priority);
+      Fetch running = inFlight.putIfAbsent(symbol, fetch);
+      if (running != null && (priority == Priority.REPORT || running.priority == Priority.TRADE)) {
+        deduplicatedSymbolCount.incrementAndGet();
+        quotes.put(symbol, running.quote);
+      } else {
+        // a trade fetching past a report fetch is not in the map for others to join
+        own.put(symbol, fetch);
+        quotes.put(symbol, fetch.quote);
+      }
+    }
+    if (own.isEmpty() && !requested.isEmpty()) {
+      deduplicatedCallCount.incrementAndGet();
+    }
+    return own;
+  }
+
+
+  /**
+   * Helper method to end own fetches. Futures leave the map first, so a caller coming after the
+   * fetch starts a new one instead of getting a quote which may be old.
+   *
+   * @param own     fetches of the symbols.
+   * @param fetched quotes keyed by symbol, null if the fetch failed.
+   * @param error   failure of the fetch, null if it succeeded.
+   */
+  private void complete(Map<String, Fetch> own, Map<String, AssetQuote> fetched,
+      Throwable error) {
+
+    Map<String, AssetQuote> bySymbol = new LinkedHashMap<>();
+    if (fetched != null) {
+      for (AssetQuote quote : fetched.values()) {
+        bySymbol.put(QuoteCache.normalise(quote.getAssetSymbol()), quote);
+      }
+    }
+
+    for (Map.Entry<String, Fetch> entry : own.entrySet()) {
+      inFlight.remove(entry.getKey(), entry.getValue());
+      if (error != null) {
+        entry.getValue().quote.completeExceptionally(error);
+      } else {
+        entry.getValue().quote.complete(bySymbol.get(entry.getKey()));
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to wait for the quotes of all symbols.
+   *
+   * @param quotes futures keyed by upper cased symbol in request order.
+   * @return quotes keyed by asset symbol in request order, unknown symbols are missing.
+   */
+  private static Map<String, AssetQuote> collect(Map<String, CompletableFuture<AssetQuote>> quotes)
+      throws ExecutionException, InterruptedException {
+    Map<String, AssetQuote> result = new LinkedHashMap<>();
+    for (CompletableFuture<AssetQuote> future : quotes.values()) {
+      AssetQuote quote = future.get();
+      if (quote != null) {
+        result.put(quote.getAssetSymbol(), quote);
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Fetch of one symbol in flight.
+   */
+  private static final class Fetch {
+
+    private final Priority priority;
+    private final CompletableFuture<AssetQuote> quote = new CompletableFuture<>();
+
+    private Fetch(Priority priority) {
+      this.priority = priority;
+    }
+  }
+}
@@ -1,16 +1,35 @@
 package com.lyit.csd;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import static com.fasterxml.jackson.core.JsonToken.END_OBJECT;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.io.InputStream;
+import java.net.URLEncoder;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -18,20 +37,53 @@ import java.util.List;
  */
 public class ConnectionPort {
 
+  /**
+   * Quote endpoint path and the maximum number of symbols it accepts in one request.
+   */
+  public static final String QUOTE_ENDPOINT = "v6/finance/quote";
+  public static final int MAX_SYMBOLS_PER_REQUEST = 10;
+
+  /**
+   * Chart endpoint path, the symbol follows it.
+   */
+  public static final String CHART_ENDPOINT = "v8/finance/chart/";
+
+  // configured once and shared, both are thread safe
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  private static final ObjectReader QUOTE_READER = OBJECT_MAPPER.readerFor(AssetQuote.class);
+  private static final AtomicLong SKIPPED_QUOTES = new AtomicLong();
+
   private String request;
   private String key;
+  private HttpTransport transport;
   private List<AssetQuote> assetQuote;
 
 
   /**
-   * Constructor to instantiate ConnectionPort object.
+   * Constructor to instantiate ConnectionPort object. Request is sent through the shared
+   * transport.
    *
    * @param request String value with address.
    * @param key     String value with user api key.
    */
   public ConnectionPort(String request, String key) throws IOException, InterruptedException {
+    this(request, key, HttpTransport.getDefault());
+  }
+
+
+  /**
+   * Constructor to instantiate ConnectionPort object which sends request through given transport.
+   *
+   * @param request   String value with address.
+   * @param key       String value with user api key.
+   * @param transport transport used to send the request.
+   */
+  public ConnectionPort(String request, String key, HttpTransport transport)
+      throws IOException, InterruptedException {
     this.request = request;
     this.key = key;
+    this.transport = transport;
     assetQuote = new ArrayList<>();
     makeRequest(request);
   }
@@ -55,45 +107,465 @@ public class ConnectionPort {
    */
   private void makeRequest(String requestString) throws IOException, InterruptedException {
 
-    // Code reference - yahoo finance api tutorial. Line 55 - 61
-    HttpRequest userRequest = HttpRequest.newBuilder()
-        .uri(URI.create("https://yfapi.net/" + requestString))
-        .header("x-api-key", key)
-        .method("GET", HttpRequest.BodyPublishers.noBody())
-        .build();
-    HttpResponse<String> response = HttpClient.newHttpClient()
-        .send(userRequest, HttpResponse.BodyHandlers.ofString());
+    // Code reference - yahoo finance api tutorial
+    HttpRequest userRequest = transport.newGetRequest(requestString, key);
+    HttpResponse<InputStream> response = transport
+        .send(userRequest, HttpResponse.BodyHandlers.ofInputStream());
 
-    // call mapping method
-    mapRequiredFields(response.body());
+    // call mapping method, body is decoded while it is read
+    try (InputStream body = response.body()) {
+      checkStatus(response);
+      mapRequiredFields(body);
+    }
   }
 
   /**
    * Method to map chosen values to AssetQuote object fields.
    *
-   * @param responseBody api response body JSON formatted string
+   * @param responseBody api response body with JSON content
    */
-  private void mapRequiredFields(String responseBody) throws IOException, InterruptedException {
+  private void mapRequiredFields(InputStream responseBody) throws IOException {
 
-    ObjectMapper objectMapper = new ObjectMapper();
-    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    if (request.contains(QUOTE_ENDPOINT)) {
+      assetQuote.addAll(parseQuotes(responseBody));
+    }
+  }
 
-    JsonNode node = objectMapper.readTree(responseBody);
 
-    if (request.contains("v6/finance/quote")) {
-      if (node.has("quoteResponse") && node.get("quoteResponse").has("result")) {
-        node = node.get("quoteResponse").get("result");
-        for (int i = 0; i < node.size(); i++) {
-          String object = node.get(i).toString();
-          try {
-            AssetQuote quote = objectMapper.readValue(object, AssetQuote.class);
-            assetQuote.add(quote);
-          } catch (JsonProcessingException e) {
-            e.printStackTrace();
+  /**
+   * Requests live quotes for any number of symbols. Symbols are split into chunks the quote
+   * endpoint accepts in one request and all chunks are requested at the same time, so the whole
+   * batch costs one round trip per chunk instead of one per symbol.
+   *
+   * @param symbols   asset symbols, duplicates and letter case are ignored.
+   * @param key       user api key.
+   * @param transport transport used to send the requests.
+   * @return quotes keyed by asset symbol in request order. Symbols the api does not know are
+   *     missing from the map.
+   * @throws IOException          thrown if any of the requests failed.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for responses.
+   */
+  public static Map<String, AssetQuote> requestQuotes(Collection<String> symbols, String key,
+      HttpTransport transport) throws IOException, InterruptedException {
+
+    CompletableFuture<List<AssetQuote>> response = requestQuotesAsync(symbols, key, transport);
+    try {
+      return toSymbolMap(response.get());
+    } catch (ExecutionException e) {
+      throw unwrap(e);
+    } catch (InterruptedException e) {
+      response.cancel(true);
+      throw e;
+    }
+  }
+
+
+  /**
+   * Requests live quotes for any number of symbols without blocking the calling thread. Symbols
+   * are split into chunks the quote endpoint accepts in one request and all chunks are sent at the
+   * same time, so the slowest chunk decides when the future is completed.
+   *
+   * @param symbols   asset symbols, duplicates and letter case are ignored.
+   * @param key       user api key.
+   * @param transport transport used to send the requests.
+   * @return future completed with the quotes in request order, or completed exceptionally with
+   *     IOException if any of the requests failed.
+   */
+  public static CompletableFuture<List<AssetQuote>> requestQuotesAsync(Collection<String> symbols,
+      String key, HttpTransport transport) {
+
+    List<CompletableFuture<List<AssetQuote>>> responses = new ArrayList<>();
+    for (List<String> chunk : chunkSymbols(symbols)) {
+      HttpRequest chunkRequest = transport.newGetRequest(quoteRequestString(chunk), key);
+      // body is collected as bytes, a blocking stream would hold a client thread while waiting
+      responses.add(transport.sendAsync(chunkRequest, HttpResponse.BodyHandlers.ofByteArray())
+          .thenApply(response -> {
+            try {
+              checkStatus(response);
+              return parseQuotes(new ByteArrayInputStream(response.body()));
+            } catch (IOException e) {
+              throw new CompletionException(e);
+            }
+          }));
+    }
+
+    return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0]))
+        .thenApply(done -> {
+          List<AssetQuote> quotes = new ArrayList<>();
+          for (CompletableFuture<List<AssetQuote>> response : responses) {
+            quotes.addAll(response.join());
+          }
+          return quotes;
+        });
+  }
+
+
+  /**
+   * Requests historic prices of one symbol from the chart endpoint. The body is decoded while it is
+   * read.
+   *
+   * @param symbol    asset symbol.
+   * @param interval  time between points, one of 1m 5m 15m 1d 1wk 1mo.
+   * @param start     UNIX timestamp of the first point, inclusive.
+   * @param end       UNIX timestamp after the last point, exclusive.
+   * @param key       user api key.
+   * @param transport transport used to send the request.
+   * @return points in time order.
+   * @throws IOException          thrown if the request failed.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for the response.
+   */
+  public static List<AssetQuote> requestHistory(String symbol, String interval, long start,
+      long end, String key, HttpTransport transport) throws IOException, InterruptedException {
+
+    HttpRequest request = transport.newGetRequest(
+        chartRequestString(symbol, interval, start, end), key);
+    HttpResponse<InputStream> response = transport
+        .send(request, HttpResponse.BodyHandlers.ofInputStream());
+    try (InputStream body = response.body()) {
+      checkStatus(response);
+      return parseChart(body);
+    }
+  }
+
+
+  /**
+   * Maps quotes by their asset symbol.
+   *
+   * @param quotes list of quotes.
+   * @return quotes keyed by asset symbol in list order.
+   */
+  public static Map<String, AssetQuote> toSymbolMap(List<AssetQuote> quotes) {
+    Map<String, AssetQuote> result = new LinkedHashMap<>();
+    for (AssetQuote quote : quotes) {
+      result.put(quote.getAssetSymbol(), quote);
+    }
+    return result;
+  }
+
+
+  /**
+   * Returns number of quotes left out of responses because they could not be mapped.
+   *
+   * @return skipped quotes since start.
+   */
+  public static long getSkippedQuoteCount() {
+    return SKIPPED_QUOTES.get();
+  }
+
+
+  /**
+   * Checks that the api answered with success before the body is read.
+   *
+   * @param response api response.
+   * @throws ApiResponseException thrown if the status code is not 2xx.
+   */
+  static void checkStatus(HttpResponse<?> response) throws ApiResponseException {
+    int status = response.statusCode();
+    if (status < 200 || status >= 300) {
+      throw new ApiResponseException(status, response.uri().getPath());
+    }
+  }
+
+
+  /**
+   * Finds the IOException behind failed future.
+   *
+   * @param e exception thrown by future.
+   * @return cause as IOException.
+   */
+  static IOException unwrap(ExecutionException e) {
+    Throwable cause = e.getCause();
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    return new IOException(cause);
+  }
+
+
+  /**
+   * Builds request string for the quote endpoint.
+   *
+   * @param symbols asset symbols to ask for in one request.
+   * @return request string relative to api address.
+   */
+  public static String quoteRequestString(List<String> symbols) {
+    StringJoiner joined = new StringJoiner(",");
+    for (String symbol : symbols) {
+      joined.add(URLEncoder.encode(symbol, StandardCharsets.UTF_8));
+    }
+    return QUOTE_ENDPOINT + "?region=US&lang=en&symbols=" + joined;
+  }
+
+
+  /**
+   * Builds request string for the chart endpoint. The last point the endpoint returns is the one
+   * starting before period2.
+   *
+   * @param symbol   asset symbol.
+   * @param interval time between points.
+   * @param start    UNIX timestamp of the first point, inclusive.
+   * @param end      UNIX timestamp after the last point, exclusive.
+   * @return request string relative to api address.
+   */
+  public static String chartRequestString(String symbol, String interval, long start, long end) {
+    return CHART_ENDPOINT + URLEncoder.encode(symbol.trim().toUpperCase(Locale.ROOT),
+        StandardCharsets.UTF_8) + "?interval=" + URLEncoder.encode(interval, StandardCharsets.UTF_8)
+        + "&period1=" + start + "&period2=" + end;
+  }
+
+
+  /**
+   * Maps chart endpoint response to AssetQuote objects, one for every point with a closing price.
+   * Timestamps and prices are read as streams of numbers without building a tree of the response.
+   *
+   * @param responseBody api response body with JSON content
+   * @return points found in the response in time order
+   * @throws IOException thrown if response is not valid JSON
+   */
+  public static List<AssetQuote> parseChart(InputStream responseBody) throws IOException {
+
+    List<AssetQuote> points = new ArrayList<>();
+    try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(responseBody)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return points;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("chart")) {
+          readChart(parser, points);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return points;
+  }
+
+
+  /**
+   * Maps quote endpoint response to AssetQuote objects. The response is read once as a stream of
+   * tokens and every quote object is bound straight to AssetQuote, without building a tree of the
+   * whole response first.
+   *
+   * @param responseBody api response body with JSON content
+   * @return quotes found in the response
+   * @throws IOException thrown if response is not valid JSON
+   */
+  public static List<AssetQuote> parseQuotes(InputStream responseBody) throws IOException {
+
+    List<AssetQuote> quotes = new ArrayList<>();
+    try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(responseBody)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return quotes;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("quoteResponse")) {
+          readQuoteResponse(parser, quotes);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return quotes;
+  }
+
+
+  /**
+   * Helper method to read result array of quoteResponse object.
+   *
+   * @param parser parser positioned at start of quoteResponse object
+   * @param quotes list the quotes are added to
+   */
+  private static void readQuoteResponse(JsonParser parser, List<AssetQuote> quotes)
+      throws IOException {
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("result")) {
+        parser.skipChildren();
+        continue;
+      }
+
+      JsonStreamContext result = parser.getParsingContext();
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        try {
+          quotes.add(QUOTE_READER.readValue(parser));
+        } catch (JsonMappingException e) {
+          // skip rest of the quote which could not be mapped, its symbol is missing from the result
+          SKIPPED_QUOTES.incrementAndGet();
+          while (parser.getParsingContext() != result || parser.currentToken() != END_OBJECT) {
+            if (parser.nextToken() == null) {
+              throw e;
+            }
+          }
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to read result array of chart object.
+   *
+   * @param parser parser positioned at start of chart object
+   * @param points list the points are added to
+   */
+  private static void readChart(JsonParser parser, List<AssetQuote> points) throws IOException {
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      if (parser.nextToken() != JsonToken.START_ARRAY || !field.equals("result")) {
+        parser.skipChildren();
+        continue;
+      }
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        readChartResult(parser, points);
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to read one series of the chart result. Timestamps and closing prices are two
+   * arrays of the same length, a point without price is null and skipped.
+   *
+   * @param parser parser positioned at start of result object
+   * @param points list the points are added to
+   */
+  private static void readChartResult(JsonParser parser, List<AssetQuote> points)
+      throws IOException {
+
+    String symbol = null;
+    String fullName = null;
+    String type = null;
+    long[] timeStamps = new long[0];
+    double[] closes = new double[0];
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (field.equals("meta") && value == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String metaField = parser.getCurrentName();
+          parser.nextToken();
+          if (metaField.equals("symbol")) {
+            symbol = parser.getValueAsString();
+          } else if (metaField.equals("shortName")) {
+            fullName = parser.getValueAsString();
+          } else if (metaField.equals("instrumentType")) {
+            type = parser.getValueAsString();
+          } else {
+            parser.skipChildren();
           }
         }
+      } else if (field.equals("timestamp") && value == JsonToken.START_ARRAY) {
+        timeStamps = readLongs(parser);
+      } else if (field.equals("indicators") && value == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String indicator = parser.getCurrentName();
+          if (parser.nextToken() != JsonToken.START_ARRAY || !indicator.equals("quote")) {
+            parser.skipChildren();
+            continue;
+          }
+          // only the first quote object holds prices
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              String column = parser.getCurrentName();
+              if (parser.nextToken() == JsonToken.START_ARRAY && column.equals("close")
+                  && closes.length == 0) {
+                closes = readDoubles(parser);
+              } else {
+                parser.skipChildren();
+              }
+            }
+          }
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    for (int i = 0; i < Math.min(timeStamps.length, closes.length); i++) {
+      if (!Double.isNaN(closes[i])) {
+        points.add(new AssetQuote(symbol, fullName != null ? fullName : symbol, type,
+            timeStamps[i], closes[i]));
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to read an array of whole numbers.
+   *
+   * @param parser parser positioned at start of the array
+   * @return numbers of the array
+   */
+  private static long[] readLongs(JsonParser parser) throws IOException {
+    long[] values = new long[64];
+    int size = 0;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
       }
+      values[size++] = parser.getValueAsLong();
+    }
+    return Arrays.copyOf(values, size);
+  }
+
+
+  /**
+   * Helper method to read an array of numbers in which null stands for a missing value.
+   *
+   * @param parser parser positioned at start of the array
+   * @return numbers of the array, NaN for null
+   */
+  private static double[] readDoubles(JsonParser parser) throws IOException {
+    double[] values = new double[64];
+    int size = 0;
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = token == JsonToken.VALUE_NULL ? Double.NaN : parser.getValueAsDouble();
+    }
+    return Arrays.copyOf(values, size);
+  }
+
+
+  /**
+   * Helper method to split symbols into chunks the quote endpoint accepts in one request.
+   *
+   * @param symbols asset symbols
+   * @return list of chunks with unique upper cased symbols
+   */
+  private static List<List<String>> chunkSymbols(Collection<String> symbols) {
+
+    Set<String> unique = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      String trimmed = symbol.trim();
+      if (!trimmed.isEmpty()) {
+        unique.add(trimmed.toUpperCase(Locale.ROOT));
+      }
+    }
+
+    List<List<String>> chunks = new ArrayList<>();
+    List<String> chunk = new ArrayList<>();
+    for (String symbol : unique) {
+      chunk.add(symbol);
+      if (chunk.size() == MAX_SYMBOLS_PER_REQUEST) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
     }
+    return chunks;
   }
 
 
@@ -0,0 +1,119 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+
+/**
+ * HeapSaleHistory class keeps sales as SoldAsset objects in a list in time order. It is the sale
+ * history of a portfolio which is not given one.
+ */
+public class HeapSaleHistory implements SaleHistory {
+
+  private final List<SoldAsset> sales = new ArrayList<>();
+  // number of added sales which moved later sales
+  private int moves;
+
+
+  @Override
+  public void add(SoldAsset sale) {
+    int index = indexAfter(sale.getTimeStamp());
+    if (index < sales.size()) {
+      moves++;
+    }
+    sales.add(index, sale);
+  }
+
+
+  @Override
+  public int size() {
+    return sales.size();
+  }
+
+
+  @Override
+  public SoldAsset get(int index) {
+    return sales.get(index);
+  }
+
+
+  @Override
+  public Cursor cursor(long startTimeStamp, long endTimeStamp) {
+    int from = startTimeStamp > Long.MIN_VALUE ? indexAfter(startTimeStamp - 1) : 0;
+    int to = startTimeStamp <= endTimeStamp ? indexAfter(endTimeStamp) : from;
+    int expectedMoves = moves;
+    return new Cursor() {
+      private int index = from - 1;
+      private SoldAsset sale;
+
+      @Override
+      public boolean next() {
+        if (moves != expectedMoves) {
+          throw new ConcurrentModificationException("an earlier sale was added");
+        }
+        if (index + 1 >= to) {
+          index = to;
+          return false;
+        }
+        sale = sales.get(++index);
+        return true;
+      }
+
+      @Override
+      public String getAssetSymbol() {
+        return sale.getAssetSymbol();
+      }
+
+      @Override
+      public String getAssetFullName() {
+        return sale.getAssetFullName();
+      }
+
+      @Override
+      public String getAssetType() {
+        return sale.getAssetType();
+      }
+
+      @Override
+      public long getTimeStamp() {
+        return sale.getTimeStamp();
+      }
+
+      @Override
+      public double getAvgPurchasePrice() {
+        return sale.getAvgPurchasePrice();
+      }
+
+      @Override
+      public double getPriceSold() {
+        return sale.getPriceSold();
+      }
+
+      @Override
+      public double getAmount() {
+        return sale.getAmount();
+      }
+    };
+  }
+
+
+  /**
+   * Helper method to find the first sale made after a timestamp.
+   *
+   * @param timeStamp a UNIX timestamp.
+   * @return index of the first later sale, size if there is none.
+   */
+  private int indexAfter(long timeStamp) {
+    int low = 0;
+    int high = sales.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (sales.get(middle).getTimeStamp() <= timeStamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,541 @@
+package com.lyit.csd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * HistoryCache class keeps historic prices on disk, so a range of a series is fetched from the
+ * provider only once. A series of one symbol and interval is split into chunks of CHUNK_POINTS
+ * intervals and every chunk is one file with the points fetched so far and the time up to which
+ * the chunk is covered. Only the parts of a requested range which are not covered yet are fetched,
+ * neighbouring gaps with one request, so a backtest over a range asked for before costs no request.
+ * <p>
+ * A chunk file is deflated and holds its points as columns: timestamps as variable length
+ * differences to the previous one and prices as floats. Prices are kept with float precision.
+ * Points of the last interval are still changing and are fetched every time but never cached.
+ * Recently read chunks are also kept in memory.
+ * <p>
+ * The cache can be shared by threads, requests for the same series wait for each other so a range
+ * is not fetched twice at the same time. One directory must be used by one cache only, users of
+ * one process share the cache of a directory through shared. A shared cache has no provider of
+ * its own, every request fetches the missing prices with the provider it gives, so users with
+ * their own api keys share the chunks but not the quota.
+ */
+public class HistoryCache implements HistoryProvider {
+
+  public static final int CHUNK_POINTS = 1024;
+  public static final int MAX_RANGE_CHUNKS = 64;
+  public static final int DEFAULT_MAX_LOADED_CHUNKS = 256;
+
+  static final String CHUNK_SUFFIX = ".chunk";
+  private static final int MAGIC = 0x48435331;
+
+  // caches handed out by shared, keyed by absolute directory
+  private static final Map<Path, HistoryCache> SHARED = new HashMap<>();
+
+  private final Path directory;
+  private final HistoryProvider provider;
+  private final LongSupplier clock;
+  private final Map<String, Object> seriesLocks = new ConcurrentHashMap<>();
+  // recently read chunks, guarded by itself
+  private final LinkedHashMap<Path, Chunk> loaded;
+
+  private final AtomicLong fetchCount = new AtomicLong();
+  private final AtomicLong fetchedPointCount = new AtomicLong();
+
+
+  /**
+   * Constructor to instantiate a cache in a directory, which is created when the first chunk is
+   * written.
+   *
+   * @param directory directory of the chunk files.
+   * @param provider  source of prices which are not cached, null if every request gives its own.
+   */
+  public HistoryCache(Path directory, HistoryProvider provider) {
+    this(directory, provider, () -> System.currentTimeMillis() / 1000, DEFAULT_MAX_LOADED_CHUNKS);
+  }
+
+
+  /**
+   * Constructor to instantiate a cache with own clock, used by tests.
+   *
+   * @param directory       directory of the chunk files.
+   * @param provider        source of prices which are not cached, null if every request gives its
+   *                        own.
+   * @param clock           source of current time as UNIX timestamp.
+   * @param maxLoadedChunks maximum number of chunks kept in memory.
+   */
+  HistoryCache(Path directory, HistoryProvider provider, LongSupplier clock, int maxLoadedChunks) {
+    if (maxLoadedChunks < 1) {
+      throw new IllegalArgumentException("maxLoadedChunks must be at least 1");
+    }
+    this.directory = directory;
+    this.provider = provider;
+    this.clock = clock;
+    this.loaded = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Path, Chunk> eldest) {
+        return size() > maxLoadedChunks;
+      }
+    };
+  }
+
+
+  /**
+   * Returns the cache of a directory shared by the whole process. The cache has no provider,
+   * prices are fetched with the provider given to each request.
+   *
+   * @param directory directory of the chunk files.
+   * @return cache of the directory.
+   */
+  public static HistoryCache shared(Path directory) {
+    Path key = directory.toAbsolutePath().normalize();
+    synchronized (SHARED) {
+      return SHARED.computeIfAbsent(key, path -> new HistoryCache(path, null));
+    }
+  }
+
+
+  /**
+   * Returns historic prices of one symbol over a range ending now. A range longer than
+   * MAX_RANGE_CHUNKS chunks, for example max, is cut to that many chunks.
+   *
+   * @param symbol   asset symbol, letter case is ignored.
+   * @param interval time between points, one of 1m 5m 15m 1d 1wk 1mo.
+   * @param range    time range, one of 1d 5d 1mo 3mo 6mo 1y 5y max.
+   * @return points of the range in time order.
+   * @throws IOException          thrown if prices could not be fetched or chunks not written.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for prices.
+   */
+  public List<AssetQuote> getHistory(String symbol, String interval, String range)
+      throws IOException, InterruptedException {
+    long end = clock.getAsLong();
+    return getHistory(symbol, interval, rangeStart(interval, range, end), end);
+  }
+
+
+  /**
+   * Returns historic prices of one symbol. Covered parts of the range are read from the chunks,
+   * the rest is fetched with the provider of the cache and stored.
+   *
+   * @throws IllegalStateException thrown if the cache has no provider.
+   */
+  @Override
+  public List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+      throws IOException, InterruptedException {
+    if (provider == null) {
+      throw new IllegalStateException("history cache has no provider");
+    }
+    return getHistory(symbol, interval, start, end, provider);
+  }
+
+
+  /**
+   * Returns historic prices of one symbol. Covered parts of the range are read from the chunks,
+   * the rest is fetched with the given provider and stored.
+   *
+   * @param symbol   asset symbol, letter case is ignored.
+   * @param interval time between points, one of 1m 5m 15m 1d 1wk 1mo.
+   * @param start    UNIX timestamp of the first point, included.
+   * @param end      UNIX timestamp the range ends at, excluded.
+   * @param source   source of the prices which are not cached.
+   * @return points of the range in time order.
+   * @throws IOException          thrown if prices could not be fetched or chunks not written.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for prices.
+   */
+  public List<AssetQuote> getHistory(String symbol, String interval, long start, long end,
+      HistoryProvider source) throws IOException, InterruptedException {
+
+    String series = QuoteCache.normalise(symbol);
+    long step = intervalSeconds(interval);
+    List<AssetQuote> result = new ArrayList<>();
+    if (start >= end) {
+      return result;
+    }
+    long span = step * CHUNK_POINTS;
+    // points of the last interval may still change
+    long horizon = clock.getAsLong() - step;
+    Path seriesDirectory = directory
+        .resolve(URLEncoder.encode(series, StandardCharsets.UTF_8))
+        .resolve(interval);
+
+    synchronized (seriesLocks.computeIfAbsent(series + ' ' + interval, key -> new Object())) {
+      long first = Math.floorDiv(start, span);
+      List<Chunk> chunks = new ArrayList<>();
+      for (long index = first; index <= Math.floorDiv(end - 1, span); index++) {
+        chunks.add(loadChunk(seriesDirectory.resolve(index + CHUNK_SUFFIX), index * span));
+      }
+
+      // a chunk misses everything after its covered part, neighbouring gaps are fetched together
+      List<AssetQuote> uncached = new ArrayList<>();
+      long gapStart = 0;
+      long gapEnd = 0;
+      boolean gap = false;
+      for (Chunk chunk : chunks) {
+        long until = Math.min(chunk.start + span, end);
+        if (chunk.coveredUntil >= until) {
+          continue;
+        }
+        if (gap && gapEnd != chunk.coveredUntil) {
+          fetch(source, series, interval, gapStart, gapEnd, chunks, first, span, horizon,
+              uncached);
+          gap = false;
+        }
+        if (!gap) {
+          gapStart = chunk.coveredUntil;
+          gap = true;
+        }
+        gapEnd = until;
+      }
+      if (gap) {
+        fetch(source, series, interval, gapStart, gapEnd, chunks, first, span, horizon, uncached);
+      }
+
+      for (Chunk chunk : chunks) {
+        if (chunk.dirty) {
+          writeChunk(seriesDirectory.resolve(
+              Math.floorDiv(chunk.start, span) + CHUNK_SUFFIX), chunk);
+        }
+        for (int i = chunk.indexOf(start); i < chunk.size && chunk.timeStamps[i] < end; i++) {
+          result.add(new AssetQuote(series, chunk.fullName, chunk.type, chunk.timeStamps[i],
+              chunk.prices[i]));
+        }
+      }
+      for (AssetQuote point : uncached) {
+        if (point.getTimeStamp() >= start && point.getTimeStamp() < end) {
+          result.add(point);
+        }
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Returns number of requests made to the provider.
+   *
+   * @return number of requests.
+   */
+  public long getFetchCount() {
+    return fetchCount.get();
+  }
+
+
+  /**
+   * Returns number of points received from the provider.
+   *
+   * @return number of points.
+   */
+  public long getFetchedPointCount() {
+    return fetchedPointCount.get();
+  }
+
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+
+  public HistoryProvider getProvider() {
+    return provider;
+  }
+
+
+  /**
+   * Returns length of an interval.
+   *
+   * @param interval one of 1m 5m 15m 1d 1wk 1mo, a month is 30 days.
+   * @return seconds between points.
+   */
+  public static long intervalSeconds(String interval) {
+    return switch (interval) {
+      case "1m" -> 60;
+      case "5m" -> 300;
+      case "15m" -> 900;
+      case "1d" -> 86_400;
+      case "1wk" -> 7 * 86_400;
+      case "1mo" -> 30 * 86_400;
+      default -> throw new IllegalArgumentException("unknown interval: " + interval);
+    };
+  }
+
+
+  /**
+   * Returns start of a range which ends at the given time. Ranges are cut to MAX_RANGE_CHUNKS
+   * chunks of the interval and never start before 1970.
+   *
+   * @param interval time between points.
+   * @param range    one of 1d 5d 1mo 3mo 6mo 1y 5y max, a month is 30 days.
+   * @param end      UNIX timestamp the range ends at.
+   * @return UNIX timestamp of the start of the range.
+   */
+  public static long rangeStart(String interval, String range, long end) {
+    long days = switch (range) {
+      case "1d" -> 1;
+      case "5d" -> 5;
+      case "1mo" -> 30;
+      case "3mo" -> 90;
+      case "6mo" -> 180;
+      case "1y" -> 365;
+      case "5y" -> 5 * 365 + 1;
+      case "max" -> Long.MAX_VALUE / 86_400;
+      default -> throw new IllegalArgumentException("unknown range: " + range);
+    };
+    long longest = intervalSeconds(interval) * CHUNK_POINTS * MAX_RANGE_CHUNKS;
+    return Math.max(0, end - Math.min(days * 86_400, longest));
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to fetch a gap and store its points in their chunks. Chunks are covered up to
+   * the end of the gap but not beyond the horizon, points after the horizon are only returned.
+   *
+   * @param source   source of the prices.
+   * @param series   upper cased asset symbol.
+   * @param interval time between points.
+   * @param from     start of the gap.
+   * @param to       end of the gap.
+   * @param chunks   chunks of the request.
+   * @param first    index of the first chunk.
+   * @param span     seconds covered by one chunk.
+   * @param horizon  time before which points do not change any more.
+   * @param uncached list the points after the horizon are added to.
+   */
+  private void fetch(HistoryProvider source, String series, String interval, long from, long to,
+      List<Chunk> chunks, long first, long span, long horizon, List<AssetQuote> uncached)
+      throws IOException, InterruptedException {
+
+    List<AssetQuote> points = source.getHistory(series, interval, from, to);
+    fetchCount.incrementAndGet();
+    fetchedPointCount.addAndGet(points.size());
+
+    for (AssetQuote point : points) {
+      long time = point.getTimeStamp();
+      if (time < from || time >= to) {
+        continue;
+      }
+      if (time >= horizon) {
+        uncached.add(point);
+        continue;
+      }
+      Chunk chunk = chunks.get((int) (Math.floorDiv(time, span) - first));
+      if (time > chunk.lastTimeStamp()) {
+        chunk.add(point);
+      }
+    }
+
+    for (Chunk chunk : chunks) {
+      long covered = Math.min(Math.min(chunk.start + span, to), horizon);
+      if (chunk.start < to && chunk.start + span > from && covered > chunk.coveredUntil) {
+        chunk.coveredUntil = covered;
+        chunk.dirty = true;
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to find a chunk in memory or read it from its file. A chunk without file, or
+   * with a damaged one, covers nothing.
+   *
+   * @param file  chunk file.
+   * @param start time the chunk starts at.
+   * @return the chunk.
+   */
+  private Chunk loadChunk(Path file, long start) throws IOException {
+    synchronized (loaded) {
+      Chunk chunk = loaded.get(file);
+      if (chunk != null) {
+        return chunk;
+      }
+    }
+
+    Chunk chunk = new Chunk(start);
+    if (Files.exists(file)) {
+      try {
+        chunk = readChunk(file, start);
+      } catch (EOFException | ZipException e) {
+        // fetched again and written over
+      }
+    }
+    synchronized (loaded) {
+      loaded.put(file, chunk);
+    }
+    return chunk;
+  }
+
+
+  /**
+   * Helper method to read a chunk file.
+   *
+   * @param file  chunk file.
+   * @param start time the chunk starts at.
+   * @return the chunk.
+   */
+  private static Chunk readChunk(Path file, long start) throws IOException {
+    try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+        new BufferedInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != MAGIC) {
+        throw new ZipException("not a history chunk: " + file);
+      }
+      Chunk chunk = new Chunk(start);
+      chunk.coveredUntil = start + readVarLong(in);
+      chunk.fullName = in.readBoolean() ? in.readUTF() : null;
+      chunk.type = in.readBoolean() ? in.readUTF() : null;
+      int size = (int) readVarLong(in);
+      chunk.timeStamps = new long[size];
+      chunk.prices = new float[size];
+      long time = start;
+      for (int i = 0; i < size; i++) {
+        time += readVarLong(in);
+        chunk.timeStamps[i] = time;
+      }
+      for (int i = 0; i < size; i++) {
+        chunk.prices[i] = in.readFloat();
+      }
+      chunk.size = size;
+      return chunk;
+    }
+  }
+
+
+  /**
+   * Helper method to write a chunk file. The chunk is written next to the file and moved over it,
+   * so a reader never sees half of a chunk.
+   *
+   * @param file  chunk file.
+   * @param chunk the chunk.
+   */
+  private static void writeChunk(Path file, Chunk chunk) throws IOException {
+    Files.createDirectories(file.getParent());
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(temporary))))) {
+      out.writeInt(MAGIC);
+      writeVarLong(out, chunk.coveredUntil - chunk.start);
+      out.writeBoolean(chunk.fullName != null);
+      if (chunk.fullName != null) {
+        out.writeUTF(chunk.fullName);
+      }
+      out.writeBoolean(chunk.type != null);
+      if (chunk.type != null) {
+        out.writeUTF(chunk.type);
+      }
+      writeVarLong(out, chunk.size);
+      long time = chunk.start;
+      for (int i = 0; i < chunk.size; i++) {
+        writeVarLong(out, chunk.timeStamps[i] - time);
+        time = chunk.timeStamps[i];
+      }
+      for (int i = 0; i < chunk.size; i++) {
+        out.writeFloat(chunk.prices[i]);
+      }
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    chunk.dirty = false;
+  }
+
+
+  /**
+   * Helper method to write a number which is not negative in as few bytes as it needs, seven bits
+   * in every byte.
+   *
+   * @param out   output.
+   * @param value number to write.
+   */
+  private static void writeVarLong(DataOutput out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+
+  /**
+   * Helper method to read a number written by writeVarLong.
+   *
+   * @param in input.
+   * @return the number.
+   */
+  private static long readVarLong(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new ZipException("malformed number in history chunk");
+  }
+
+
+  /**
+   * Points of one chunk and how far it is covered, changed under the lock of its series.
+   */
+  private static final class Chunk {
+
+    private final long start;
+    private long coveredUntil;
+    private String fullName;
+    private String type;
+    private long[] timeStamps = new long[0];
+    private float[] prices = new float[0];
+    private int size;
+    private boolean dirty;
+
+    private Chunk(long start) {
+      this.start = start;
+      this.coveredUntil = start;
+    }
+
+    private long lastTimeStamp() {
+      return size == 0 ? Long.MIN_VALUE : timeStamps[size - 1];
+    }
+
+    private void add(AssetQuote point) {
+      if (size == timeStamps.length) {
+        timeStamps = Arrays.copyOf(timeStamps, Math.max(16, size * 2));
+        prices = Arrays.copyOf(prices, timeStamps.length);
+      }
+      timeStamps[size] = point.getTimeStamp();
+      prices[size] = (float) point.getLivePrice();
+      size++;
+      fullName = point.getAssetFullName();
+      type = point.getAssetType();
+    }
+
+    private int indexOf(long time) {
+      int index = Arrays.binarySearch(timeStamps, 0, size, time);
+      return index >= 0 ? index : -index - 1;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * HistoryProvider interface is a source of historic prices. Every point of a series is one
+ * AssetQuote with the time the bar started and its closing price.
+ */
+public interface HistoryProvider {
+
+  /**
+   * Returns historic prices of one symbol.
+   *
+   * @param symbol   asset symbol, letter case is ignored.
+   * @param interval time between points, one of 1m 5m 15m 1d 1wk 1mo.
+   * @param start    UNIX timestamp of the first point, inclusive.
+   * @param end      UNIX timestamp after the last point, exclusive.
+   * @return points from start to end in time order, empty if the provider does not know the symbol.
+   * @throws IOException          thrown if prices could not be fetched.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for prices.
+   */
+  List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+      throws IOException, InterruptedException;
+}
@@ -0,0 +1,292 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HttpTransport class holds one long-lived HttpClient which is shared by every request made to the
+ * finance api. Reusing the client keeps TCP/TLS connections alive between requests (HTTP/2 when the
+ * server supports it) instead of paying for a new client, thread pool and handshake every time.
+ * <p>
+ * The number of requests in flight at the same time is limited, and every request gets its own
+ * timeout so a slow server can not hold a trade forever.
+ */
+public class HttpTransport {
+
+  public static final URI DEFAULT_BASE_URI = URI.create("https://yfapi.net/");
+  public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+  public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
+
+  private static volatile HttpTransport defaultTransport;
+
+  private final HttpClient client;
+  private final URI baseUri;
+  private final Duration requestTimeout;
+  private final int maxConcurrentRequests;
+
+  // permits for requests in flight, guarded by this
+  private int availablePermits;
+  private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+
+  /**
+   * Constructor to instantiate HttpTransport with default settings.
+   */
+  public HttpTransport() {
+    this(DEFAULT_BASE_URI, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT,
+        DEFAULT_MAX_CONCURRENT_REQUESTS);
+  }
+
+
+  /**
+   * Constructor to instantiate HttpTransport with its own HttpClient.
+   *
+   * @param baseUri               address every request string is resolved against.
+   * @param connectTimeout        maximum time to wait for a new connection.
+   * @param requestTimeout        maximum time to wait for a response of one request.
+   * @param maxConcurrentRequests maximum number of requests in flight at the same time.
+   */
+  public HttpTransport(URI baseUri, Duration connectTimeout, Duration requestTimeout,
+      int maxConcurrentRequests) {
+    this(HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(newExecutor(maxConcurrentRequests))
+            .build(),
+        baseUri, requestTimeout, maxConcurrentRequests);
+  }
+
+
+  /**
+   * Constructor to instantiate HttpTransport around an existing HttpClient, for example one
+   * pointed to a local test server.
+   *
+   * @param client                client used to send every request.
+   * @param baseUri               address every request string is resolved against.
+   * @param requestTimeout        maximum time to wait for a response of one request.
+   * @param maxConcurrentRequests maximum number of requests in flight at the same time.
+   */
+  public HttpTransport(HttpClient client, URI baseUri, Duration requestTimeout,
+      int maxConcurrentRequests) {
+    if (maxConcurrentRequests <= 0) {
+      throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+    }
+    this.client = client;
+    this.baseUri = baseUri;
+    this.requestTimeout = requestTimeout;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.availablePermits = maxConcurrentRequests;
+  }
+
+
+  /**
+   * Returns the transport shared by every ConnectionPort which was not given its own one.
+   *
+   * @return shared transport.
+   */
+  public static HttpTransport getDefault() {
+    HttpTransport transport = defaultTransport;
+    if (transport == null) {
+      synchronized (HttpTransport.class) {
+        transport = defaultTransport;
+        if (transport == null) {
+          transport = new HttpTransport();
+          defaultTransport = transport;
+        }
+      }
+    }
+    return transport;
+  }
+
+
+  /**
+   * Replaces the shared transport, for example with one pointed to a test server.
+   *
+   * @param transport new shared transport, null to go back to the default one.
+   */
+  public static void setDefault(HttpTransport transport) {
+    defaultTransport = transport;
+  }
+
+
+  /**
+   * Builds a GET request for the request string with api key header and request timeout.
+   *
+   * @param requestString path and query relative to the base address.
+   * @param key           user api key.
+   * @return request ready to send.
+   */
+  public HttpRequest newGetRequest(String requestString, String key) {
+    return HttpRequest.newBuilder()
+        .uri(baseUri.resolve(requestString))
+        .timeout(requestTimeout)
+        .header("x-api-key", key)
+        .GET()
+        .build();
+  }
+
+
+  /**
+   * Sends request and waits for the response. Waits for a free permit first if the maximum number
+   * of requests is already in flight.
+   *
+   * @param request     request to send.
+   * @param bodyHandler handler for the response body.
+   * @return server response.
+   * @throws IOException          thrown if request could not be sent or timed out.
+   * @throws InterruptedException thrown if thread is interrupted while waiting.
+   */
+  public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+      throws IOException, InterruptedException {
+
+    CompletableFuture<Void> permit = acquirePermit();
+    try {
+      permit.get();
+    } catch (InterruptedException e) {
+      // give permit back if it was handed over while we stopped waiting
+      if (!permit.cancel(false)) {
+        releasePermit();
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+
+    try {
+      return client.send(request, bodyHandler);
+    } finally {
+      releasePermit();
+    }
+  }
+
+
+  /**
+   * Sends request without blocking the calling thread. The request is started as soon as a permit
+   * is free.
+   *
+   * @param request     request to send.
+   * @param bodyHandler handler for the response body.
+   * @return future completed with the server response.
+   */
+  public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+      HttpResponse.BodyHandler<T> bodyHandler) {
+    return acquirePermit().thenCompose(permit -> {
+      CompletableFuture<HttpResponse<T>> response;
+      try {
+        response = client.sendAsync(request, bodyHandler);
+      } catch (RuntimeException e) {
+        // request was never started, for example client executor is shut down
+        releasePermit();
+        throw e;
+      }
+      return response.whenComplete((result, error) -> releasePermit());
+    });
+  }
+
+
+  /**
+   * Returns executor of the underlying client, useful to run follow up work of a response.
+   *
+   * @return executor of the client, common pool if client has none.
+   */
+  public Executor getExecutor() {
+    return client.executor().orElse(ForkJoinPool.commonPool());
+  }
+
+
+  public URI getBaseUri() {
+    return baseUri;
+  }
+
+
+  public Duration getRequestTimeout() {
+    return requestTimeout;
+  }
+
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+
+  /**
+   * Returns number of requests which can still be started without waiting.
+   *
+   * @return free permits.
+   */
+  public synchronized int getAvailablePermits() {
+    return availablePermits;
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to take a permit. The future is completed straight away if a permit is free,
+   * otherwise when one is released.
+   *
+   * @return future completed when permit is granted.
+   */
+  private synchronized CompletableFuture<Void> acquirePermit() {
+    if (availablePermits > 0) {
+      availablePermits--;
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> permit = new CompletableFuture<>();
+    waiting.add(permit);
+    return permit;
+  }
+
+
+  /**
+   * Helper method to hand permit over to the next waiting request or give it back.
+   */
+  private void releasePermit() {
+    while (true) {
+      CompletableFuture<Void> next;
+      synchronized (this) {
+        next = waiting.poll();
+        if (next == null) {
+          availablePermits++;
+          return;
+        }
+      }
+      // waiter could have been cancelled (interrupted), then try next one
+      if (next.complete(null)) {
+        return;
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to create daemon threads for the client so they never keep the JVM alive.
+   *
+   * @param threads number of threads.
+   * @return executor for the client.
+   */
+  private static ExecutorService newExecutor(int threads) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(Math.max(2, threads), runnable -> {
+      Thread thread = new Thread(runnable, "http-transport-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+}
@@ -0,0 +1,192 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LocalQuoteProvider class is a base for providers which make quotes in process, without any
+ * network. Every request can be delayed by a set latency and fail with a set probability, so
+ * callers can be tested against slow and failing quote sources. Failures are drawn from a seeded
+ * random, so the same requests always fail in the same order. History requests are delayed, fail
+ * and are counted like quote requests.
+ */
+public abstract class LocalQuoteProvider implements QuoteProvider, HistoryProvider {
+
+  private final SplittableRandom failures;
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private volatile Duration latency = Duration.ZERO;
+  private volatile double errorRate;
+
+
+  /**
+   * Constructor for providers.
+   *
+   * @param seed seed of injected failures.
+   */
+  protected LocalQuoteProvider(long seed) {
+    failures = new SplittableRandom(seed);
+  }
+
+
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+      throws IOException, InterruptedException {
+
+    boolean fail = nextRequestFails();
+    if (!latency.isZero()) {
+      Thread.sleep(latency.toMillis());
+    }
+    if (fail) {
+      throw new IOException("simulated quote request failure");
+    }
+    return quote(normalise(symbols));
+  }
+
+
+  /**
+   * Returns quotes after the set latency without holding any thread while waiting.
+   */
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+
+    boolean fail = nextRequestFails();
+    List<String> requested = normalise(symbols);
+    return CompletableFuture.supplyAsync(() -> {
+      if (fail) {
+        throw new CompletionException(new IOException("simulated quote request failure"));
+      }
+      return quote(requested);
+    }, CompletableFuture.delayedExecutor(latency.toMillis(), TimeUnit.MILLISECONDS));
+  }
+
+
+  @Override
+  public List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+      throws IOException, InterruptedException {
+
+    long step = HistoryCache.intervalSeconds(interval);
+    boolean fail = nextRequestFails();
+    if (!latency.isZero()) {
+      Thread.sleep(latency.toMillis());
+    }
+    if (fail) {
+      throw new IOException("simulated history request failure");
+    }
+    return history(QuoteCache.normalise(symbol), step, start, end);
+  }
+
+
+  /**
+   * Makes historic prices of a symbol. By default the provider knows no history.
+   *
+   * @param symbol upper cased asset symbol.
+   * @param step   seconds between points.
+   * @param start  UNIX timestamp of the first point, inclusive.
+   * @param end    UNIX timestamp after the last point, exclusive.
+   * @return points in time order.
+   */
+  protected List<AssetQuote> history(String symbol, long step, long start, long end) {
+    return List.of();
+  }
+
+
+  /**
+   * Makes quotes for the symbols.
+   *
+   * @param symbols upper cased asset symbols without duplicates.
+   * @return quotes keyed by asset symbol in request order.
+   */
+  protected abstract Map<String, AssetQuote> quote(List<String> symbols);
+
+
+  /**
+   * Sets how long every request takes.
+   *
+   * @param latency delay before quotes are returned.
+   */
+  public void setLatency(Duration latency) {
+    if (latency.isNegative()) {
+      throw new IllegalArgumentException("latency must not be negative");
+    }
+    this.latency = latency;
+  }
+
+
+  public Duration getLatency() {
+    return latency;
+  }
+
+
+  /**
+   * Sets probability of a request to fail with IOException.
+   *
+   * @param errorRate probability from 0 (never) to 1 (always).
+   */
+  public void setErrorRate(double errorRate) {
+    if (errorRate < 0 || errorRate > 1) {
+      throw new IllegalArgumentException("error rate must be between 0 and 1");
+    }
+    this.errorRate = errorRate;
+  }
+
+
+  public double getErrorRate() {
+    return errorRate;
+  }
+
+
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+
+  /**
+   * Helper method to count a request and decide if it fails.
+   *
+   * @return true if the request fails.
+   */
+  private boolean nextRequestFails() {
+    requestCount.incrementAndGet();
+    double draw;
+    synchronized (failures) {
+      draw = failures.nextDouble();
+    }
+    if (draw < errorRate) {
+      failureCount.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+
+  /**
+   * Helper method to upper case symbols and drop duplicates.
+   *
+   * @param symbols asset symbols.
+   * @return upper cased symbols in request order.
+   */
+  private static List<String> normalise(Collection<String> symbols) {
+    Set<String> result = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      result.add(QuoteCache.normalise(symbol));
+    }
+    return new ArrayList<>(result);
+  }
+}
@@ -0,0 +1,515 @@
+package com.lyit.csd;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * LotStore class keeps every asset (lot) of a portfolio in primitive arrays, one array per field,
+ * instead of one object per lot. Symbol, full name and type are stored once per symbol in a small
+ * dictionary and each lot only holds the number of its symbol.
+ * <p>
+ * A lot is addressed by its slot in the arrays. Slots of removed lots are reused, and every reuse
+ * increases the slot generation, so an old reference to a removed lot can be recognised. Lots are
+ * linked in purchase order twice: within their list (stock or crypto) and within their symbol, so
+ * adding and removing a lot costs O(1). A separate array of slots sorted by timestamp answers time
+ * range queries with a binary search.
+ */
+public class LotStore {
+
+  public static final int NONE = -1;
+  public static final int STOCK = 0;
+  public static final int CRYPTO = 1;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  // symbol dictionary
+  private final Map<String, Integer> symbolIds = new HashMap<>();
+  private String[] symbols = new String[INITIAL_CAPACITY];
+  private String[] fullNames = new String[INITIAL_CAPACITY];
+  private String[] types = new String[INITIAL_CAPACITY];
+  private int[] symbolHead = new int[INITIAL_CAPACITY];
+  private int[] symbolTail = new int[INITIAL_CAPACITY];
+  private int[] symbolLotCount = new int[INITIAL_CAPACITY];
+  private int symbolCount;
+
+  // lot columns, indexed by slot
+  private int[] symbolOf = new int[INITIAL_CAPACITY];
+  private long[] timeStamps = new long[INITIAL_CAPACITY];
+  private double[] prices = new double[INITIAL_CAPACITY];
+  private double[] amounts = new double[INITIAL_CAPACITY];
+  private int[] generations = new int[INITIAL_CAPACITY];
+  private byte[] listOf = new byte[INITIAL_CAPACITY];
+  private int[] listPrevious = new int[INITIAL_CAPACITY];
+  private int[] listNext = new int[INITIAL_CAPACITY];
+  private int[] symbolPrevious = new int[INITIAL_CAPACITY];
+  private int[] symbolNext = new int[INITIAL_CAPACITY];
+  private int slotCount;
+  private int freeSlot = NONE;
+
+  // stock and crypto lists
+  private final int[] listHead = {NONE, NONE};
+  private final int[] listTail = {NONE, NONE};
+  private final int[] listSize = new int[2];
+
+  // slots sorted by timestamp, entries of removed lots are dropped lazily
+  private long[] timeIndexKeys = new long[INITIAL_CAPACITY];
+  private int[] timeIndexSlots = new int[INITIAL_CAPACITY];
+  private int[] timeIndexGenerations = new int[INITIAL_CAPACITY];
+  private int timeIndexSize;
+  private int timeIndexRemoved;
+  private int timeIndexChanges;
+
+
+  /**
+   * Returns number of a symbol, adding it to the dictionary if it is new.
+   *
+   * @param symbol   asset symbol.
+   * @param fullName asset full name, kept while any lot of the symbol is stored.
+   * @param type     asset type, kept while any lot of the symbol is stored.
+   * @return symbol number.
+   */
+  public int internSymbol(String symbol, String fullName, String type) {
+    Integer id = symbolIds.get(symbol);
+    if (id != null) {
+      if (symbolLotCount[id] == 0) {
+        // symbol was fully sold, take details of the new lot
+        fullNames[id] = fullName;
+        types[id] = type;
+      }
+      return id;
+    }
+    if (symbolCount == symbols.length) {
+      int capacity = grow(symbolCount);
+      symbols = Arrays.copyOf(symbols, capacity);
+      fullNames = Arrays.copyOf(fullNames, capacity);
+      types = Arrays.copyOf(types, capacity);
+      symbolHead = Arrays.copyOf(symbolHead, capacity);
+      symbolTail = Arrays.copyOf(symbolTail, capacity);
+      symbolLotCount = Arrays.copyOf(symbolLotCount, capacity);
+    }
+    int newId = symbolCount++;
+    symbols[newId] = symbol;
+    fullNames[newId] = fullName;
+    types[newId] = type;
+    symbolHead[newId] = NONE;
+    symbolTail[newId] = NONE;
+    symbolIds.put(symbol, newId);
+    return newId;
+  }
+
+
+  /**
+   * Returns number of a symbol.
+   *
+   * @param symbol asset symbol.
+   * @return symbol number or NONE if symbol was never stored.
+   */
+  public int findSymbol(String symbol) {
+    Integer id = symbolIds.get(symbol);
+    return id == null ? NONE : id;
+  }
+
+
+  public String getSymbol(int symbolId) {
+    return symbols[symbolId];
+  }
+
+
+  public String getFullName(int symbolId) {
+    return fullNames[symbolId];
+  }
+
+
+  public String getType(int symbolId) {
+    return types[symbolId];
+  }
+
+
+  /**
+   * Adds a lot at the end of a list and of its symbol.
+   *
+   * @param list      STOCK or CRYPTO.
+   * @param symbolId  symbol number.
+   * @param timeStamp purchase timestamp.
+   * @param price     price paid for one unit.
+   * @param amount    amount bought.
+   * @return slot of the new lot.
+   */
+  public int add(int list, int symbolId, long timeStamp, double price, double amount) {
+    int slot = allocateSlot();
+    symbolOf[slot] = symbolId;
+    timeStamps[slot] = timeStamp;
+    prices[slot] = price;
+    amounts[slot] = amount;
+    listOf[slot] = (byte) list;
+
+    // link at the end of the list
+    listPrevious[slot] = listTail[list];
+    listNext[slot] = NONE;
+    if (listTail[list] == NONE) {
+      listHead[list] = slot;
+    } else {
+      listNext[listTail[list]] = slot;
+    }
+    listTail[list] = slot;
+    listSize[list]++;
+
+    // link at the end of the symbol
+    symbolPrevious[slot] = symbolTail[symbolId];
+    symbolNext[slot] = NONE;
+    if (symbolTail[symbolId] == NONE) {
+      symbolHead[symbolId] = slot;
+    } else {
+      symbolNext[symbolTail[symbolId]] = slot;
+    }
+    symbolTail[symbolId] = slot;
+    symbolLotCount[symbolId]++;
+
+    addToTimeIndex(slot);
+    return slot;
+  }
+
+
+  /**
+   * Removes a lot. Its slot is reused by a later lot with a new generation.
+   *
+   * @param slot slot of a stored lot.
+   */
+  public void remove(int slot) {
+    int list = listOf[slot];
+    int symbolId = symbolOf[slot];
+
+    // unlink from list
+    if (listPrevious[slot] == NONE) {
+      listHead[list] = listNext[slot];
+    } else {
+      listNext[listPrevious[slot]] = listNext[slot];
+    }
+    if (listNext[slot] == NONE) {
+      listTail[list] = listPrevious[slot];
+    } else {
+      listPrevious[listNext[slot]] = listPrevious[slot];
+    }
+    listSize[list]--;
+
+    // unlink from symbol
+    if (symbolPrevious[slot] == NONE) {
+      symbolHead[symbolId] = symbolNext[slot];
+    } else {
+      symbolNext[symbolPrevious[slot]] = symbolNext[slot];
+    }
+    if (symbolNext[slot] == NONE) {
+      symbolTail[symbolId] = symbolPrevious[slot];
+    } else {
+      symbolPrevious[symbolNext[slot]] = symbolPrevious[slot];
+    }
+    symbolLotCount[symbolId]--;
+
+    // time index entry is dropped when the index is compacted
+    generations[slot]++;
+    symbolOf[slot] = NONE;
+    listNext[slot] = freeSlot;
+    freeSlot = slot;
+    timeIndexRemoved++;
+    timeIndexChanges++;
+    if (timeIndexRemoved > INITIAL_CAPACITY && timeIndexRemoved * 2 > timeIndexSize) {
+      compactTimeIndex();
+    }
+  }
+
+
+  /**
+   * Checks if a slot still holds the lot it held at the given generation.
+   *
+   * @param slot       slot of a lot.
+   * @param generation generation of the slot when the lot was read.
+   * @return true if the lot was not removed since.
+   */
+  public boolean isLive(int slot, int generation) {
+    return slot >= 0 && slot < slotCount && generations[slot] == generation
+        && symbolOf[slot] != NONE;
+  }
+
+
+  public int getGeneration(int slot) {
+    return generations[slot];
+  }
+
+
+  public int getSymbolId(int slot) {
+    return symbolOf[slot];
+  }
+
+
+  public int getList(int slot) {
+    return listOf[slot];
+  }
+
+
+  public long getTimeStamp(int slot) {
+    return timeStamps[slot];
+  }
+
+
+  public double getPrice(int slot) {
+    return prices[slot];
+  }
+
+
+  public double getAmount(int slot) {
+    return amounts[slot];
+  }
+
+
+  public void setAmount(int slot, double amount) {
+    amounts[slot] = amount;
+  }
+
+
+  /**
+   * Returns first lot of a list in purchase order.
+   *
+   * @param list STOCK or CRYPTO.
+   * @return slot or NONE if list is empty.
+   */
+  public int firstOfList(int list) {
+    return listHead[list];
+  }
+
+
+  /**
+   * Returns next lot of the same list.
+   *
+   * @param slot slot of a stored lot.
+   * @return slot or NONE at the end of the list.
+   */
+  public int nextOfList(int slot) {
+    return listNext[slot];
+  }
+
+
+  public int sizeOfList(int list) {
+    return listSize[list];
+  }
+
+
+  /**
+   * Returns first lot of a symbol in purchase order.
+   *
+   * @param symbolId symbol number.
+   * @return slot or NONE if no lot of the symbol is stored.
+   */
+  public int firstOfSymbol(int symbolId) {
+    return symbolId == NONE ? NONE : symbolHead[symbolId];
+  }
+
+
+  /**
+   * Returns next lot of the same symbol.
+   *
+   * @param slot slot of a stored lot.
+   * @return slot or NONE at the last lot of the symbol.
+   */
+  public int nextOfSymbol(int slot) {
+    return symbolNext[slot];
+  }
+
+
+  public int countOfSymbol(int symbolId) {
+    return symbolId == NONE ? 0 : symbolLotCount[symbolId];
+  }
+
+
+  /**
+   * Returns lots bought between the two timestamps (both included), oldest first.
+   *
+   * @param startTimeStamp start of range.
+   * @param endTimeStamp   end of range.
+   * @return slots in time order.
+   */
+  public int[] slotsInRange(long startTimeStamp, long endTimeStamp) {
+    if (startTimeStamp > endTimeStamp) {
+      return new int[0];
+    }
+    int from = firstIndexFrom(startTimeStamp);
+    int to = firstIndexAfter(endTimeStamp);
+
+    int[] result = new int[to - from];
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      int slot = timeIndexSlots[i];
+      if (isLive(slot, timeIndexGenerations[i])) {
+        result[count++] = slot;
+      }
+    }
+    return count == result.length ? result : Arrays.copyOf(result, count);
+  }
+
+
+  /**
+   * Returns lots bought between the two timestamps (both included), oldest first, one at a time.
+   * Nothing is copied, so lots must not be added or removed while the iterator is used.
+   *
+   * @param startTimeStamp start of range.
+   * @param endTimeStamp   end of range.
+   * @return iterator of slots in time order.
+   */
+  public PrimitiveIterator.OfInt iterateSlotsInRange(long startTimeStamp, long endTimeStamp) {
+    int from = startTimeStamp > endTimeStamp ? 0 : firstIndexFrom(startTimeStamp);
+    int to = startTimeStamp > endTimeStamp ? 0 : firstIndexAfter(endTimeStamp);
+
+    return new PrimitiveIterator.OfInt() {
+      private final int expectedChanges = timeIndexChanges;
+      private int index = from;
+
+      @Override
+      public boolean hasNext() {
+        checkForChanges();
+        while (index < to && !isLive(timeIndexSlots[index], timeIndexGenerations[index])) {
+          index++;
+        }
+        return index < to;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return timeIndexSlots[index++];
+      }
+
+      private void checkForChanges() {
+        if (timeIndexChanges != expectedChanges) {
+          throw new ConcurrentModificationException();
+        }
+      }
+    };
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to take a free slot or a new one at the end of the arrays.
+   *
+   * @return slot for a new lot.
+   */
+  private int allocateSlot() {
+    if (freeSlot != NONE) {
+      int slot = freeSlot;
+      freeSlot = listNext[slot];
+      return slot;
+    }
+    if (slotCount == symbolOf.length) {
+      int capacity = grow(slotCount);
+      symbolOf = Arrays.copyOf(symbolOf, capacity);
+      timeStamps = Arrays.copyOf(timeStamps, capacity);
+      prices = Arrays.copyOf(prices, capacity);
+      amounts = Arrays.copyOf(amounts, capacity);
+      generations = Arrays.copyOf(generations, capacity);
+      listOf = Arrays.copyOf(listOf, capacity);
+      listPrevious = Arrays.copyOf(listPrevious, capacity);
+      listNext = Arrays.copyOf(listNext, capacity);
+      symbolPrevious = Arrays.copyOf(symbolPrevious, capacity);
+      symbolNext = Arrays.copyOf(symbolNext, capacity);
+    }
+    return slotCount++;
+  }
+
+
+  /**
+   * Helper method to add a lot to the time index. Lots usually arrive in time order, then this is
+   * an append, otherwise later entries are shifted.
+   *
+   * @param slot slot of the new lot.
+   */
+  private void addToTimeIndex(int slot) {
+    if (timeIndexSize == timeIndexKeys.length) {
+      int capacity = grow(timeIndexSize);
+      timeIndexKeys = Arrays.copyOf(timeIndexKeys, capacity);
+      timeIndexSlots = Arrays.copyOf(timeIndexSlots, capacity);
+      timeIndexGenerations = Arrays.copyOf(timeIndexGenerations, capacity);
+    }
+    long key = timeStamps[slot];
+    int index = firstIndexAfter(key);
+    int moved = timeIndexSize - index;
+    if (moved > 0) {
+      System.arraycopy(timeIndexKeys, index, timeIndexKeys, index + 1, moved);
+      System.arraycopy(timeIndexSlots, index, timeIndexSlots, index + 1, moved);
+      System.arraycopy(timeIndexGenerations, index, timeIndexGenerations, index + 1, moved);
+    }
+    timeIndexKeys[index] = key;
+    timeIndexSlots[index] = slot;
+    timeIndexGenerations[index] = generations[slot];
+    timeIndexSize++;
+    timeIndexChanges++;
+  }
+
+
+  /**
+   * Helper method to find position of the first time index entry later than the timestamp.
+   *
+   * @param timeStamp timestamp.
+   * @return index in the time index.
+   */
+  private int firstIndexAfter(long timeStamp) {
+    int low = 0;
+    int high = timeIndexSize;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (timeIndexKeys[middle] <= timeStamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+
+  /**
+   * Helper method to find position of the first time index entry at or after the timestamp.
+   *
+   * @param timeStamp timestamp, any value including Long.MIN_VALUE.
+   * @return index in the time index.
+   */
+  private int firstIndexFrom(long timeStamp) {
+    return timeStamp > Long.MIN_VALUE ? firstIndexAfter(timeStamp - 1) : 0;
+  }
+
+
+  /**
+   * Helper method to drop time index entries of removed lots.
+   */
+  private void compactTimeIndex() {
+    int size = 0;
+    for (int i = 0; i < timeIndexSize; i++) {
+      if (isLive(timeIndexSlots[i], timeIndexGenerations[i])) {
+        timeIndexKeys[size] = timeIndexKeys[i];
+        timeIndexSlots[size] = timeIndexSlots[i];
+        timeIndexGenerations[size] = timeIndexGenerations[i];
+        size++;
+      }
+    }
+    timeIndexSize = size;
+    timeIndexRemoved = 0;
+    timeIndexChanges++;
+  }
+
+
+  /**
+   * Helper method to compute next array capacity.
+   *
+   * @param size current size.
+   * @return new capacity, about one and a half times bigger.
+   */
+  private static int grow(int size) {
+    return Math.max(INITIAL_CAPACITY, size + (size >> 1));
+  }
+}
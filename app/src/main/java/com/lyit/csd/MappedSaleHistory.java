@@ -0,0 +1,477 @@
+package com.lyit.csd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * MappedSaleHistory class keeps sales off the Java heap, as fixed width records in a memory mapped
+ * file. Symbol, full name and type of a sale are stored once in a symbol dictionary file and a
+ * record only holds the number of its dictionary entry, so years of sales take 40 bytes each and
+ * no garbage collection work. Range queries binary search the records by timestamp and a cursor
+ * reads them straight from the mapped file, one record at a time under the history's lock. An
+ * earlier sale added while a cursor is used moves the records under it, the cursor then fails
+ * instead of returning a sale twice or skipping one.
+ * <p>
+ * Sales file: int magic, int record size, int number of sales, int unused, then the records. A
+ * record is: long timestamp, int dictionary entry, int CRC32 of the other fields, double average
+ * purchase price, double sale price, double amount.
+ * <p>
+ * Changes reach the disk when flush is called, or when the operating system writes the mapped
+ * pages. Records which are missing or torn after a crash are dropped on opening. One file holds at
+ * most about 53 million sales.
+ */
+public class MappedSaleHistory implements SaleHistory {
+
+  public static final String SALES_FILE = "sales.bin";
+  public static final String SYMBOLS_FILE = "sale-symbols.bin";
+
+  static final int RECORD_SIZE = 40;
+
+  private static final int MAGIC = 0x53414c31;
+  private static final int HEADER_SIZE = 16;
+  private static final int COUNT = 8;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+  // field offsets in a record
+  private static final int TIME_STAMP = 0;
+  private static final int SYMBOL = 8;
+  private static final int CHECKSUM = 12;
+  private static final int AVG_PURCHASE_PRICE = 16;
+  private static final int PRICE_SOLD = 24;
+  private static final int AMOUNT = 32;
+
+  private final Path salesFile;
+  private final FileChannel sales;
+  private final FileChannel dictionary;
+
+  // dictionary entry -> symbol, full name and type
+  private final List<String> symbols = new ArrayList<>();
+  private final List<String> fullNames = new ArrayList<>();
+  private final List<String> types = new ArrayList<>();
+  private final Map<List<String>, Integer> entries = new HashMap<>();
+
+  private final byte[] record = new byte[RECORD_SIZE];
+  private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+  private final CRC32 crc = new CRC32();
+
+  private MappedByteBuffer buffer;
+  private int capacity;
+  private int count;
+  // number of added sales which moved later records
+  private int moves;
+  private boolean dirty;
+  private boolean closed;
+
+
+  /**
+   * Constructor to open the sale history of a directory, or to start an empty one.
+   *
+   * @param directory directory of the sales and symbol dictionary files, created if missing.
+   * @throws IOException thrown if the files can not be opened or are not a sale history.
+   */
+  public MappedSaleHistory(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    salesFile = directory.resolve(SALES_FILE);
+    dictionary = FileChannel.open(directory.resolve(SYMBOLS_FILE), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    FileChannel opened = null;
+    try {
+      opened = FileChannel.open(salesFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      readDictionary();
+
+      long size = opened.size();
+      if (size == 0) {
+        map(opened, INITIAL_CAPACITY);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(Integer.BYTES, RECORD_SIZE);
+      } else {
+        long records = Math.max(0, (size - HEADER_SIZE) / RECORD_SIZE);
+        map(opened, (int) Math.min(MAX_CAPACITY, Math.max(INITIAL_CAPACITY, records)));
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC
+            || buffer.getInt(Integer.BYTES) != RECORD_SIZE) {
+          throw new IOException("not a sale history: " + salesFile);
+        }
+        count = buffer.getInt(COUNT);
+        if (count < 0 || count > records) {
+          throw new IOException("damaged sale history: " + salesFile);
+        }
+        // the last records may be torn by a crash
+        while (count > 0 && !isValid(count - 1)) {
+          count--;
+        }
+        buffer.putInt(COUNT, count);
+      }
+    } catch (IOException | RuntimeException e) {
+      dictionary.close();
+      if (opened != null) {
+        opened.close();
+      }
+      throw e;
+    }
+    sales = opened;
+  }
+
+
+  @Override
+  public synchronized void add(SoldAsset sale) {
+    if (closed) {
+      throw new IllegalStateException("sale history is closed");
+    }
+    try {
+      if (count == capacity) {
+        if (capacity == MAX_CAPACITY) {
+          throw new IllegalStateException("sale history is full");
+        }
+        map(sales, (int) Math.min(MAX_CAPACITY, 2L * capacity));
+      }
+      int entry = entryOf(sale);
+
+      // an earlier sale moves the later ones by one record
+      long timeStamp = sale.getTimeStamp();
+      int index = indexAfter(buffer, count, timeStamp);
+      for (int i = count; i > index; i--) {
+        buffer.get(offset(i - 1), record);
+        buffer.put(offset(i), record);
+      }
+      if (index < count) {
+        moves++;
+      }
+
+      recordBuffer.putLong(TIME_STAMP, timeStamp);
+      recordBuffer.putInt(SYMBOL, entry);
+      recordBuffer.putDouble(AVG_PURCHASE_PRICE, sale.getAvgPurchasePrice());
+      recordBuffer.putDouble(PRICE_SOLD, sale.getPriceSold());
+      recordBuffer.putDouble(AMOUNT, sale.getAmount());
+      recordBuffer.putInt(CHECKSUM, checksum());
+      buffer.put(offset(index), record);
+
+      count++;
+      buffer.putInt(COUNT, count);
+      dirty = true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+
+  @Override
+  public synchronized int size() {
+    return count;
+  }
+
+
+  @Override
+  public synchronized SoldAsset get(int index) {
+    Objects.checkIndex(index, count);
+    int offset = offset(index);
+    int entry = buffer.getInt(offset + SYMBOL);
+    return new SoldAsset(symbols.get(entry), fullNames.get(entry), types.get(entry),
+        buffer.getLong(offset + TIME_STAMP), buffer.getDouble(offset + AVG_PURCHASE_PRICE),
+        buffer.getDouble(offset + PRICE_SOLD), buffer.getDouble(offset + AMOUNT));
+  }
+
+
+  @Override
+  public synchronized Cursor cursor(long startTimeStamp, long endTimeStamp) {
+    int from = startTimeStamp > Long.MIN_VALUE ? indexAfter(buffer, count, startTimeStamp - 1)
+        : 0;
+    int to = startTimeStamp <= endTimeStamp ? indexAfter(buffer, count, endTimeStamp) : from;
+    int expectedMoves = moves;
+    return new Cursor() {
+      private int index = from - 1;
+      private int entry;
+      private long timeStamp;
+      private double avgPurchasePrice;
+      private double priceSold;
+      private double amount;
+
+      @Override
+      public boolean next() {
+        synchronized (MappedSaleHistory.this) {
+          if (moves != expectedMoves) {
+            throw new ConcurrentModificationException("an earlier sale was added");
+          }
+          if (index + 1 >= to) {
+            index = to;
+            return false;
+          }
+          // the sale is copied, so the getters need no lock
+          int offset = offset(++index);
+          entry = buffer.getInt(offset + SYMBOL);
+          timeStamp = buffer.getLong(offset + TIME_STAMP);
+          avgPurchasePrice = buffer.getDouble(offset + AVG_PURCHASE_PRICE);
+          priceSold = buffer.getDouble(offset + PRICE_SOLD);
+          amount = buffer.getDouble(offset + AMOUNT);
+          return true;
+        }
+      }
+
+      @Override
+      public String getAssetSymbol() {
+        return entryValue(symbols, entry);
+      }
+
+      @Override
+      public String getAssetFullName() {
+        return entryValue(fullNames, entry);
+      }
+
+      @Override
+      public String getAssetType() {
+        return entryValue(types, entry);
+      }
+
+      @Override
+      public long getTimeStamp() {
+        return timeStamp;
+      }
+
+      @Override
+      public double getAvgPurchasePrice() {
+        return avgPurchasePrice;
+      }
+
+      @Override
+      public double getPriceSold() {
+        return priceSold;
+      }
+
+      @Override
+      public double getAmount() {
+        return amount;
+      }
+    };
+  }
+
+
+  @Override
+  public boolean isPersistent() {
+    return true;
+  }
+
+
+  @Override
+  public synchronized void flush() throws IOException {
+    if (!dirty || closed) {
+      return;
+    }
+    // dictionary entries first, so no record points at a lost entry
+    dictionary.force(false);
+    buffer.force();
+    dirty = false;
+  }
+
+
+  /**
+   * Writes added sales to disk and closes the files. The mapping itself is released when it is
+   * garbage collected.
+   *
+   * @throws IOException thrown if the sales can not be written.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      closed = true;
+      try {
+        dictionary.close();
+      } finally {
+        sales.close();
+      }
+    }
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to map the sales file for a number of records, growing the file if needed.
+   *
+   * @param channel     sales file.
+   * @param newCapacity number of records the mapping holds.
+   * @throws IOException thrown if the file can not be mapped.
+   */
+  private void map(FileChannel channel, int newCapacity) throws IOException {
+    buffer = channel.map(MapMode.READ_WRITE, 0, offset(newCapacity));
+    capacity = newCapacity;
+  }
+
+
+  /**
+   * Helper method to find the dictionary entry of the symbol, full name and type of a sale. A new
+   * combination is appended to the dictionary file.
+   *
+   * @param sale sale to find the entry of.
+   * @return number of the entry.
+   * @throws IOException thrown if the dictionary can not be written.
+   */
+  private int entryOf(SoldAsset sale) throws IOException {
+    List<String> key = Arrays.asList(sale.getAssetSymbol(), sale.getAssetFullName(),
+        sale.getAssetType());
+    Integer entry = entries.get(key);
+    if (entry != null) {
+      return entry;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (String value : key) {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        out.writeUTF(value);
+      }
+    }
+    ByteBuffer written = ByteBuffer.wrap(bytes.toByteArray());
+    while (written.hasRemaining()) {
+      dictionary.write(written);
+    }
+    return addEntry(key);
+  }
+
+
+  /**
+   * Helper method to read one value of a dictionary entry, which another thread may be adding to.
+   *
+   * @param values symbols, full names or types.
+   * @param entry  number of the entry.
+   * @return value of the entry.
+   */
+  private synchronized String entryValue(List<String> values, int entry) {
+    return values.get(entry);
+  }
+
+
+  /**
+   * Helper method to add a symbol, full name and type to the dictionary in memory.
+   *
+   * @param key symbol, full name and type.
+   * @return number of the new entry.
+   */
+  private int addEntry(List<String> key) {
+    int entry = symbols.size();
+    symbols.add(key.get(0));
+    fullNames.add(key.get(1));
+    types.add(key.get(2));
+    entries.put(key, entry);
+    return entry;
+  }
+
+
+  /**
+   * Helper method to read the dictionary file. An entry torn by a crash ends the dictionary and is
+   * cut off the file.
+   *
+   * @throws IOException thrown if the file can not be read.
+   */
+  private void readDictionary() throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate((int) dictionary.size());
+    while (bytes.hasRemaining() && dictionary.read(bytes, bytes.position()) >= 0) {
+      // read until full
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+    long validLength = 0;
+    try {
+      while (in.available() > 0) {
+        String[] values = new String[3];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = in.readBoolean() ? in.readUTF() : null;
+        }
+        addEntry(Arrays.asList(values));
+        validLength = bytes.capacity() - in.available();
+      }
+    } catch (EOFException e) {
+      // torn entry
+    }
+    dictionary.truncate(validLength);
+    dictionary.position(validLength);
+  }
+
+
+  /**
+   * Helper method to check that a stored record is complete.
+   *
+   * @param index position of the record.
+   * @return true if the record points at a dictionary entry and matches its checksum.
+   */
+  private boolean isValid(int index) {
+    buffer.get(offset(index), record);
+    int entry = recordBuffer.getInt(SYMBOL);
+    return entry >= 0 && entry < symbols.size() && recordBuffer.getInt(CHECKSUM) == checksum();
+  }
+
+
+  /**
+   * Helper method to compute the checksum of the record scratch buffer, leaving out the checksum
+   * field.
+   *
+   * @return CRC32 of the record fields.
+   */
+  private int checksum() {
+    crc.reset();
+    crc.update(record, 0, CHECKSUM);
+    crc.update(record, CHECKSUM + Integer.BYTES, RECORD_SIZE - CHECKSUM - Integer.BYTES);
+    return (int) crc.getValue();
+  }
+
+
+  /**
+   * Helper method to find the first record after a timestamp.
+   *
+   * @param records   mapped records.
+   * @param count     number of records.
+   * @param timeStamp a UNIX timestamp.
+   * @return index of the first later record, count if there is none.
+   */
+  private static int indexAfter(ByteBuffer records, int count, long timeStamp) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (records.getLong(offset(middle) + TIME_STAMP) <= timeStamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+
+  /**
+   * Helper method to find the position of a record in the file.
+   *
+   * @param index position of the record.
+   * @return byte offset of the record.
+   */
+  private static int offset(int index) {
+    return HEADER_SIZE + index * RECORD_SIZE;
+  }
+}
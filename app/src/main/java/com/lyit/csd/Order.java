@@ -0,0 +1,72 @@
+package com.lyit.csd;
+
+/**
+ * Order class is one purchase or sale of a batch of orders, priced at the live price when the
+ * batch is executed.
+ */
+public class Order {
+
+  /**
+   * Side of an order.
+   */
+  public enum Side {
+    BUY,
+    SELL
+  }
+
+  private final Side side;
+  private final String assetSymbol;
+  private final double amount;
+
+  /**
+   * Order constructor
+   *
+   * @param side        purchase or sale
+   * @param assetSymbol symbol of the asset to buy or sell
+   * @param amount      amount of the asset to buy or sell
+   */
+  public Order(Side side, String assetSymbol, double amount) {
+    this.side = side;
+    this.assetSymbol = assetSymbol;
+    this.amount = amount;
+  }
+
+  /**
+   * Returns an order to buy an asset.
+   *
+   * @param assetSymbol symbol of the asset
+   * @param amount      amount to buy
+   * @return the order
+   */
+  public static Order buy(String assetSymbol, double amount) {
+    return new Order(Side.BUY, assetSymbol, amount);
+  }
+
+  /**
+   * Returns an order to sell an asset.
+   *
+   * @param assetSymbol symbol of the asset
+   * @param amount      amount to sell
+   * @return the order
+   */
+  public static Order sell(String assetSymbol, double amount) {
+    return new Order(Side.SELL, assetSymbol, amount);
+  }
+
+  public Side getSide() {
+    return side;
+  }
+
+  public String getAssetSymbol() {
+    return assetSymbol;
+  }
+
+  public double getAmount() {
+    return amount;
+  }
+
+  @Override
+  public String toString() {
+    return side + " " + amount + " " + assetSymbol;
+  }
+}
@@ -0,0 +1,71 @@
+package com.lyit.csd;
+
+/**
+ * OrderResult class tells if an order of a batch was executed, at what price, or why it was not.
+ */
+public class OrderResult {
+
+  private final Order order;
+  private final boolean executed;
+  private final double price;
+  private final String failure;
+
+  /**
+   * OrderResult constructor
+   *
+   * @param order    the order
+   * @param executed true if the order was executed
+   * @param price    live price of one unit, NaN if the order was not priced
+   * @param failure  reason the order was not executed, null if it was
+   */
+  public OrderResult(Order order, boolean executed, double price, String failure) {
+    this.order = order;
+    this.executed = executed;
+    this.price = price;
+    this.failure = failure;
+  }
+
+  /**
+   * Returns result of an executed order.
+   *
+   * @param order the order
+   * @param price live price of one unit
+   * @return the result
+   */
+  public static OrderResult executed(Order order, double price) {
+    return new OrderResult(order, true, price, null);
+  }
+
+  /**
+   * Returns result of an order which was not executed.
+   *
+   * @param order   the order
+   * @param price   live price of one unit, NaN if the order was not priced
+   * @param failure reason the order was not executed
+   * @return the result
+   */
+  public static OrderResult failed(Order order, double price, String failure) {
+    return new OrderResult(order, false, price, failure);
+  }
+
+  public Order getOrder() {
+    return order;
+  }
+
+  public boolean isExecuted() {
+    return executed;
+  }
+
+  public double getPrice() {
+    return price;
+  }
+
+  public String getFailure() {
+    return failure;
+  }
+
+  @Override
+  public String toString() {
+    return order + (executed ? " executed at " + price : " failed: " + failure);
+  }
+}
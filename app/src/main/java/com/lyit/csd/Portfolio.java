@@ -1,20 +1,56 @@
 package com.lyit.csd;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Current class holds all assets
+ * Current class holds all assets.
+ * Assets (lots) are not kept as objects but in a columnar LotStore, and the stock and crypto lists
+ * hand out lightweight Asset views of the stored lots. Every lot is also indexed by its symbol and
+ * purchase timestamp, so all lots of one symbol or of a time range are found without going through
+ * the whole stock or crypto list.
+ * Sales are kept in time order by a SaleHistory, in memory unless the portfolio is given another
+ * one.
+ * <p>
+ * A portfolio can be shared by threads. Every change and read holds the portfolio's monitor for a
+ * short time; lots of a symbol, lots of a range and the names and types are returned as snapshots
+ * taken in one step. Going through the stock, crypto or sold asset lists, or a sale history
+ * cursor, while other threads trade needs a synchronized block on the portfolio. A change which
+ * depends on the lots held, like a sale, holds the lock of its symbol, so changes of different
+ * symbols are not waiting for each other.
  */
 public class Portfolio {
 
+    public static final double DEFAULT_FUNDS = 10_000;
+
+    private static final int LOCK_STRIPES = 64;
+
     private HashMap<String, String> symbolFullName = new HashMap<>();
     private HashMap<String, String> assetsInPortfolio = new HashMap<>();
     private List<String> allAssetNames = new ArrayList<>();
-    private List<Asset> crypto = new ArrayList<>();
-    private List<Asset> stock = new ArrayList<>();
-    private List<SoldAsset> soldAssets = new ArrayList<>();
+    private SymbolDirectory directory = new SymbolDirectory();
+    private LotStore lots = new LotStore();
+    private LotList crypto = new LotList(LotStore.CRYPTO);
+    private LotList stock = new LotList(LotStore.STOCK);
+    private SaleHistory saleHistory;
+    private SaleList soldAssets = new SaleList();
+    private PortfolioValuation valuation = new PortfolioValuation();
+    // money available to buy assets, in USD
+    private double funds;
+    private TransactionJournal journal;
+    // made with the first sale, so a portfolio which is only held stays small
+    private Lock[] symbolLocks;
 
 
 
@@ -25,38 +61,354 @@ public class Portfolio {
      * The appropriate asset's symbol and type is stored in the created HashMap.
      */
     public Portfolio() {
+        this(true, new HeapSaleHistory());
+    }
 
-        // Pre-populated stocks
-        Asset tesla = new Asset("TSLA", "Tesla, Inc.", "EQUITY", 1633107600, 775.22, 10);
-        stock.add(tesla);
 
-        Asset apple = new Asset("AAPL", "Apple Inc.", "EQUITY", 1625504400, 139.96, 20);
-        stock.add(apple);
+    /**
+     * Constructor to instantiate new Portfolio object with pre-populated assets, keeping its sales
+     * in the given history.
+     *
+     * @param saleHistory store of the sales, for example a MappedSaleHistory.
+     */
+    public Portfolio(SaleHistory saleHistory) {
+        this(true, saleHistory);
+    }
+
+
+    /**
+     * Constructor to instantiate new Portfolio object, with or without the pre-populated assets.
+     * An empty portfolio is filled by a transaction journal on recovery.
+     *
+     * @param withDefaultAssets true to add the pre-populated assets.
+     * @param saleHistory       store of the sales.
+     */
+    Portfolio(boolean withDefaultAssets, SaleHistory saleHistory) {
+        this.saleHistory = saleHistory;
+        if (withDefaultAssets)
+            addDefaultAssets();
+    }
+
 
-        Asset nVidia = new Asset("NVDA", "NVIDIA Corporation", "EQUITY", 1618419600, 152.77, 12);
-        stock.add(nVidia);
+    /**
+     * Adds the pre-populated assets and starting funds as per requirements.
+     */
+    void addDefaultAssets() {
+
+        // Pre-populated stocks
+        addAsset(new Asset("TSLA", "Tesla, Inc.", "EQUITY", 1633107600, 775.22, 10));
+        addAsset(new Asset("AAPL", "Apple Inc.", "EQUITY", 1625504400, 139.96, 20));
+        addAsset(new Asset("NVDA", "NVIDIA Corporation", "EQUITY", 1618419600, 152.77, 12));
 
         // Pre-populated crypto
-        Asset bitCoin = new Asset("BTC-USD", "Bitcoin USD", "CRYPTOCURRENCY", 1612893600, 44854.95, 0.0445881);
-        crypto.add(bitCoin);
+        addAsset(new Asset("BTC-USD", "Bitcoin USD", "CRYPTOCURRENCY", 1612893600, 44854.95, 0.0445881));
+
+        depositFunds(DEFAULT_FUNDS);
+    }
+
+
+    /**
+     * Starts recording every change of the portfolio in a journal.
+     *
+     * @param journal journal of changes.
+     */
+    synchronized void setJournal(TransactionJournal journal) { this.journal = journal;}
+
+
+    /**
+     * Returns the lock of a symbol, held while the lots of the symbol are read and changed
+     * depending on each other. Symbols share a fixed number of locks.
+     *
+     * @param assetSymbol asset symbol.
+     * @return lock of the symbol.
+     */
+    public synchronized Lock getSymbolLock(String assetSymbol) {
+        return getSymbolLock(Math.floorMod(assetSymbol.hashCode(), LOCK_STRIPES));
+    }
+
+
+    /**
+     * Returns the locks of several symbols, each lock once and always in the same order, so
+     * threads taking them one after another do not deadlock.
+     *
+     * @param assetSymbols asset symbols.
+     * @return locks of the symbols in locking order.
+     */
+    public synchronized List<Lock> getSymbolLocks(Collection<String> assetSymbols) {
+        boolean[] used = new boolean[LOCK_STRIPES];
+        for (String symbol : assetSymbols)
+            used[Math.floorMod(symbol.hashCode(), LOCK_STRIPES)] = true;
+
+        List<Lock> result = new ArrayList<>();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            if (used[i])
+                result.add(getSymbolLock(i));
+        }
+        return result;
+    }
+
+
+    /**
+     * Adds asset to the stock or crypto list by its type, indexes it by symbol and adds it to the
+     * live valuation. The first asset of a symbol also registers the symbol's name and type.
+     * The asset values are copied, the portfolio then hands out its own view of the asset.
+     *
+     * @param asset asset to add.
+     */
+    public synchronized void addAsset(Asset asset) {
+        if ("CRYPTOCURRENCY".equals(asset.getAssetType()))
+            addLot(LotStore.CRYPTO, asset);
+        else
+            addLot(LotStore.STOCK, asset);
+    }
+
+
+    /**
+     * Removes asset from its list and the symbol index. The last asset of a symbol also removes
+     * the symbol's name and type.
+     *
+     * @param asset asset view of this portfolio, or an asset with same values as a held one.
+     * @return true if the asset was in the portfolio.
+     */
+    public synchronized boolean removeAsset(Asset asset) {
+        int slot = findSlot(asset, LotStore.NONE);
+        if (slot == LotStore.NONE)
+            return false;
+
+        removeLot(slot, asset);
+        return true;
+    }
+
+
+    /**
+     * Changes amount held of an asset, keeping the live valuation up to date.
+     *
+     * @param asset     asset in the portfolio.
+     * @param newAmount new amount of the asset.
+     */
+    public synchronized void changeAmount(Asset asset, double newAmount) {
+        int slot = findSlot(asset, LotStore.NONE);
+        if (slot == LotStore.NONE) {
+            asset.setAmount(newAmount);
+            return;
+        }
+
+        double difference = newAmount - lots.getAmount(slot);
+        double priceBought = lots.getPrice(slot);
+        String symbol = lots.getSymbol(lots.getSymbolId(slot));
+        lots.setAmount(slot, newAmount);
+        if (!(asset instanceof LotView))
+            asset.setAmount(newAmount);
+        else if (((LotView) asset).detached != null)
+            ((LotView) asset).detached.setAmount(newAmount);
+
+        if (difference > 0)
+            valuation.recordPurchase(symbol, difference, priceBought);
+        else if (difference < 0)
+            valuation.recordSale(symbol, -difference, -difference * priceBought);
+
+        if (journal != null)
+            journal.amountChanged(symbol, lots.getTimeStamp(slot), priceBought,
+                    newAmount - difference, newAmount);
+    }
+
+
+    /**
+     * Returns all assets of one symbol in purchase order. The assets keep the values they had when
+     * this was called, but can still be removed or changed through the portfolio.
+     *
+     * @param assetSymbol asset symbol.
+     * @return read only snapshot of the assets, empty if symbol is not held.
+     */
+    public synchronized Collection<Asset> getLots(String assetSymbol) {
+        int symbolId = lots.findSymbol(assetSymbol);
+        if (lots.countOfSymbol(symbolId) == 0)
+            return Collections.emptyList();
+
+        List<Asset> result = new ArrayList<>(lots.countOfSymbol(symbolId));
+        for (int slot = lots.firstOfSymbol(symbolId); slot != LotStore.NONE;
+             slot = lots.nextOfSymbol(slot))
+            result.add(snapshotView(slot));
+        return Collections.unmodifiableList(result);
+    }
+
+
+    /**
+     * Returns all assets grouped by their symbol, all taken at the same time.
+     *
+     * @return read only map of symbol to a snapshot of its assets in purchase order.
+     */
+    public synchronized Map<String, Collection<Asset>> getLotsBySymbol() {
+        Map<String, Collection<Asset>> result = new HashMap<>();
+        for (String symbol : assetsInPortfolio.keySet())
+            result.put(symbol, getLots(symbol));
+        return Collections.unmodifiableMap(result);
+    }
 
-        // Adding asset full names to the relevant lists
-        allAssetNames.add(tesla.getAssetFullName());
-        allAssetNames.add(apple.getAssetFullName());
-        allAssetNames.add(nVidia.getAssetFullName());
-        allAssetNames.add(bitCoin.getAssetFullName());
 
-        // Adding relevant asset symbol and type to the hashmap
-        assetsInPortfolio.put(tesla.getAssetSymbol(), tesla.getAssetType());
-        assetsInPortfolio.put(apple.getAssetSymbol(), apple.getAssetType());
-        assetsInPortfolio.put(nVidia.getAssetSymbol(), nVidia.getAssetType());
-        assetsInPortfolio.put(bitCoin.getAssetSymbol(), bitCoin.getAssetType());
+    /**
+     * Returns all assets bought between the two timestamps (both included), oldest first. The
+     * assets keep the values they had when this was called.
+     *
+     * @param startTimeStamp a UNIX timestamp representing the start range date
+     * @param endTimeStamp   a UNIX timestamp representing the end range date
+     * @return snapshot of the assets in purchase time order, empty if range is empty.
+     */
+    public synchronized List<Asset> getPurchasesInRange(long startTimeStamp, long endTimeStamp) {
+        int[] slots = lots.slotsInRange(startTimeStamp, endTimeStamp);
+        List<Asset> result = new ArrayList<>(slots.length);
+        for (int slot : slots)
+            result.add(snapshotView(slot));
+        return result;
+    }
+
+
+    /**
+     * Returns all sales made between the two timestamps (both included), oldest first.
+     *
+     * @param startTimeStamp a UNIX timestamp representing the start range date
+     * @param endTimeStamp   a UNIX timestamp representing the end range date
+     * @return sales in time order, empty if range is empty.
+     */
+    public synchronized List<SoldAsset> getSalesInRange(long startTimeStamp, long endTimeStamp) {
+        List<SoldAsset> result = new ArrayList<>();
+        Iterator<SoldAsset> sales = iterateSalesInRange(startTimeStamp, endTimeStamp);
+        while (sales.hasNext())
+            result.add(sales.next());
+        return result;
+    }
+
+
+    /**
+     * Returns assets bought between the two timestamps (both included), oldest first, one at a
+     * time without copying them. Assets must not be added or removed while the iterator is used,
+     * the iterator fails if they are.
+     *
+     * @param startTimeStamp a UNIX timestamp representing the start range date
+     * @param endTimeStamp   a UNIX timestamp representing the end range date
+     * @return iterator of assets in purchase time order.
+     */
+    public synchronized Iterator<Asset> iteratePurchasesInRange(long startTimeStamp,
+                                                               long endTimeStamp) {
+        PrimitiveIterator.OfInt slots = lots.iterateSlotsInRange(startTimeStamp, endTimeStamp);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                synchronized (Portfolio.this) { return slots.hasNext();}
+            }
 
-        // Adding full name and symbol to the hashmap
-        symbolFullName.put(tesla.getAssetFullName(), tesla.getAssetSymbol());
-        symbolFullName.put(apple.getAssetFullName(), apple.getAssetSymbol());
-        symbolFullName.put(nVidia.getAssetFullName(), nVidia.getAssetSymbol());
-        symbolFullName.put(bitCoin.getAssetFullName(), bitCoin.getAssetSymbol());
+            @Override
+            public Asset next() {
+                synchronized (Portfolio.this) { return new LotView(slots.nextInt());}
+            }
+        };
+    }
+
+
+    /**
+     * Returns sales made between the two timestamps (both included), oldest first, one at a time.
+     * Later sales can be added while the iterator is used, it fails if an earlier sale is added.
+     *
+     * @param startTimeStamp a UNIX timestamp representing the start range date
+     * @param endTimeStamp   a UNIX timestamp representing the end range date
+     * @return iterator of sales in time order.
+     */
+    public synchronized Iterator<SoldAsset> iterateSalesInRange(long startTimeStamp,
+                                                               long endTimeStamp) {
+        SaleHistory.Cursor cursor = saleHistory.cursor(startTimeStamp, endTimeStamp);
+        return new Iterator<>() {
+            private boolean moved;
+            private boolean more;
+
+            @Override
+            public boolean hasNext() {
+                synchronized (Portfolio.this) {
+                    if (!moved) {
+                        more = cursor.next();
+                        moved = true;
+                    }
+                    return more;
+                }
+            }
+
+            @Override
+            public SoldAsset next() {
+                synchronized (Portfolio.this) {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    moved = false;
+                    return new SoldAsset(cursor.getAssetSymbol(), cursor.getAssetFullName(),
+                            cursor.getAssetType(), cursor.getTimeStamp(),
+                            cursor.getAvgPurchasePrice(), cursor.getPriceSold(), cursor.getAmount());
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Returns amount held of one asset symbol, summed over its lots in purchase order. Sales are
+     * checked against this, the valuation's running amount can drift from it by rounding.
+     *
+     * @param assetSymbol asset symbol.
+     * @return amount held, 0 if symbol is not held.
+     */
+    public synchronized double getAmount(String assetSymbol) {
+        double amount = 0;
+        for (int slot = lots.firstOfSymbol(lots.findSymbol(assetSymbol)); slot != LotStore.NONE;
+             slot = lots.nextOfSymbol(slot))
+            amount += lots.getAmount(slot);
+        return amount;
+    }
+
+
+    /**
+     * Returns money available to buy assets.
+     *
+     * @return available funds in USD.
+     */
+    public synchronized double getFunds() { return funds;}
+
+
+    /**
+     * Adds money paid in by the user to the available funds.
+     *
+     * @param amount amount in USD.
+     */
+    public synchronized void depositFunds(double amount) {
+        funds += amount;
+        if (journal != null)
+            journal.fundsDeposited(amount);
+    }
+
+
+    /**
+     * Takes money to pay for assets from the available funds if there is enough of it. Checking
+     * and taking is one step, so two purchases never spend the same money.
+     *
+     * @param amount amount in USD.
+     * @return true if the funds were enough and the amount was taken.
+     */
+    public synchronized boolean reserveFunds(double amount) {
+        if (funds - amount < 0)
+            return false;
+
+        funds -= amount;
+        if (journal != null)
+            journal.fundsReserved(amount);
+        return true;
+    }
+
+
+    /**
+     * Adds money from a sale, or from a purchase which was not made, to the available funds.
+     *
+     * @param amount amount in USD.
+     */
+    public synchronized void creditFunds(double amount) {
+        funds += amount;
+        if (journal != null)
+            journal.fundsCredited(amount);
     }
 
 
@@ -79,17 +431,19 @@ public class Portfolio {
     /**
      * Returns the list of asset names from the user's portfolio.
      *
-     * @return the list of assets names.
+     * @return copy of the list of assets names.
      */
-    public List<String> getAllAssetNames() { return allAssetNames;}
+    public synchronized List<String> getAllAssetNames() { return new ArrayList<>(allAssetNames);}
 
 
     /**
      * Returns the hashmap with the asset symbols and types from the user's portfolio.
      *
-     * @return the hashmap with asset info.
+     * @return copy of the hashmap with asset info.
      */
-    public HashMap<String, String> getAssetsInPortfolio() { return assetsInPortfolio;}
+    public synchronized HashMap<String, String> getAssetsInPortfolio() {
+        return new HashMap<>(assetsInPortfolio);
+    }
 
 
     /**
@@ -98,7 +452,7 @@ public class Portfolio {
      * @param assetSymbol asset symbol
      * @return right portfolio list.
      */
-    public List<Asset> findPortfolioListType(String assetSymbol) {
+    public synchronized List<Asset> findPortfolioListType(String assetSymbol) {
         String rightPortfolio = assetsInPortfolio.get(assetSymbol);
 
         if(rightPortfolio.equals("CRYPTOCURRENCY"))
@@ -107,11 +461,428 @@ public class Portfolio {
         return stock;
     }
 
-    public HashMap<String, String> getSymbolFullName() {
-        return symbolFullName;
+    /**
+     * Returns the hashmap with the asset full names and symbols from the user's portfolio.
+     *
+     * @return copy of the hashmap of full name to symbol.
+     */
+    public synchronized HashMap<String, String> getSymbolFullName() {
+        return new HashMap<>(symbolFullName);
     }
 
+    /**
+     * Returns directory of the symbols and full names held, kept up to date with the portfolio.
+     *
+     * @return directory of the assets held.
+     */
+    public SymbolDirectory getSymbolDirectory() { return directory;}
+
     public List<SoldAsset> getSoldAssets() {
         return soldAssets;
     }
+
+
+    /**
+     * Returns the store of the sales, which also reads sales of a time range in place.
+     *
+     * @return sale history of the portfolio.
+     */
+    public SaleHistory getSaleHistory() { return saleHistory;}
+
+
+    /**
+     * Returns running valuation of the assets held in the portfolio.
+     *
+     * @return per symbol amounts, cost basis and last known prices.
+     */
+    public PortfolioValuation getValuation() { return valuation;}
+
+
+    /**
+     * Helper method to add asset to a list and all indexes.
+     *
+     * @param list  stock or crypto list.
+     * @param asset asset to add.
+     */
+    private void addLot(int list, Asset asset) {
+        String symbol = asset.getAssetSymbol();
+        if (lots.countOfSymbol(lots.findSymbol(symbol)) == 0) {
+            // first asset of the symbol
+            assetsInPortfolio.put(symbol, asset.getAssetType());
+            symbolFullName.put(asset.getAssetFullName(), symbol);
+            directory.put(symbol, asset.getAssetFullName());
+            if (!allAssetNames.contains(asset.getAssetFullName()))
+                allAssetNames.add(asset.getAssetFullName());
+        }
+
+        int symbolId = lots.internSymbol(symbol, asset.getAssetFullName(), asset.getAssetType());
+        lots.add(list, symbolId, asset.getTimeStamp(), asset.getPriceBought(), asset.getAmount());
+        lotList(list).slots = null;
+        valuation.recordPurchase(symbol, asset.getAmount(), asset.getPriceBought());
+
+        if (journal != null)
+            journal.lotAdded(list, asset);
+    }
+
+
+    /**
+     * Helper method to remove a lot from its list and all indexes. A view used to remove the lot
+     * keeps the lot values, so it can still be read afterwards.
+     *
+     * @param slot  slot of the lot.
+     * @param asset asset the lot was found by.
+     */
+    private void removeLot(int slot, Object asset) {
+        if (asset instanceof LotView)
+            ((LotView) asset).detach();
+
+        int symbolId = lots.getSymbolId(slot);
+        String symbol = lots.getSymbol(symbolId);
+        String fullName = lots.getFullName(symbolId);
+        long timeStamp = lots.getTimeStamp(slot);
+        double amount = lots.getAmount(slot);
+        double priceBought = lots.getPrice(slot);
+        lotList(lots.getList(slot)).slots = null;
+        lots.remove(slot);
+        valuation.recordSale(symbol, amount, amount * priceBought);
+
+        if (lots.countOfSymbol(symbolId) == 0) {
+            // last asset of the symbol
+            assetsInPortfolio.remove(symbol);
+            symbolFullName.remove(fullName);
+            allAssetNames.remove(fullName);
+            directory.remove(symbol);
+        }
+
+        if (journal != null)
+            journal.lotRemoved(symbol, timeStamp, priceBought, amount);
+    }
+
+
+    /**
+     * Helper method to find the stock or crypto list by its number.
+     *
+     * @param list stock or crypto list number of the lot store.
+     * @return the list.
+     */
+    private LotList lotList(int list) { return list == LotStore.CRYPTO ? crypto : stock;}
+
+
+    /**
+     * Helper method to find a symbol lock, making all locks with the first one asked for.
+     *
+     * @param stripe number of the lock.
+     * @return the lock.
+     */
+    private Lock getSymbolLock(int stripe) {
+        if (symbolLocks == null) {
+            symbolLocks = new Lock[LOCK_STRIPES];
+            for (int i = 0; i < LOCK_STRIPES; i++)
+                symbolLocks[i] = new ReentrantLock();
+        }
+        return symbolLocks[stripe];
+    }
+
+
+    /**
+     * Helper method to make a view of a lot which keeps the lot values of this moment.
+     *
+     * @param slot slot of the lot.
+     * @return snapshot view.
+     */
+    private LotView snapshotView(int slot) {
+        LotView view = new LotView(slot);
+        view.detach();
+        return view;
+    }
+
+
+    /**
+     * Helper method to find the stored lot of an asset. Views of this portfolio point at their lot,
+     * other assets are matched by symbol, timestamp, price and amount.
+     *
+     * @param asset asset to find.
+     * @param list  stock or crypto list to search, NONE for both.
+     * @return slot of the lot or NONE if it is not held.
+     */
+    private int findSlot(Object asset, int list) {
+        if (asset instanceof LotView && ((LotView) asset).portfolio() == this) {
+            LotView view = (LotView) asset;
+            if (!lots.isLive(view.slot, view.generation))
+                return LotStore.NONE;
+            return list == LotStore.NONE || lots.getList(view.slot) == list
+                    ? view.slot : LotStore.NONE;
+        }
+        if (!(asset instanceof Asset))
+            return LotStore.NONE;
+
+        Asset other = (Asset) asset;
+        int symbolId = lots.findSymbol(other.getAssetSymbol());
+        for (int slot = lots.firstOfSymbol(symbolId); slot != LotStore.NONE;
+             slot = lots.nextOfSymbol(slot)) {
+            if ((list == LotStore.NONE || lots.getList(slot) == list)
+                    && lots.getTimeStamp(slot) == other.getTimeStamp()
+                    && lots.getPrice(slot) == other.getPriceBought()
+                    && lots.getAmount(slot) == other.getAmount())
+                return slot;
+        }
+        return LotStore.NONE;
+    }
+
+
+    /**
+     * List of sales of the portfolio, a view of the sale history in time order. Sales are only ever
+     * added, an added sale takes its place by its timestamp. Sales of a history which is not kept
+     * on disk are journaled.
+     */
+    private class SaleList extends AbstractList<SoldAsset> {
+
+        @Override
+        public SoldAsset get(int index) {
+            synchronized (Portfolio.this) { return saleHistory.get(index);}
+        }
+
+        @Override
+        public int size() {
+            synchronized (Portfolio.this) { return saleHistory.size();}
+        }
+
+        @Override
+        public void add(int index, SoldAsset soldAsset) {
+            synchronized (Portfolio.this) {
+                if (index != size())
+                    throw new UnsupportedOperationException("sales can only be added at the end");
+                saleHistory.add(soldAsset);
+
+                if (journal != null && !saleHistory.isPersistent())
+                    journal.saleRecorded(soldAsset);
+            }
+        }
+    }
+
+
+    /**
+     * Stock or crypto list of the portfolio. The list is a view of the lot store, lots are kept in
+     * purchase order and adding or removing one does not shift the rest of the list. Changes made
+     * through the list keep the symbol index and valuation up to date. Every method holds the
+     * portfolio's monitor, going through the list needs a synchronized block on the portfolio.
+     * <p>
+     * Lots of a list are linked, so get by index reads an array of the slots in list order. The
+     * array is made again on the first get after a lot was added or removed, which costs one pass
+     * over the list; loops changing the list at every step are better made with the iterator.
+     */
+    private class LotList extends AbstractList<Asset> implements RandomAccess {
+
+        private final int list;
+        // slots in list order, null until needed after a change
+        private int[] slots;
+
+        private LotList(int list) { this.list = list;}
+
+        @Override
+        public Asset get(int index) {
+            synchronized (Portfolio.this) {
+                if (index < 0 || index >= size())
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+
+                if (slots == null) {
+                    slots = new int[size()];
+                    int slot = lots.firstOfList(list);
+                    for (int i = 0; i < slots.length; i++, slot = lots.nextOfList(slot))
+                        slots[i] = slot;
+                }
+                return new LotView(slots[index]);
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (Portfolio.this) { return lots.sizeOfList(list);}
+        }
+
+        @Override
+        public boolean add(Asset asset) {
+            synchronized (Portfolio.this) { addLot(list, asset);}
+            return true;
+        }
+
+        @Override
+        public void add(int index, Asset asset) {
+            synchronized (Portfolio.this) {
+                if (index != size())
+                    throw new UnsupportedOperationException("assets can only be added at the end");
+                addLot(list, asset);
+            }
+        }
+
+        @Override
+        public boolean remove(Object asset) {
+            synchronized (Portfolio.this) {
+                int slot = findSlot(asset, list);
+                if (slot == LotStore.NONE)
+                    return false;
+
+                removeLot(slot, asset);
+                return true;
+            }
+        }
+
+        @Override
+        public Asset remove(int index) {
+            synchronized (Portfolio.this) {
+                Asset asset = get(index);
+                remove(asset);
+                return asset;
+            }
+        }
+
+        @Override
+        public boolean contains(Object asset) {
+            synchronized (Portfolio.this) { return findSlot(asset, list) != LotStore.NONE;}
+        }
+
+        @Override
+        public Iterator<Asset> iterator() {
+            int first;
+            synchronized (Portfolio.this) { first = lots.firstOfList(list);}
+            return new Iterator<>() {
+                private int next = first;
+                private LotView current;
+
+                @Override
+                public boolean hasNext() { return next != LotStore.NONE;}
+
+                @Override
+                public Asset next() {
+                    synchronized (Portfolio.this) {
+                        if (next == LotStore.NONE)
+                            throw new NoSuchElementException();
+                        current = new LotView(next);
+                        next = lots.nextOfList(next);
+                        return current;
+                    }
+                }
+
+                @Override
+                public void remove() {
+                    synchronized (Portfolio.this) {
+                        if (current == null || !lots.isLive(current.slot, current.generation))
+                            throw new IllegalStateException();
+                        removeLot(current.slot, current);
+                        current = null;
+                    }
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Asset view of one stored lot. A live view reads the lot store, so it holds no values of its
+     * own until the lot is removed through it. A snapshot view keeps a copy of the lot values of
+     * the moment it was made. Both still point at their lot, and setting the amount goes through
+     * the portfolio, so the valuation stays up to date.
+     */
+    private class LotView extends Asset {
+
+        private final int slot;
+        private final int generation;
+        private Asset detached;
+
+        private LotView(int slot) {
+            this.slot = slot;
+            this.generation = lots.getGeneration(slot);
+        }
+
+        @Override
+        public String getAssetSymbol() {
+            synchronized (Portfolio.this) {
+                return detached != null ? detached.getAssetSymbol() : lots.getSymbol(symbolId());
+            }
+        }
+
+        @Override
+        public String getAssetFullName() {
+            synchronized (Portfolio.this) {
+                return detached != null ? detached.getAssetFullName()
+                        : lots.getFullName(symbolId());
+            }
+        }
+
+        @Override
+        public String getAssetType() {
+            synchronized (Portfolio.this) {
+                return detached != null ? detached.getAssetType() : lots.getType(symbolId());
+            }
+        }
+
+        @Override
+        public long getTimeStamp() {
+            synchronized (Portfolio.this) {
+                return detached != null ? detached.getTimeStamp()
+                        : lots.getTimeStamp(checkedSlot());
+            }
+        }
+
+        @Override
+        public double getPriceBought() {
+            synchronized (Portfolio.this) {
+                return detached != null ? detached.getPriceBought() : lots.getPrice(checkedSlot());
+            }
+        }
+
+        @Override
+        public double getAmount() {
+            synchronized (Portfolio.this) {
+                return detached != null ? detached.getAmount() : lots.getAmount(checkedSlot());
+            }
+        }
+
+        @Override
+        public void setAmount(double amount) {
+            synchronized (Portfolio.this) {
+                if (lots.isLive(slot, generation))
+                    changeAmount(this, amount);
+                else if (detached != null)
+                    detached.setAmount(amount);
+                else
+                    throw new IllegalStateException("asset was removed from the portfolio");
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LotView))
+                return false;
+            LotView view = (LotView) other;
+            synchronized (Portfolio.this) {
+                if (detached != null || view.detached != null)
+                    return this == view;
+            }
+            return view.portfolio() == portfolio() && view.slot == slot
+                    && view.generation == generation;
+        }
+
+        @Override
+        public int hashCode() { return 31 * slot + generation;}
+
+        private Portfolio portfolio() { return Portfolio.this;}
+
+        private int symbolId() { return lots.getSymbolId(checkedSlot());}
+
+        private int checkedSlot() {
+            if (!lots.isLive(slot, generation))
+                throw new IllegalStateException("asset was removed from the portfolio");
+            return slot;
+        }
+
+        /**
+         * Copies lot values into the view, before the lot is removed or to make a snapshot view.
+         */
+        private void detach() {
+            if (detached == null && lots.isLive(slot, generation))
+                detached = new Asset(getAssetSymbol(), getAssetFullName(), getAssetType(),
+                        getTimeStamp(), getPriceBought(), getAmount());
+        }
+    }
 }
@@ -0,0 +1,452 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PortfolioAnalytics class values a portfolio over time from historic prices. It makes the profit
+ * and loss curve of every held symbol and of the whole portfolio on a grid of timestamps, with
+ * returns, volatility and drawdown of the portfolio.
+ * <p>
+ * Work is split by symbol, every symbol is valued on its own, and the symbol curves are summed in
+ * windows of the grid. Both run as fork join tasks on the pool, or in the calling thread when the
+ * analytics have no pool, which is the baseline to compare the parallel run with. All curves are
+ * primitive arrays.
+ * <p>
+ * The profit and loss at a time is the value of the holdings less the money put into them: lots
+ * still held count from their purchase and a sale takes its proceeds out. Lots which were sold
+ * are gone from the portfolio, so sold amounts count as held at their average purchase price from
+ * the start of the grid until their sale.
+ */
+public class PortfolioAnalytics {
+
+  public static final int WINDOW_POINTS = 4096;
+
+  private final HistoryProvider historyProvider;
+  private final ForkJoinPool pool;
+
+
+  /**
+   * Constructor to instantiate analytics running on the common pool.
+   *
+   * @param historyProvider source of historic prices.
+   */
+  public PortfolioAnalytics(HistoryProvider historyProvider) {
+    this(historyProvider, ForkJoinPool.commonPool());
+  }
+
+
+  /**
+   * Constructor to instantiate analytics.
+   *
+   * @param historyProvider source of historic prices.
+   * @param pool            pool the work is split over, null to do all work in the calling thread.
+   */
+  public PortfolioAnalytics(HistoryProvider historyProvider, ForkJoinPool pool) {
+    this.historyProvider = historyProvider;
+    this.pool = pool;
+  }
+
+
+  /**
+   * Values a portfolio at every interval from start to end. Historic prices of every symbol held
+   * or sold are fetched from the history provider first.
+   *
+   * @param portfolio portfolio to value.
+   * @param interval  time between points, one of 1m 5m 15m 1d 1wk 1mo.
+   * @param start     UNIX timestamp of the first point, inclusive.
+   * @param end       UNIX timestamp after the last point, exclusive.
+   * @return curves of the portfolio.
+   * @throws IOException          thrown if prices could not be fetched.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for prices.
+   */
+  public Curves analyse(Portfolio portfolio, String interval, long start, long end)
+      throws IOException, InterruptedException {
+
+    long step = HistoryCache.intervalSeconds(interval);
+    long first = Math.floorDiv(start + step - 1, step) * step;
+    int points = first < end ? (int) ((end - 1 - first) / step + 1) : 0;
+    long[] timeStamps = new long[points];
+    for (int i = 0; i < points; i++) {
+      timeStamps[i] = first + i * step;
+    }
+
+    Set<String> symbols = new LinkedHashSet<>(portfolio.getLotsBySymbol().keySet());
+    for (SoldAsset sale : portfolio.getSalesInRange(0, Long.MAX_VALUE)) {
+      symbols.add(sale.getAssetSymbol());
+    }
+
+    // one point before the grid so the first point has a price
+    Map<String, List<AssetQuote>> history = new LinkedHashMap<>();
+    for (String symbol : symbols) {
+      history.put(symbol, historyProvider.getHistory(symbol, interval, first - step, end));
+    }
+    return analyse(portfolio, history, timeStamps);
+  }
+
+
+  /**
+   * Values a portfolio on a grid of timestamps with known historic prices. The price of a symbol
+   * at a point is the last price before or at it, or the first price of the symbol if the point
+   * is before all of them. Symbols without prices are left out.
+   *
+   * @param portfolio  portfolio to value.
+   * @param history    historic prices in time order keyed by symbol.
+   * @param timeStamps UNIX timestamps of the grid in increasing order.
+   * @return curves of the portfolio.
+   */
+  public Curves analyse(Portfolio portfolio, Map<String, List<AssetQuote>> history,
+      long[] timeStamps) {
+
+    Map<String, Collection<Asset>> lots = portfolio.getLotsBySymbol();
+    Map<String, List<SoldAsset>> sales = new LinkedHashMap<>();
+    for (SoldAsset sale : portfolio.getSalesInRange(0, Long.MAX_VALUE)) {
+      sales.computeIfAbsent(sale.getAssetSymbol(), symbol -> new ArrayList<>()).add(sale);
+    }
+
+    List<String> valued = new ArrayList<>();
+    List<String> missing = new ArrayList<>();
+    Set<String> symbols = new LinkedHashSet<>(lots.keySet());
+    symbols.addAll(sales.keySet());
+    for (String symbol : symbols) {
+      List<AssetQuote> prices = history.get(symbol);
+      (prices == null || prices.isEmpty() ? missing : valued).add(symbol);
+    }
+
+    // every symbol on its own
+    int points = timeStamps.length;
+    double[][] values = new double[valued.size()][];
+    double[][] profits = new double[valued.size()][];
+    run(valued.size(), 1, (from, to) -> {
+      for (int s = from; s < to; s++) {
+        String symbol = valued.get(s);
+        values[s] = new double[points];
+        profits[s] = new double[points];
+        valueSymbol(timeStamps, lots.getOrDefault(symbol, List.of()),
+            sales.getOrDefault(symbol, List.of()), history.get(symbol), values[s], profits[s]);
+      }
+    });
+
+    // symbols summed in windows of the grid
+    double[] value = new double[points];
+    double[] profit = new double[points];
+    run(points, WINDOW_POINTS, (from, to) -> {
+      for (int s = 0; s < values.length; s++) {
+        double[] symbolValue = values[s];
+        double[] symbolProfit = profits[s];
+        for (int i = from; i < to; i++) {
+          value[i] += symbolValue[i];
+          profit[i] += symbolProfit[i];
+        }
+      }
+    });
+
+    Map<String, double[]> symbolProfits = new LinkedHashMap<>();
+    for (int s = 0; s < valued.size(); s++) {
+      symbolProfits.put(valued.get(s), profits[s]);
+    }
+    return new Curves(timeStamps, value, profit, symbolProfits, missing);
+  }
+
+
+  public HistoryProvider getHistoryProvider() {
+    return historyProvider;
+  }
+
+
+  /**
+   * Returns pool the work is split over.
+   *
+   * @return the pool, null if all work is done in the calling thread.
+   */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to value one symbol. Purchases and sales are added to the point they happen at
+   * and the holding is summed up along the grid, while the price is carried forward.
+   *
+   * @param timeStamps grid.
+   * @param lots       lots of the symbol still held.
+   * @param sales      sales of the symbol.
+   * @param prices     historic prices of the symbol in time order.
+   * @param value      value of the holding at every point, filled by the method.
+   * @param profit     profit and loss of the holding at every point, filled by the method.
+   */
+  private static void valueSymbol(long[] timeStamps, Collection<Asset> lots,
+      List<SoldAsset> sales, List<AssetQuote> prices, double[] value, double[] profit) {
+
+    int points = timeStamps.length;
+    if (points == 0) {
+      return;
+    }
+
+    // changes of amount and of money put in, value is used for amounts and profit for money
+    double amount = 0;
+    double invested = 0;
+    for (Asset lot : lots) {
+      int point = pointOf(timeStamps, lot.getTimeStamp());
+      if (point < 0) {
+        amount += lot.getAmount();
+        invested += lot.getPriceBought() * lot.getAmount();
+      } else if (point < points) {
+        value[point] += lot.getAmount();
+        profit[point] += lot.getPriceBought() * lot.getAmount();
+      }
+    }
+    for (SoldAsset sale : sales) {
+      int point = pointOf(timeStamps, sale.getTimeStamp());
+      amount += sale.getAmount();
+      invested += sale.getAvgPurchasePrice() * sale.getAmount();
+      if (point < 0) {
+        amount -= sale.getAmount();
+        invested -= sale.getPriceSold() * sale.getAmount();
+      } else if (point < points) {
+        value[point] -= sale.getAmount();
+        profit[point] -= sale.getPriceSold() * sale.getAmount();
+      }
+    }
+
+    int next = 0;
+    int size = prices.size();
+    double price = prices.get(0).getLivePrice();
+    for (int i = 0; i < points; i++) {
+      while (next < size && prices.get(next).getTimeStamp() <= timeStamps[i]) {
+        price = prices.get(next++).getLivePrice();
+      }
+      amount += value[i];
+      invested += profit[i];
+      value[i] = amount * price;
+      profit[i] = value[i] - invested;
+    }
+  }
+
+
+  /**
+   * Helper method to find the first point at or after a time.
+   *
+   * @param timeStamps grid.
+   * @param time       time of a purchase or sale.
+   * @return index of the point, -1 if the time is at or before the first point and the length of
+   *     the grid if it is after the last one.
+   */
+  private static int pointOf(long[] timeStamps, long time) {
+    if (time <= timeStamps[0]) {
+      return -1;
+    }
+    int low = 1;
+    int high = timeStamps.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (timeStamps[middle] < time) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+
+  /**
+   * Helper method to run work over a range of indexes, split into parts of at most grain indexes
+   * on the pool, or at once in the calling thread if there is no pool.
+   *
+   * @param size   number of indexes.
+   * @param grain  largest part run as one task.
+   * @param action work on a part.
+   */
+  private void run(int size, int grain, RangeAction action) {
+    if (size == 0) {
+      return;
+    }
+    if (pool == null) {
+      action.run(0, size);
+    } else {
+      pool.invoke(new RangeTask(0, size, grain, action));
+    }
+  }
+
+
+  /**
+   * Work on the indexes from, inclusive, to, exclusive.
+   */
+  @FunctionalInterface
+  private interface RangeAction {
+
+    void run(int from, int to);
+  }
+
+
+  /**
+   * Task which halves its range until the parts are small enough.
+   */
+  private static final class RangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final RangeAction action;
+
+    private RangeTask(int from, int to, int grain, RangeAction action) {
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= grain) {
+        action.run(from, to);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new RangeTask(from, middle, grain, action),
+          new RangeTask(middle, to, grain, action));
+    }
+  }
+
+
+  /**
+   * Curves of a portfolio on a grid. Arrays are not copied and must not be changed.
+   */
+  public static final class Curves {
+
+    private final long[] timeStamps;
+    private final double[] value;
+    private final double[] profitAndLoss;
+    private final double[] returns;
+    private final Map<String, double[]> symbolProfitAndLoss;
+    private final List<String> missingSymbols;
+    private final double volatility;
+    private final double maxDrawdown;
+
+    private Curves(long[] timeStamps, double[] value, double[] profitAndLoss,
+        Map<String, double[]> symbolProfitAndLoss, List<String> missingSymbols) {
+      this.timeStamps = timeStamps;
+      this.value = value;
+      this.profitAndLoss = profitAndLoss;
+      this.symbolProfitAndLoss = symbolProfitAndLoss;
+      this.missingSymbols = missingSymbols;
+
+      // return of a step is the change of profit over the value held during it
+      returns = new double[timeStamps.length];
+      double sum = 0;
+      double squares = 0;
+      double peak = Double.NEGATIVE_INFINITY;
+      double drawdown = 0;
+      for (int i = 0; i < timeStamps.length; i++) {
+        if (i > 0 && value[i - 1] != 0) {
+          returns[i] = (profitAndLoss[i] - profitAndLoss[i - 1]) / value[i - 1];
+        }
+        if (i > 0) {
+          sum += returns[i];
+          squares += returns[i] * returns[i];
+        }
+        peak = Math.max(peak, profitAndLoss[i]);
+        drawdown = Math.max(drawdown, peak - profitAndLoss[i]);
+      }
+      int steps = timeStamps.length - 1;
+      volatility = steps > 1
+          ? Math.sqrt(Math.max(0, (squares - sum * sum / steps) / (steps - 1))) : 0;
+      maxDrawdown = drawdown;
+    }
+
+
+    public long[] getTimeStamps() {
+      return timeStamps;
+    }
+
+
+    /**
+     * Returns value of the holdings at every point.
+     *
+     * @return values in USD.
+     */
+    public double[] getValue() {
+      return value;
+    }
+
+
+    /**
+     * Returns profit and loss of the portfolio at every point.
+     *
+     * @return profit and loss in USD.
+     */
+    public double[] getProfitAndLoss() {
+      return profitAndLoss;
+    }
+
+
+    /**
+     * Returns return of every step, the first point has none.
+     *
+     * @return returns, 0.01 for 1%.
+     */
+    public double[] getReturns() {
+      return returns;
+    }
+
+
+    /**
+     * Returns profit and loss of one symbol at every point.
+     *
+     * @param symbol asset symbol as held.
+     * @return profit and loss in USD, null if the symbol was not valued.
+     */
+    public double[] getProfitAndLoss(String symbol) {
+      return symbolProfitAndLoss.get(symbol);
+    }
+
+
+    public Set<String> getSymbols() {
+      return symbolProfitAndLoss.keySet();
+    }
+
+
+    /**
+     * Returns symbols left out because they have no historic prices.
+     *
+     * @return asset symbols.
+     */
+    public List<String> getMissingSymbols() {
+      return missingSymbols;
+    }
+
+
+    /**
+     * Returns standard deviation of the returns of a step.
+     *
+     * @return volatility, 0.01 for 1%.
+     */
+    public double getVolatility() {
+      return volatility;
+    }
+
+
+    /**
+     * Returns largest fall of profit and loss from an earlier peak.
+     *
+     * @return drawdown in USD.
+     */
+    public double getMaxDrawdown() {
+      return maxDrawdown;
+    }
+  }
+}
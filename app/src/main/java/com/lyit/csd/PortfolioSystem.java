@@ -2,6 +2,7 @@ package com.lyit.csd;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface PortfolioSystem {
 
@@ -57,6 +58,21 @@ public interface PortfolioSystem {
    */
   boolean sellAsset(String assetSymbol, double amount) throws IOException, InterruptedException;
 
+  /**
+   * Execute a batch of purchases and sales. All orders are priced with one request for the live
+   * prices of their symbols. Sales are made before purchases, so money from the sales of the batch
+   * pays for its purchases, and funds are checked for the whole batch.
+   * <p>
+   * An atomic batch is executed completely or not at all: if any order can not be executed, no
+   * order is. Otherwise every order is executed if it can be and the others report why not.
+   *
+   * @param orders orders to execute
+   * @param atomic true to execute all orders or none
+   * @return result of every order, in the order of the orders
+   */
+  List<OrderResult> executeOrders(List<Order> orders, boolean atomic)
+      throws IOException, InterruptedException;
+
   /**
    * Returns a list of trending stocks symbols, their current market price and the days gain or loss
    * in price and as a percentage. Yahoo finance provides this information for you.
@@ -100,11 +116,39 @@ public interface PortfolioSystem {
    * exchange.
    *
    * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
-   * @return A list of AssetQuote objects. Return an empty list if we have no assets in our
-   * portfolio.
+   * @return A list of AssetQuote objects in order of the names, each asset once. Return an empty
+   * list if we have no assets in our portfolio.
    */
   List<AssetQuote> getAssetInformation(List<String> assetNames);
 
+  /**
+   * Retrieve realtime quote data for the assets within the list assetNames without blocking the
+   * calling thread. Quotes for all names are requested at the same time.
+   *
+   * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
+   * @return A future completed with a list of AssetQuote objects. The list is empty if we have no
+   * assets in our portfolio.
+   */
+  CompletableFuture<List<AssetQuote>> getAssetInformationAsync(List<String> assetNames);
+
+  /**
+   * Find the assets of the portfolio for every name in assetNames and their realtime quotes. Names
+   * which match no asset, or whose assets have no quote, tell why.
+   *
+   * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
+   * @return lookup of every name, in order of the names
+   */
+  List<AssetLookup> lookupAssets(List<String> assetNames);
+
+  /**
+   * Find the assets of the portfolio for every name in assetNames and their realtime quotes
+   * without blocking the calling thread. Quotes for all names are requested at the same time.
+   *
+   * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
+   * @return A future completed with the lookup of every name, in order of the names
+   */
+  CompletableFuture<List<AssetLookup>> lookupAssetsAsync(List<String> assetNames);
+
   /**
    * Retrieve the current value of all of the assets in the portfolio based on the current live
    * value of each asset.
@@ -113,6 +157,14 @@ public interface PortfolioSystem {
    */
   double getPortfolioValue();
 
+  /**
+   * Retrieve the current value of all of the assets in the portfolio without blocking the calling
+   * thread. Live values of all assets are requested at the same time.
+   *
+   * @return a future completed with the value of the portfolio in USD
+   */
+  CompletableFuture<Double> getPortfolioValueAsync();
+
   /**
    * Returns a formatted string detailing the name, symbol, average purchase price, current value
    * and amount of each asset within the portfolio. The difference in average purchase price and
@@ -122,6 +174,23 @@ public interface PortfolioSystem {
    */
   String listAllInvestments();
 
+  /**
+   * Returns a formatted string detailing every asset within the portfolio, like
+   * listAllInvestments, without blocking the calling thread. Live values of all assets are
+   * requested at the same time.
+   *
+   * @return a future completed with summary information on the assets in the portfolio.
+   */
+  CompletableFuture<String> listAllInvestmentsAsync();
+
+  /**
+   * Writes details of every asset within the portfolio, like listAllInvestments, to the output as
+   * they are made, so the whole report is never held in memory.
+   *
+   * @param out destination of the summary information on the assets in the portfolio.
+   */
+  void listAllInvestments(Appendable out) throws IOException, InterruptedException;
+
   /**
    * Retrieve a formatted string containing all of the assets within the portfolio of the specified
    * asset type ("stock" or "cryptocurrencies"). String contains the name, symbol, average purchase
@@ -166,6 +235,18 @@ public interface PortfolioSystem {
    */
   String listPortfolioPurchasesInRange(long startTimeStamp, long endTimeStamp) throws IOException, InterruptedException;
 
+  /**
+   * Writes summary information for all assets within the portfolio purchased between the dates
+   * startTimeStamp and endTimeStamp, like listPortfolioPurchasesInRange, to the output as it is
+   * made, so the whole report is never held in memory.
+   *
+   * @param startTimeStamp a UNIX timestamp representing the start range date
+   * @param endTimeStamp   a UNIX timestamp representing the end range date
+   * @param out            destination of the summary information
+   */
+  void listPortfolioPurchasesInRange(long startTimeStamp, long endTimeStamp, Appendable out)
+      throws IOException, InterruptedException;
+
 
   /**
    * Retrieve a formatted string containing a summary of all of the assets sales between the dates
@@ -184,5 +265,17 @@ public interface PortfolioSystem {
    */
   String listPortfolioSalesInRange(long startTimeStamp, long endTimeStamp);
 
+  /**
+   * Writes a summary of all of the assets sales between the dates startTimeStamp and
+   * endTimeStamp, like listPortfolioSalesInRange, to the output as it is made, so the whole report
+   * is never held in memory.
+   *
+   * @param startTimeStamp a UNIX timestamp representing the start range date
+   * @param endTimeStamp   a UNIX timestamp representing the end range date
+   * @param out            destination of the summary information
+   */
+  void listPortfolioSalesInRange(long startTimeStamp, long endTimeStamp, Appendable out)
+      throws IOException;
+
 
 }
@@ -0,0 +1,185 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PortfolioValuation class keeps a running live value of the portfolio. For every asset symbol it
+ * holds the total amount, the cost basis (what was paid for that amount) and the last known price.
+ * Purchases, sales and price changes only update the symbol they are about, so the total value can
+ * be read without going through every asset of the portfolio again.
+ */
+public class PortfolioValuation {
+
+  // amounts smaller than this are treated as fully sold
+  private static final double EMPTY_AMOUNT = 1e-9;
+
+  private final Map<String, Position> positions = new HashMap<>();
+  private double marketValue;
+  private double costBasis;
+
+
+  /**
+   * Records bought amount of an asset. The purchase price becomes the last known price if the
+   * symbol was not held before.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @param amount      amount bought.
+   * @param priceBought price paid for one unit.
+   */
+  public synchronized void recordPurchase(String assetSymbol, double amount, double priceBought) {
+    Position position = positions.get(assetSymbol);
+    if (position == null) {
+      position = new Position(priceBought);
+      positions.put(assetSymbol, position);
+    }
+    position.amount += amount;
+    position.costBasis += amount * priceBought;
+    marketValue += amount * position.lastPrice;
+    costBasis += amount * priceBought;
+  }
+
+
+  /**
+   * Records sold amount of an asset. The symbol is dropped once nothing of it is held.
+   *
+   * @param assetSymbol  symbol of the asset.
+   * @param amount       amount sold.
+   * @param costOfAmount what was paid for the sold amount when it was bought.
+   */
+  public synchronized void recordSale(String assetSymbol, double amount, double costOfAmount) {
+    Position position = positions.get(assetSymbol);
+    if (position == null) {
+      return;
+    }
+    position.amount -= amount;
+    position.costBasis -= costOfAmount;
+    marketValue -= amount * position.lastPrice;
+    costBasis -= costOfAmount;
+
+    if (position.amount <= EMPTY_AMOUNT) {
+      // remove what is left of rounding errors together with the symbol
+      marketValue -= position.amount * position.lastPrice;
+      costBasis -= position.costBasis;
+      positions.remove(assetSymbol);
+    }
+  }
+
+
+  /**
+   * Updates last known price of a held asset.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @param livePrice   current price of one unit.
+   * @return true if the price changed and the value was updated.
+   */
+  public synchronized boolean updatePrice(String assetSymbol, double livePrice) {
+    Position position = positions.get(assetSymbol);
+    if (position == null || position.lastPrice == livePrice) {
+      return false;
+    }
+    marketValue += position.amount * (livePrice - position.lastPrice);
+    position.lastPrice = livePrice;
+    return true;
+  }
+
+
+  /**
+   * Updates last known prices from live quotes. Only symbols whose price changed are updated.
+   *
+   * @param quotes live quotes, quotes for symbols which are not held are ignored.
+   * @return number of symbols whose price changed.
+   */
+  public synchronized int updatePrices(Iterable<AssetQuote> quotes) {
+    int changed = 0;
+    for (AssetQuote quote : quotes) {
+      if (updatePrice(quote.getAssetSymbol(), quote.getLivePrice())) {
+        changed++;
+      }
+    }
+    return changed;
+  }
+
+
+  /**
+   * Returns value of the portfolio at the last known prices.
+   *
+   * @return value in USD.
+   */
+  public synchronized double getMarketValue() {
+    return marketValue;
+  }
+
+
+  /**
+   * Returns what was paid for all assets still held.
+   *
+   * @return cost in USD.
+   */
+  public synchronized double getCostBasis() {
+    return costBasis;
+  }
+
+
+  /**
+   * Returns symbols of all held assets.
+   *
+   * @return list of asset symbols.
+   */
+  public synchronized List<String> getSymbols() {
+    return new ArrayList<>(positions.keySet());
+  }
+
+
+  /**
+   * Returns held amount of an asset.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @return amount, 0 if asset is not held.
+   */
+  public synchronized double getAmount(String assetSymbol) {
+    Position position = positions.get(assetSymbol);
+    return position == null ? 0 : position.amount;
+  }
+
+
+  /**
+   * Returns what was paid for the held amount of an asset.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @return cost in USD, 0 if asset is not held.
+   */
+  public synchronized double getCostBasis(String assetSymbol) {
+    Position position = positions.get(assetSymbol);
+    return position == null ? 0 : position.costBasis;
+  }
+
+
+  /**
+   * Returns last known price of an asset.
+   *
+   * @param assetSymbol symbol of the asset.
+   * @return price in USD, NaN if asset is not held.
+   */
+  public synchronized double getLastPrice(String assetSymbol) {
+    Position position = positions.get(assetSymbol);
+    return position == null ? Double.NaN : position.lastPrice;
+  }
+
+
+  /**
+   * Aggregate of all held units of one asset symbol.
+   */
+  private static final class Position {
+
+    private double amount;
+    private double costBasis;
+    private double lastPrice;
+
+    private Position(double lastPrice) {
+      this.lastPrice = lastPrice;
+    }
+  }
+}
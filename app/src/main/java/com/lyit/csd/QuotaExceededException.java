@@ -0,0 +1,40 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+
+/**
+ * QuotaExceededException is thrown when a request to the finance api is not made because it would
+ * go over the request quota, or because it was shed to save the quota for trades.
+ */
+public class QuotaExceededException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final QuoteProvider.Priority priority;
+  private final long remainingDailyQuota;
+
+
+  /**
+   * Constructor to instantiate the exception.
+   *
+   * @param message             what was refused.
+   * @param priority            priority of the refused request.
+   * @param remainingDailyQuota requests left for the day when it was refused.
+   */
+  public QuotaExceededException(String message, QuoteProvider.Priority priority,
+      long remainingDailyQuota) {
+    super(message);
+    this.priority = priority;
+    this.remainingDailyQuota = remainingDailyQuota;
+  }
+
+
+  public QuoteProvider.Priority getPriority() {
+    return priority;
+  }
+
+
+  public long getRemainingDailyQuota() {
+    return remainingDailyQuota;
+  }
+}
@@ -0,0 +1,351 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * QuoteCache class keeps recently fetched quotes in memory so the same symbol is not requested
+ * from the finance api again while its quote is still fresh. The cache holds at most maxSize
+ * symbols and evicts the least recently used one when it is full. Stale quotes, served while the
+ * finance api is unavailable, are returned to the caller but never stored.
+ */
+public class QuoteCache {
+
+  public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(15);
+  public static final int DEFAULT_MAX_SIZE = 1_000;
+
+  /**
+   * Source of quotes for symbols which are missing in the cache or expired.
+   */
+  @FunctionalInterface
+  public interface Loader {
+
+    /**
+     * Loads live quotes.
+     *
+     * @param symbols upper cased asset symbols to load.
+     * @return quotes keyed by asset symbol, unknown symbols are missing.
+     */
+    Map<String, AssetQuote> load(Collection<String> symbols)
+        throws IOException, InterruptedException;
+  }
+
+  /**
+   * Source of quotes which loads them without blocking the calling thread.
+   */
+  @FunctionalInterface
+  public interface AsyncLoader {
+
+    /**
+     * Loads live quotes.
+     *
+     * @param symbols upper cased asset symbols to load.
+     * @return future completed with quotes keyed by asset symbol, unknown symbols are missing.
+     */
+    CompletableFuture<Map<String, AssetQuote>> load(Collection<String> symbols);
+  }
+
+  private final long timeToLiveNanos;
+  private final int maxSize;
+  private final LongSupplier clock;
+  private final LinkedHashMap<String, CachedQuote> quotes;
+
+  // statistics, guarded by this
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+
+  /**
+   * Constructor to instantiate QuoteCache with default freshness and size.
+   */
+  public QuoteCache() {
+    this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_SIZE);
+  }
+
+
+  /**
+   * Constructor to instantiate QuoteCache.
+   *
+   * @param timeToLive how long a quote is served from the cache after it was fetched.
+   * @param maxSize    maximum number of symbols held in the cache.
+   */
+  public QuoteCache(Duration timeToLive, int maxSize) {
+    this(timeToLive, maxSize, System::nanoTime);
+  }
+
+
+  /**
+   * Constructor to instantiate QuoteCache with own clock, used by tests.
+   *
+   * @param timeToLive how long a quote is served from the cache after it was fetched.
+   * @param maxSize    maximum number of symbols held in the cache.
+   * @param clock      source of current time in nanoseconds.
+   */
+  QuoteCache(Duration timeToLive, int maxSize, LongSupplier clock) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.timeToLiveNanos = timeToLive.toNanos();
+    this.maxSize = maxSize;
+    this.clock = clock;
+
+    // access ordered map, so eldest entry is the least recently used one
+    this.quotes = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedQuote> eldest) {
+        if (size() > QuoteCache.this.maxSize) {
+          evictionCount++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+
+  /**
+   * Returns fresh quote for the symbol.
+   *
+   * @param symbol asset symbol, letter case is ignored.
+   * @return cached quote or null if there is no fresh one.
+   */
+  public synchronized AssetQuote get(String symbol) {
+    AssetQuote quote = getFresh(normalise(symbol));
+    if (quote == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return quote;
+  }
+
+
+  /**
+   * Stores quote as fresh from now on. Stale quote is not stored.
+   *
+   * @param quote quote to store.
+   */
+  public synchronized void put(AssetQuote quote) {
+    if (quote.isStale()) {
+      return;
+    }
+    quotes.put(normalise(quote.getAssetSymbol()), new CachedQuote(quote, clock.getAsLong()));
+  }
+
+
+  /**
+   * Returns quotes for all symbols. Fresh quotes are served from the cache and all the others are
+   * loaded with one call of the loader and stored.
+   *
+   * @param symbols asset symbols, letter case is ignored.
+   * @param loader  source of quotes which are not in the cache.
+   * @return quotes keyed by upper cased asset symbol in request order. Symbols the loader does not
+   *     know are missing from the map.
+   */
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols, Loader loader)
+      throws IOException, InterruptedException {
+
+    Set<String> requested = normalise(symbols);
+    Map<String, AssetQuote> found = new LinkedHashMap<>();
+    List<String> missing = lookup(requested, found);
+
+    if (!missing.isEmpty()) {
+      store(loader.load(missing), found);
+    }
+    return inRequestOrder(requested, found);
+  }
+
+
+  /**
+   * Returns quotes for all symbols without blocking the calling thread. Fresh quotes are served
+   * from the cache and all the others are loaded with one call of the loader and stored.
+   *
+   * @param symbols asset symbols, letter case is ignored.
+   * @param loader  source of quotes which are not in the cache.
+   * @return future completed with quotes keyed by upper cased asset symbol in request order.
+   */
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols,
+      AsyncLoader loader) {
+
+    Set<String> requested = normalise(symbols);
+    Map<String, AssetQuote> found = new LinkedHashMap<>();
+    List<String> missing = lookup(requested, found);
+
+    if (missing.isEmpty()) {
+      return CompletableFuture.completedFuture(inRequestOrder(requested, found));
+    }
+    return loader.load(missing).thenApply(loaded -> {
+      store(loaded, found);
+      return inRequestOrder(requested, found);
+    });
+  }
+
+
+  /**
+   * Removes quote of the symbol, so next request fetches it again.
+   *
+   * @param symbol asset symbol, letter case is ignored.
+   */
+  public synchronized void invalidate(String symbol) {
+    quotes.remove(normalise(symbol));
+  }
+
+
+  /**
+   * Removes all quotes.
+   */
+  public synchronized void clear() {
+    quotes.clear();
+  }
+
+
+  public synchronized int size() {
+    return quotes.size();
+  }
+
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to find fresh quotes of requested symbols and count hits and misses.
+   *
+   * @param requested upper cased asset symbols.
+   * @param found     map the fresh quotes are put into.
+   * @return symbols which need to be loaded.
+   */
+  private synchronized List<String> lookup(Set<String> requested, Map<String, AssetQuote> found) {
+    List<String> missing = new ArrayList<>();
+    for (String symbol : requested) {
+      AssetQuote quote = getFresh(symbol);
+      if (quote == null) {
+        missCount++;
+        missing.add(symbol);
+      } else {
+        hitCount++;
+        found.put(symbol, quote);
+      }
+    }
+    return missing;
+  }
+
+
+  /**
+   * Helper method to store loaded quotes.
+   *
+   * @param loaded quotes returned by a loader.
+   * @param found  map the loaded quotes are put into.
+   */
+  private void store(Map<String, AssetQuote> loaded, Map<String, AssetQuote> found) {
+    for (AssetQuote quote : loaded.values()) {
+      put(quote);
+      found.put(normalise(quote.getAssetSymbol()), quote);
+    }
+  }
+
+
+  /**
+   * Helper method to order quotes as the symbols were requested.
+   *
+   * @param requested upper cased asset symbols.
+   * @param found     quotes keyed by upper cased asset symbol.
+   * @return quotes in request order.
+   */
+  private static Map<String, AssetQuote> inRequestOrder(Set<String> requested,
+      Map<String, AssetQuote> found) {
+    Map<String, AssetQuote> result = new LinkedHashMap<>();
+    for (String symbol : requested) {
+      AssetQuote quote = found.get(symbol);
+      if (quote != null) {
+        result.put(symbol, quote);
+      }
+    }
+    return result;
+  }
+
+
+  /**
+   * Helper method to make symbols usable as keys.
+   *
+   * @param symbols asset symbols.
+   * @return unique trimmed upper cased symbols in given order.
+   */
+  private static Set<String> normalise(Collection<String> symbols) {
+    Set<String> result = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      result.add(normalise(symbol));
+    }
+    return result;
+  }
+
+
+  /**
+   * Helper method to get quote if it is still fresh. Expired quote is removed.
+   *
+   * @param symbol upper cased asset symbol.
+   * @return fresh quote or null.
+   */
+  private AssetQuote getFresh(String symbol) {
+    CachedQuote cached = quotes.get(symbol);
+    if (cached == null) {
+      return null;
+    }
+    if (clock.getAsLong() - cached.fetchedAt >= timeToLiveNanos) {
+      quotes.remove(symbol);
+      return null;
+    }
+    return cached.quote;
+  }
+
+
+  /**
+   * Helper method to make symbol usable as key.
+   *
+   * @param symbol asset symbol.
+   * @return trimmed upper cased symbol.
+   */
+  static String normalise(String symbol) {
+    return symbol.trim().toUpperCase(Locale.ROOT);
+  }
+
+
+  /**
+   * Quote with the time it was fetched.
+   */
+  private static final class CachedQuote {
+
+    private final AssetQuote quote;
+    private final long fetchedAt;
+
+    private CachedQuote(AssetQuote quote, long fetchedAt) {
+      this.quote = quote;
+      this.fetchedAt = fetchedAt;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * QuoteProvider interface is a source of live asset quotes. The portfolio system only asks its
+ * provider for quotes, so it can be run against the finance api, a simulator or recorded responses.
+ * <p>
+ * Quotes can be asked for with a priority, so a provider with a limited budget of requests can
+ * price trades before it refreshes reports. Quotes asked for without one are for reports.
+ */
+public interface QuoteProvider {
+
+  /**
+   * What quotes are needed for.
+   */
+  enum Priority {
+    TRADE,
+    REPORT
+  }
+
+  /**
+   * Returns live quotes for the symbols.
+   *
+   * @param symbols asset symbols, duplicates and letter case are ignored.
+   * @return quotes keyed by asset symbol in request order. Symbols the provider does not know are
+   *     missing from the map.
+   * @throws IOException          thrown if quotes could not be fetched.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for quotes.
+   */
+  Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+      throws IOException, InterruptedException;
+
+
+  /**
+   * Returns live quotes for the symbols needed with a priority. By default the priority is ignored.
+   *
+   * @param symbols  asset symbols, duplicates and letter case are ignored.
+   * @param priority what the quotes are needed for.
+   * @return quotes keyed by asset symbol in request order. Symbols the provider does not know are
+   *     missing from the map.
+   * @throws IOException          thrown if quotes could not be fetched.
+   * @throws InterruptedException thrown if thread is interrupted while waiting for quotes.
+   */
+  default Map<String, AssetQuote> getQuotes(Collection<String> symbols, Priority priority)
+      throws IOException, InterruptedException {
+    return getQuotes(symbols);
+  }
+
+
+  /**
+   * Returns live quotes for the symbols without blocking the calling thread. By default quotes are
+   * fetched with getQuotes on the common pool.
+   *
+   * @param symbols asset symbols, duplicates and letter case are ignored.
+   * @return future completed with quotes keyed by asset symbol in request order, or completed
+   *     exceptionally with IOException if quotes could not be fetched.
+   */
+  default CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return getQuotes(symbols);
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CompletionException(e);
+      }
+    });
+  }
+
+
+  /**
+   * Returns live quotes for the symbols needed with a priority without blocking the calling
+   * thread. By default the priority is ignored.
+   *
+   * @param symbols  asset symbols, duplicates and letter case are ignored.
+   * @param priority what the quotes are needed for.
+   * @return future completed with quotes keyed by asset symbol in request order, or completed
+   *     exceptionally with IOException if quotes could not be fetched.
+   */
+  default CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols,
+      Priority priority) {
+    return getQuotesAsync(symbols);
+  }
+}
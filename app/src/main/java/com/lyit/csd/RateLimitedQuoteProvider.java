@@ -0,0 +1,417 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * RateLimitedQuoteProvider class keeps requests to the finance api within its quota. Requests are
+ * counted against two token buckets, one refilled every second and one refilled over a day, and a
+ * quote lookup costs one token for every request the quote endpoint needs for its symbols.
+ * <p>
+ * A lookup which finds no token for this second waits in a queue, trades ahead of reports. Reports
+ * are shed with QuotaExceededException when too many of them wait already, and when the quota left
+ * for the day would fall under the part kept for trades. A trade is only refused when the quota of
+ * the day is used up. Quota of waiting lookups is taken when they join the queue.
+ * <p>
+ * Historic prices of a symbol cost one request and are fetched as reports.
+ */
+public class RateLimitedQuoteProvider implements QuoteProvider, HistoryProvider {
+
+  public static final int DEFAULT_REQUESTS_PER_SECOND = 5;
+  public static final int DEFAULT_REQUESTS_PER_DAY = 100;
+  public static final int DEFAULT_TRADE_RESERVE = 10;
+  public static final int DEFAULT_MAX_QUEUED_REPORTS = 16;
+
+  private static final long MIN_DRAIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final QuoteProvider provider;
+  private final int tradeReserve;
+  private final int maxQueuedReports;
+  private final LongSupplier clock;
+
+  // buckets and queues, guarded by this
+  private final TokenBucket secondBucket;
+  private final TokenBucket dayBucket;
+  private final Queue<Waiter> trades = new ArrayDeque<>();
+  private final Queue<Waiter> reports = new ArrayDeque<>();
+  private boolean drainScheduled;
+  private long shedCount;
+
+
+  /**
+   * Constructor to instantiate a limiter with the quota of the free api plan.
+   *
+   * @param provider source of quotes.
+   */
+  public RateLimitedQuoteProvider(QuoteProvider provider) {
+    this(provider, DEFAULT_REQUESTS_PER_SECOND, DEFAULT_REQUESTS_PER_DAY);
+  }
+
+
+  /**
+   * Constructor to instantiate a limiter.
+   *
+   * @param provider          source of quotes.
+   * @param requestsPerSecond requests allowed in a second.
+   * @param requestsPerDay    requests allowed in a day.
+   */
+  public RateLimitedQuoteProvider(QuoteProvider provider, int requestsPerSecond,
+      int requestsPerDay) {
+    this(provider, requestsPerSecond, requestsPerDay,
+        Math.min(DEFAULT_TRADE_RESERVE, requestsPerDay / 10), DEFAULT_MAX_QUEUED_REPORTS,
+        System::nanoTime);
+  }
+
+
+  /**
+   * Constructor to instantiate a limiter with own clock, used by tests.
+   *
+   * @param provider          source of quotes.
+   * @param requestsPerSecond requests allowed in a second.
+   * @param requestsPerDay    requests allowed in a day.
+   * @param tradeReserve      requests of the day only trades can use.
+   * @param maxQueuedReports  reports which can wait for a token, more are shed.
+   * @param clock             source of current time in nanoseconds.
+   */
+  RateLimitedQuoteProvider(QuoteProvider provider, int requestsPerSecond, int requestsPerDay,
+      int tradeReserve, int maxQueuedReports, LongSupplier clock) {
+    if (requestsPerSecond < 1 || requestsPerDay < 1) {
+      throw new IllegalArgumentException("quota must allow at least one request");
+    }
+    if (tradeReserve < 0 || tradeReserve > requestsPerDay || maxQueuedReports < 0) {
+      throw new IllegalArgumentException("trade reserve or report queue out of range");
+    }
+    this.provider = provider;
+    this.tradeReserve = tradeReserve;
+    this.maxQueuedReports = maxQueuedReports;
+    this.clock = clock;
+    long now = clock.getAsLong();
+    this.secondBucket = new TokenBucket(requestsPerSecond, Duration.ofSeconds(1), now);
+    this.dayBucket = new TokenBucket(requestsPerDay, Duration.ofDays(1), now);
+  }
+
+
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+      throws IOException, InterruptedException {
+    return getQuotes(symbols, Priority.REPORT);
+  }
+
+
+  /**
+   * Returns live quotes once the quota allows the requests. Waits in the calling thread.
+   */
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols, Priority priority)
+      throws IOException, InterruptedException {
+
+    await(acquire(requestsFor(symbols), priority));
+    return provider.getQuotes(symbols, priority);
+  }
+
+
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+    return getQuotesAsync(symbols, Priority.REPORT);
+  }
+
+
+  /**
+   * Returns live quotes once the quota allows the requests, without holding any thread while
+   * waiting.
+   */
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols,
+      Priority priority) {
+    return acquire(requestsFor(symbols), priority)
+        .thenCompose(permit -> provider.getQuotesAsync(symbols, priority));
+  }
+
+
+  /**
+   * Returns historic prices once the quota allows the request. Empty if the provider has no
+   * historic prices.
+   */
+  @Override
+  public List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+      throws IOException, InterruptedException {
+
+    if (!(provider instanceof HistoryProvider)) {
+      return List.of();
+    }
+    await(acquire(1, Priority.REPORT));
+    return ((HistoryProvider) provider).getHistory(symbol, interval, start, end);
+  }
+
+
+  /**
+   * Returns requests which can still be made today, lookups waiting in the queue have taken their
+   * part already.
+   *
+   * @return requests left for the day.
+   */
+  public synchronized long getRemainingDailyQuota() {
+    refill();
+    return (long) dayBucket.tokens;
+  }
+
+
+  /**
+   * Returns requests which can be made straight away.
+   *
+   * @return requests left for this second.
+   */
+  public synchronized long getRemainingSecondQuota() {
+    refill();
+    return (long) secondBucket.tokens;
+  }
+
+
+  /**
+   * Returns number of lookups waiting for a token.
+   *
+   * @param priority priority of the lookups.
+   * @return waiting lookups.
+   */
+  public synchronized int getQueuedCount(Priority priority) {
+    return (priority == Priority.TRADE ? trades : reports).size();
+  }
+
+
+  /**
+   * Returns number of lookups refused because of the quota.
+   *
+   * @return refused lookups.
+   */
+  public synchronized long getShedCount() {
+    return shedCount;
+  }
+
+
+  public int getTradeReserve() {
+    return tradeReserve;
+  }
+
+
+  public QuoteProvider getProvider() {
+    return provider;
+  }
+
+
+  /**
+   * Hands tokens of this second to waiting lookups, trades first. Runs when enough tokens for the
+   * next lookup are refilled.
+   */
+  void drain() {
+    List<CompletableFuture<Void>> granted = new ArrayList<>();
+    synchronized (this) {
+      drainScheduled = false;
+      refill();
+      while (true) {
+        Waiter next = trades.isEmpty() ? reports.peek() : trades.peek();
+        if (next == null) {
+          break;
+        }
+        if (next.permit.isDone()) {
+          // lookup was cancelled while it waited
+          (trades.isEmpty() ? reports : trades).poll();
+          dayBucket.give(next.requests);
+          continue;
+        }
+        if (secondBucket.tokens < secondBucket.fit(next.requests)) {
+          break;
+        }
+        (trades.isEmpty() ? reports : trades).poll();
+        secondBucket.take(secondBucket.fit(next.requests));
+        granted.add(next.permit);
+      }
+      scheduleDrain();
+    }
+
+    // lookups continue outside the lock
+    for (CompletableFuture<Void> permit : granted) {
+      permit.complete(null);
+    }
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to take quota for a lookup. The permit is granted straight away if tokens are
+   * free and no lookup of the same or higher priority waits, otherwise the lookup joins its queue.
+   *
+   * @param requests requests the lookup needs.
+   * @param priority priority of the lookup.
+   * @return future completed when the lookup can be made, or exceptionally with
+   *     QuotaExceededException if it is shed.
+   */
+  private synchronized CompletableFuture<Void> acquire(int requests, Priority priority) {
+    if (requests == 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    refill();
+
+    double reserve = priority == Priority.TRADE ? 0 : tradeReserve;
+    if (dayBucket.tokens - requests < reserve) {
+      shedCount++;
+      return CompletableFuture.failedFuture(new QuotaExceededException(
+          "daily request quota used up for "
+              + priority.name().toLowerCase(Locale.ROOT) + " lookups",
+          priority, (long) dayBucket.tokens));
+    }
+
+    boolean waiting = !trades.isEmpty() || (priority == Priority.REPORT && !reports.isEmpty());
+    if (!waiting && secondBucket.tokens >= secondBucket.fit(requests)) {
+      secondBucket.take(secondBucket.fit(requests));
+      dayBucket.take(requests);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    if (priority == Priority.REPORT && reports.size() >= maxQueuedReports) {
+      shedCount++;
+      return CompletableFuture.failedFuture(new QuotaExceededException(
+          "too many report lookups waiting for the request quota", priority,
+          (long) dayBucket.tokens));
+    }
+    dayBucket.take(requests);
+    Waiter waiter = new Waiter(requests);
+    (priority == Priority.TRADE ? trades : reports).add(waiter);
+    scheduleDrain();
+    return waiter.permit;
+  }
+
+
+  /**
+   * Helper method to wait for a permit in the calling thread.
+   *
+   * @param permit permit of the lookup.
+   * @throws QuotaExceededException thrown if the lookup was shed.
+   */
+  private void await(CompletableFuture<Void> permit) throws IOException, InterruptedException {
+    try {
+      permit.get();
+    } catch (InterruptedException e) {
+      // quota of a lookup which leaves the queue is given back
+      permit.cancel(false);
+      drain();
+      throw e;
+    } catch (ExecutionException e) {
+      throw ConnectionPort.unwrap(e);
+    }
+  }
+
+
+  /**
+   * Helper method to run drain when the next waiting lookup can have its tokens. Called with the
+   * lock held.
+   */
+  private void scheduleDrain() {
+    Waiter next = trades.isEmpty() ? reports.peek() : trades.peek();
+    if (drainScheduled || next == null) {
+      return;
+    }
+    drainScheduled = true;
+    long delay = Math.max(MIN_DRAIN_DELAY_NANOS,
+        secondBucket.nanosUntil(secondBucket.fit(next.requests)));
+    CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(this::drain);
+  }
+
+
+  /**
+   * Helper method to refill both buckets. Called with the lock held.
+   */
+  private void refill() {
+    long now = clock.getAsLong();
+    secondBucket.refill(now);
+    dayBucket.refill(now);
+  }
+
+
+  /**
+   * Helper method to count requests the quote endpoint needs for the symbols.
+   *
+   * @param symbols asset symbols.
+   * @return number of requests.
+   */
+  private static int requestsFor(Collection<String> symbols) {
+    Set<String> unique = new HashSet<>();
+    for (String symbol : symbols) {
+      String normalised = QuoteCache.normalise(symbol);
+      if (!normalised.isEmpty()) {
+        unique.add(normalised);
+      }
+    }
+    int perRequest = ConnectionPort.MAX_SYMBOLS_PER_REQUEST;
+    return (unique.size() + perRequest - 1) / perRequest;
+  }
+
+
+  /**
+   * Lookup waiting for tokens.
+   */
+  private static final class Waiter {
+
+    private final int requests;
+    private final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+    private Waiter(int requests) {
+      this.requests = requests;
+    }
+  }
+
+
+  /**
+   * Bucket of tokens refilled at a steady rate up to its capacity.
+   */
+  private static final class TokenBucket {
+
+    private final double capacity;
+    private final double nanosPerToken;
+    private double tokens;
+    private long updated;
+
+    private TokenBucket(int capacity, Duration period, long now) {
+      this.capacity = capacity;
+      this.nanosPerToken = (double) period.toNanos() / capacity;
+      this.tokens = capacity;
+      this.updated = now;
+    }
+
+    private void refill(long now) {
+      tokens = Math.min(capacity, tokens + (now - updated) / nanosPerToken);
+      updated = now;
+    }
+
+    private void take(double count) {
+      tokens -= count;
+    }
+
+    private void give(double count) {
+      tokens = Math.min(capacity, tokens + count);
+    }
+
+    // a lookup needing more than a full bucket waits for a full one
+    private double fit(int requests) {
+      return Math.min(requests, capacity);
+    }
+
+    private long nanosUntil(double wanted) {
+      return tokens >= wanted ? 0 : (long) Math.ceil((wanted - tokens) * nanosPerToken);
+    }
+  }
+}
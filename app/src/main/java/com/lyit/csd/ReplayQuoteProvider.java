@@ -0,0 +1,89 @@
+package com.lyit.csd;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ReplayQuoteProvider class answers with quotes from recorded quote endpoint responses. Every
+ * symbol replays its recorded quotes in recording order, one quote per request, and starts again
+ * from its first quote after the last one. Symbols which were never recorded are not known.
+ */
+public class ReplayQuoteProvider extends LocalQuoteProvider {
+
+  private final Map<String, List<AssetQuote>> recorded = new LinkedHashMap<>();
+  private final Map<String, Integer> positions = new HashMap<>();
+
+
+  /**
+   * Constructor to instantiate a provider from recorded response bodies.
+   *
+   * @param responses quote endpoint response bodies in recording order.
+   * @throws IOException thrown if a response is not valid JSON.
+   */
+  public ReplayQuoteProvider(List<byte[]> responses) throws IOException {
+    super(0);
+    for (byte[] response : responses) {
+      for (AssetQuote quote : ConnectionPort.parseQuotes(new ByteArrayInputStream(response))) {
+        recorded.computeIfAbsent(QuoteCache.normalise(quote.getAssetSymbol()),
+            symbol -> new ArrayList<>()).add(quote);
+      }
+    }
+  }
+
+
+  /**
+   * Creates a provider from all .json files of a directory, recorded in file name order.
+   *
+   * @param directory directory with recorded response bodies.
+   * @return new provider.
+   * @throws IOException thrown if a file can not be read or is not valid JSON.
+   */
+  public static ReplayQuoteProvider fromDirectory(Path directory) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+      stream.forEach(files::add);
+    }
+    Collections.sort(files);
+
+    List<byte[]> responses = new ArrayList<>();
+    for (Path file : files) {
+      responses.add(Files.readAllBytes(file));
+    }
+    return new ReplayQuoteProvider(responses);
+  }
+
+
+  /**
+   * Returns symbols with recorded quotes.
+   *
+   * @return upper cased asset symbols in recording order.
+   */
+  public Set<String> getRecordedSymbols() {
+    return Collections.unmodifiableSet(recorded.keySet());
+  }
+
+
+  @Override
+  protected synchronized Map<String, AssetQuote> quote(List<String> symbols) {
+    Map<String, AssetQuote> quotes = new LinkedHashMap<>();
+    for (String symbol : symbols) {
+      List<AssetQuote> symbolQuotes = recorded.get(symbol);
+      if (symbolQuotes != null) {
+        int position = positions.getOrDefault(symbol, 0);
+        quotes.put(symbol, symbolQuotes.get(position));
+        positions.put(symbol, (position + 1) % symbolQuotes.size());
+      }
+    }
+    return quotes;
+  }
+}
@@ -0,0 +1,297 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * ReportRenderer class writes portfolio report rows straight to an Appendable (a StringBuilder,
+ * a Writer, ...). Numbers are formatted into a reused character buffer, so rendering a row makes no
+ * intermediate Strings. Money is written in fixed point with two decimals, amounts with up to
+ * eight decimals and percentages as whole numbers.
+ * <p>
+ * A renderer is not thread safe, but it can be reused for any number of rows.
+ */
+public class ReportRenderer {
+
+  public static final String ANSI_GREEN = "\u001B[32m";
+  public static final String ANSI_RED = "\u001B[31m";
+
+  private static final int MONEY_DECIMALS = 2;
+  private static final int AMOUNT_DECIMALS = 8;
+  private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000,
+      10_000_000, 100_000_000};
+
+  private final Appendable out;
+  private final char[] buffer = new char[32];
+
+
+  /**
+   * Constructor to instantiate a renderer.
+   *
+   * @param out destination of the report.
+   */
+  public ReportRenderer(Appendable out) {
+    this.out = out;
+  }
+
+
+  public Appendable getOut() {
+    return out;
+  }
+
+
+  /**
+   * Writes summary of all assets of one symbol, as listed by listAllInvestments.
+   *
+   * @param name             asset full name.
+   * @param symbol           asset symbol.
+   * @param amount           amount held.
+   * @param avgPurchasePrice average purchase price of the assets.
+   * @param livePrice        live price.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void investment(String name, String symbol, double amount, double avgPurchasePrice,
+      double livePrice) throws IOException {
+    out.append("\nAsset Name     : ").append(name);
+    out.append("\nAsset Symbol   : ").append(symbol);
+    out.append("\nAsset Amount   : ");
+    amount(amount);
+    out.append("\nAverage Price  : ");
+    money(avgPurchasePrice);
+    out.append(" USD\nLive Price     : ");
+    money(livePrice);
+    out.append(" USD\nDifference USD : ");
+    money(livePrice - avgPurchasePrice);
+    out.append(" USD\nDifference %   : ");
+    percentage(avgPurchasePrice, livePrice);
+    out.append("%\n");
+  }
+
+
+  /**
+   * Writes summary of all assets of one symbol, as listed by listPortfolioAssetsByType. The row is
+   * green if the asset gained value and red if it lost it.
+   *
+   * @param name             asset full name.
+   * @param symbol           asset symbol.
+   * @param amount           amount held.
+   * @param avgPurchasePrice average purchase price of the assets.
+   * @param livePrice        live price.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void assetOfType(String name, String symbol, double amount, double avgPurchasePrice,
+      double livePrice) throws IOException {
+    String color = avgPurchasePrice < livePrice ? ANSI_GREEN : ANSI_RED;
+    out.append(color);
+    out.append("Asset Name          :  ").append(name).append('\n');
+    out.append("Asset Symbol        :  ").append(symbol).append('\n');
+    out.append("Amount in Portfolio :  ");
+    amount(amount);
+    out.append("\nAvg Purchase Price  :  ");
+    money(avgPurchasePrice);
+    out.append("\nAsset Live Price:   :  ");
+    money(livePrice);
+    out.append("\nCurrent Value:      :  ");
+    money(amount * livePrice);
+    out.append("\n\n");
+    out.append(color);
+  }
+
+
+  /**
+   * Writes one purchase, as listed by listPortfolioPurchasesInRange.
+   *
+   * @param name        asset full name.
+   * @param priceBought price paid for one unit.
+   * @param livePrice   live price.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void purchase(String name, double priceBought, double livePrice) throws IOException {
+    out.append("\nAsset Name     : ").append(name);
+    out.append("\nPrice Bought   : ");
+    money(priceBought);
+    out.append("\nLive Price     : ");
+    money(livePrice);
+    out.append("\nDifference USD : ");
+    money(livePrice - priceBought);
+    out.append("\nDifference %   : ");
+    percentage(priceBought, livePrice);
+    out.append('\n');
+  }
+
+
+  /**
+   * Writes one sale, as listed by listPortfolioSalesInRange.
+   *
+   * @param soldAsset sale to write.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void sale(SoldAsset soldAsset) throws IOException {
+    sale(soldAsset.getAssetFullName(), soldAsset.getAvgPurchasePrice(), soldAsset.getPriceSold());
+  }
+
+
+  /**
+   * Writes one sale from its values, as read by a sale history cursor.
+   *
+   * @param name             asset full name.
+   * @param avgPurchasePrice average purchase price of the sold assets.
+   * @param soldPrice        price sold for one unit.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void sale(String name, double avgPurchasePrice, double soldPrice) throws IOException {
+    out.append("\nAsset Name         : ").append(name);
+    out.append("\nAvg Purchase Price : ");
+    money(avgPurchasePrice);
+    out.append("\nSale price         : ");
+    money(soldPrice);
+    out.append("\nDifference USD     : ");
+    money(soldPrice - avgPurchasePrice);
+    out.append("\nDifference %       : ");
+    percentage(avgPurchasePrice, soldPrice);
+    out.append('\n');
+  }
+
+
+  /**
+   * Writes money value in fixed point with two decimals, for example 1234.50 or -0.05.
+   *
+   * @param value value in USD.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void money(double value) throws IOException {
+    fixedPoint(value, MONEY_DECIMALS, MONEY_DECIMALS);
+  }
+
+
+  /**
+   * Writes amount with up to eight decimals and at least one, for example 20.0 or 0.0445881.
+   *
+   * @param value amount of an asset.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void amount(double value) throws IOException {
+    fixedPoint(value, AMOUNT_DECIMALS, 1);
+  }
+
+
+  /**
+   * Writes a whole number.
+   *
+   * @param value number to write.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  public void integer(long value) throws IOException {
+    int start = buffer.length;
+    boolean negative = value < 0;
+    // digits are taken from the negative value, which also covers Long.MIN_VALUE
+    long rest = negative ? value : -value;
+    do {
+      buffer[--start] = (char) ('0' - rest % 10);
+      rest /= 10;
+    } while (rest != 0);
+    if (negative) {
+      buffer[--start] = '-';
+    }
+    write(start, buffer.length);
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to write change from a price to another one in whole percent, rounded towards
+   * zero. A change from a price of zero has no percentage and is written as n/a.
+   *
+   * @param from  earlier price.
+   * @param to    later price.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  private void percentage(double from, double to) throws IOException {
+    if (from == 0) {
+      out.append("n/a");
+      return;
+    }
+    integer((long) (100 * (to - from) / from));
+  }
+
+
+  /**
+   * Helper method to write a number rounded half up to a number of decimals. Trailing zeros after
+   * the minimum number of decimals are left out.
+   *
+   * @param value       number to write.
+   * @param decimals    largest number of decimals.
+   * @param minDecimals smallest number of decimals.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  private void fixedPoint(double value, int decimals, int minDecimals) throws IOException {
+    // larger values can not be scaled to a long without overflow
+    double maxScaled = (double) Long.MAX_VALUE / POWERS_OF_TEN[decimals];
+    if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= maxScaled) {
+      out.append(Double.toString(value));
+      return;
+    }
+
+    long scaled = Math.round(Math.abs(value) * POWERS_OF_TEN[decimals]);
+    int shown = decimals;
+    while (shown > minDecimals && scaled % 10 == 0) {
+      scaled /= 10;
+      shown--;
+    }
+
+    int start = buffer.length;
+    for (int i = 0; i < shown; i++) {
+      buffer[--start] = (char) ('0' + scaled % 10);
+      scaled /= 10;
+    }
+    if (shown > 0) {
+      buffer[--start] = '.';
+    }
+    do {
+      buffer[--start] = (char) ('0' + scaled % 10);
+      scaled /= 10;
+    } while (scaled != 0);
+    if (value < 0 && !isZero(start)) {
+      buffer[--start] = '-';
+    }
+    write(start, buffer.length);
+  }
+
+
+  /**
+   * Helper method to check if formatted digits are all zero, so -0.001 is written as 0.00.
+   *
+   * @param start first character of the digits in the buffer.
+   * @return true if no digit is other than zero.
+   */
+  private boolean isZero(int start) {
+    for (int i = start; i < buffer.length; i++) {
+      if (buffer[i] > '0' && buffer[i] <= '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Helper method to write part of the buffer to the destination.
+   *
+   * @param start first character.
+   * @param end   character after the last one.
+   * @throws IOException thrown if the destination can not be written.
+   */
+  private void write(int start, int end) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(buffer, start, end - start);
+    } else if (out instanceof Writer) {
+      ((Writer) out).write(buffer, start, end - start);
+    } else {
+      for (int i = start; i < end; i++) {
+        out.append(buffer[i]);
+      }
+    }
+  }
+}
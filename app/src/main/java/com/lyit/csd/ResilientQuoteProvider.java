@@ -0,0 +1,576 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * ResilientQuoteProvider class keeps lookups going while the finance api is slow or failing.
+ * <p>
+ * A request which fails because of the network, a timeout, too many requests or a server error is
+ * tried again after a growing delay with jitter, so many callers do not come back at the same
+ * moment. A trade lookup which is slower than most recent requests (95th percentile) is sent a
+ * second time and the first answer wins. Only trades are hedged, every request costs quota.
+ * <p>
+ * After a number of failed requests in a row the circuit opens and lookups fail fast with
+ * CircuitOpenException instead of waiting for timeouts. Once the open time is over one request is
+ * let through, the circuit closes when it succeeds. While the api is unavailable report lookups are
+ * served the last known quotes if every symbol has one, trades are never priced with them. Last
+ * known quotes are marked stale, so a QuoteCache does not keep them as fresh.
+ * <p>
+ * Failures which would not change on retry, for example a refused quota or a bad key, are passed
+ * to the caller straight away and do not count against the circuit.
+ */
+public class ResilientQuoteProvider implements QuoteProvider, HistoryProvider {
+
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+  public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(200);
+  public static final Duration MAX_BACKOFF = Duration.ofSeconds(2);
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+  public static final Duration DEFAULT_HEDGE_DELAY = Duration.ofSeconds(1);
+
+  // hedge delay is the percentile of recent latencies once there are enough of them
+  private static final int LATENCY_SAMPLES = 128;
+  private static final int MIN_LATENCY_SAMPLES = 20;
+  private static final long MIN_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  /**
+   * State of the circuit.
+   */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final QuoteProvider provider;
+  private final int maxAttempts;
+  private final long baseBackoffNanos;
+  private final int failureThreshold;
+  private final long openNanos;
+  private final long initialHedgeDelayNanos;
+  private final LongSupplier clock;
+
+  // last quote fetched of every symbol keyed by upper cased symbol
+  private final Map<String, AssetQuote> lastKnown = new ConcurrentHashMap<>();
+
+  // circuit, guarded by this
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean trialInFlight;
+
+  // ring of recent latencies in nanoseconds, guarded by itself
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+  private int latencyCount;
+  private int latencyNext;
+
+  private final AtomicLong retryCount = new AtomicLong();
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLong fallbackCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+
+  /**
+   * Constructor to instantiate a provider with default retries and circuit.
+   *
+   * @param provider source of quotes.
+   */
+  public ResilientQuoteProvider(QuoteProvider provider) {
+    this(provider, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF, DEFAULT_FAILURE_THRESHOLD,
+        DEFAULT_OPEN_DURATION);
+  }
+
+
+  /**
+   * Constructor to instantiate a provider.
+   *
+   * @param provider         source of quotes.
+   * @param maxAttempts      attempts of one lookup, the first one included.
+   * @param baseBackoff      delay before the first retry, doubled for every next one.
+   * @param failureThreshold failed requests in a row which open the circuit.
+   * @param openDuration     time the circuit stays open.
+   */
+  public ResilientQuoteProvider(QuoteProvider provider, int maxAttempts, Duration baseBackoff,
+      int failureThreshold, Duration openDuration) {
+    this(provider, maxAttempts, baseBackoff, failureThreshold, openDuration, DEFAULT_HEDGE_DELAY,
+        System::nanoTime);
+  }
+
+
+  /**
+   * Constructor to instantiate a provider with own hedge delay and clock, used by tests.
+   *
+   * @param provider           source of quotes.
+   * @param maxAttempts        attempts of one lookup, the first one included.
+   * @param baseBackoff        delay before the first retry, doubled for every next one.
+   * @param failureThreshold   failed requests in a row which open the circuit.
+   * @param openDuration       time the circuit stays open.
+   * @param initialHedgeDelay  delay before a trade is hedged until latencies are known.
+   * @param clock              source of current time in nanoseconds.
+   */
+  ResilientQuoteProvider(QuoteProvider provider, int maxAttempts, Duration baseBackoff,
+      int failureThreshold, Duration openDuration, Duration initialHedgeDelay,
+      LongSupplier clock) {
+    if (maxAttempts < 1 || failureThreshold < 1) {
+      throw new IllegalArgumentException("attempts and failure threshold must be positive");
+    }
+    this.provider = provider;
+    this.maxAttempts = maxAttempts;
+    this.baseBackoffNanos = baseBackoff.toNanos();
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+    this.initialHedgeDelayNanos = initialHedgeDelay.toNanos();
+    this.clock = clock;
+  }
+
+
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+      throws IOException, InterruptedException {
+    return getQuotes(symbols, Priority.REPORT);
+  }
+
+
+  /**
+   * Returns live quotes, retried and hedged. Waits in the calling thread.
+   */
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols, Priority priority)
+      throws IOException, InterruptedException {
+    return await(getQuotesAsync(symbols, priority));
+  }
+
+
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+    return getQuotesAsync(symbols, Priority.REPORT);
+  }
+
+
+  /**
+   * Returns live quotes, retried and hedged, without blocking the calling thread. Retries wait on
+   * a timer, not on a thread.
+   */
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols,
+      Priority priority) {
+
+    return call(() -> provider.getQuotesAsync(symbols, priority), priority == Priority.TRADE)
+        .handle((quotes, error) -> {
+          if (error == null) {
+            for (AssetQuote quote : quotes.values()) {
+              lastKnown.put(QuoteCache.normalise(quote.getAssetSymbol()), quote);
+            }
+            return quotes;
+          }
+          Throwable cause = unwrap(error);
+          Map<String, AssetQuote> stale = priority == Priority.REPORT
+              && (cause instanceof CircuitOpenException || isUpstreamFailure(cause))
+              ? getLastKnownQuotes(symbols) : null;
+          if (stale == null) {
+            throw new CompletionException(cause);
+          }
+          fallbackCount.incrementAndGet();
+          return stale;
+        });
+  }
+
+
+  /**
+   * Returns historic prices, retried like quotes. Empty if the provider has no historic prices.
+   */
+  @Override
+  public List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+      throws IOException, InterruptedException {
+
+    if (!(provider instanceof HistoryProvider)) {
+      return List.of();
+    }
+    HistoryProvider history = (HistoryProvider) provider;
+    return await(call(() -> CompletableFuture.supplyAsync(() -> {
+      try {
+        return history.getHistory(symbol, interval, start, end);
+      } catch (IOException e) {
+        throw new CompletionException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CompletionException(e);
+      }
+    }), false));
+  }
+
+
+  /**
+   * Returns state of the circuit. An open circuit shows half open once a request was let through.
+   *
+   * @return state of the circuit.
+   */
+  public synchronized State getState() {
+    return state;
+  }
+
+
+  /**
+   * Returns delay before a trade lookup is hedged.
+   *
+   * @return hedge delay.
+   */
+  public Duration getHedgeDelay() {
+    return Duration.ofNanos(hedgeDelayNanos());
+  }
+
+
+  /**
+   * Returns number of requests sent again after a failure.
+   *
+   * @return retried requests.
+   */
+  public long getRetryCount() {
+    return retryCount.get();
+  }
+
+
+  /**
+   * Returns number of second requests sent for slow trade lookups.
+   *
+   * @return hedged requests.
+   */
+  public long getHedgeCount() {
+    return hedgeCount.get();
+  }
+
+
+  /**
+   * Returns number of report lookups served last known quotes.
+   *
+   * @return lookups served from last known quotes.
+   */
+  public long getFallbackCount() {
+    return fallbackCount.get();
+  }
+
+
+  /**
+   * Returns number of requests not made because the circuit was open.
+   *
+   * @return rejected requests.
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+
+  public QuoteProvider getProvider() {
+    return provider;
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to start a call which is retried until it succeeds, fails for good or runs out
+   * of attempts.
+   *
+   * @param request starts one request.
+   * @param hedged  true if a slow request is sent a second time.
+   * @return future completed with the first successful answer.
+   */
+  private <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> request, boolean hedged) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    attempt(request, hedged, 1, result);
+    return result;
+  }
+
+
+  /**
+   * Helper method to make one attempt of a call and schedule the next one if it failed.
+   *
+   * @param request starts one request.
+   * @param hedged  true if a slow request is sent a second time.
+   * @param attempt number of this attempt, from 1.
+   * @param result  future of the whole call.
+   */
+  private <T> void attempt(Supplier<CompletableFuture<T>> request, boolean hedged, int attempt,
+      CompletableFuture<T> result) {
+
+    if (result.isDone()) {
+      return;
+    }
+    long wait = permit();
+    if (wait > 0) {
+      rejectedCount.incrementAndGet();
+      // rounded up, so a circuit about to close does not say 0 ms
+      result.completeExceptionally(
+          new CircuitOpenException(TimeUnit.NANOSECONDS.toMillis(wait + 999_999)));
+      return;
+    }
+
+    CompletableFuture<T> response = hedged ? hedge(request) : send(request);
+    response.whenComplete((value, error) -> {
+      if (error == null) {
+        recordSuccess();
+        result.complete(value);
+        return;
+      }
+      Throwable cause = unwrap(error);
+      if (!isUpstreamFailure(cause)) {
+        recordNeutral();
+        result.completeExceptionally(cause);
+        return;
+      }
+      recordFailure();
+      if (attempt >= maxAttempts) {
+        result.completeExceptionally(cause);
+        return;
+      }
+      retryCount.incrementAndGet();
+      CompletableFuture.delayedExecutor(backoffNanos(attempt), TimeUnit.NANOSECONDS)
+          .execute(() -> attempt(request, hedged, attempt + 1, result));
+    });
+  }
+
+
+  /**
+   * Helper method to send a request and a second one if the first is slow. The first answer wins,
+   * the call fails only if both requests fail.
+   *
+   * @param request starts one request.
+   * @return future completed with the first successful answer.
+   */
+  private <T> CompletableFuture<T> hedge(Supplier<CompletableFuture<T>> request) {
+
+    CompletableFuture<T> result = new CompletableFuture<>();
+    AtomicInteger running = new AtomicInteger(1);
+    BiConsumer<T, Throwable> settle = (value, error) -> {
+      if (error == null) {
+        result.complete(value);
+      } else if (running.decrementAndGet() == 0) {
+        result.completeExceptionally(error);
+      }
+    };
+    send(request).whenComplete(settle);
+
+    CompletableFuture.delayedExecutor(hedgeDelayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+      // no hedge once the first request has answered
+      if (result.isDone() || running.getAndIncrement() == 0) {
+        return;
+      }
+      hedgeCount.incrementAndGet();
+      send(request).whenComplete(settle);
+    });
+    return result;
+  }
+
+
+  /**
+   * Helper method to start a request and record its latency when it succeeds.
+   *
+   * @param request starts one request.
+   * @return future of the request.
+   */
+  private <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+    long started = clock.getAsLong();
+    CompletableFuture<T> response;
+    try {
+      response = request.get();
+    } catch (RuntimeException e) {
+      response = CompletableFuture.failedFuture(e);
+    }
+    return response.whenComplete((value, error) -> {
+      if (error == null) {
+        recordLatency(clock.getAsLong() - started);
+      }
+    });
+  }
+
+
+  /**
+   * Helper method to ask the circuit if a request can be made. A circuit whose open time is over
+   * lets one request through.
+   *
+   * @return 0 if the request can be made, otherwise nanoseconds until the circuit may let one in.
+   */
+  private synchronized long permit() {
+    if (state == State.OPEN) {
+      long remaining = openedAt + openNanos - clock.getAsLong();
+      if (remaining > 0) {
+        return remaining;
+      }
+      state = State.HALF_OPEN;
+    }
+    if (state == State.HALF_OPEN) {
+      if (trialInFlight) {
+        return 1;
+      }
+      trialInFlight = true;
+    }
+    return 0;
+  }
+
+
+  /**
+   * Helper method to close the circuit after a successful request.
+   */
+  private synchronized void recordSuccess() {
+    consecutiveFailures = 0;
+    trialInFlight = false;
+    state = State.CLOSED;
+  }
+
+
+  /**
+   * Helper method to count a failed request, the circuit opens at the threshold or when the
+   * request let through an open circuit failed.
+   */
+  private synchronized void recordFailure() {
+    consecutiveFailures++;
+    trialInFlight = false;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      openedAt = clock.getAsLong();
+    }
+  }
+
+
+  /**
+   * Helper method to end a request which failed for a reason the api is not to blame for.
+   */
+  private synchronized void recordNeutral() {
+    trialInFlight = false;
+  }
+
+
+  /**
+   * Helper method to keep latency of a successful request.
+   *
+   * @param nanos latency in nanoseconds.
+   */
+  private void recordLatency(long nanos) {
+    synchronized (latencies) {
+      latencies[latencyNext] = nanos;
+      latencyNext = (latencyNext + 1) % LATENCY_SAMPLES;
+      latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+    }
+  }
+
+
+  /**
+   * Helper method to find the delay before a hedge, the 95th percentile of recent latencies.
+   *
+   * @return delay in nanoseconds.
+   */
+  private long hedgeDelayNanos() {
+    long[] sorted;
+    synchronized (latencies) {
+      if (latencyCount < MIN_LATENCY_SAMPLES) {
+        return initialHedgeDelayNanos;
+      }
+      sorted = Arrays.copyOf(latencies, latencyCount);
+    }
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(sorted.length * 0.95) - 1;
+    return Math.max(MIN_HEDGE_DELAY_NANOS, sorted[index]);
+  }
+
+
+  /**
+   * Helper method to find delay before a retry. Half of the delay is random, so callers which
+   * failed together do not retry together.
+   *
+   * @param attempt number of the failed attempt, from 1.
+   * @return delay in nanoseconds.
+   */
+  private long backoffNanos(int attempt) {
+    long cap = Math.min(MAX_BACKOFF.toNanos(), baseBackoffNanos << Math.min(attempt - 1, 20));
+    return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+  }
+
+
+  /**
+   * Helper method to find last known quotes of all symbols.
+   *
+   * @param symbols asset symbols.
+   * @return stale copies of the quotes keyed by asset symbol in request order, null if any symbol
+   *     has none.
+   */
+  private Map<String, AssetQuote> getLastKnownQuotes(Collection<String> symbols) {
+    Map<String, AssetQuote> result = new LinkedHashMap<>();
+    for (String symbol : symbols) {
+      String normalised = QuoteCache.normalise(symbol);
+      if (normalised.isEmpty()) {
+        continue;
+      }
+      AssetQuote quote = lastKnown.get(normalised);
+      if (quote == null) {
+        return null;
+      }
+      result.put(quote.getAssetSymbol(), quote.asStale());
+    }
+    return result;
+  }
+
+
+  /**
+   * Helper method to wait for a call in the calling thread.
+   *
+   * @param call future of the call.
+   * @return result of the call.
+   */
+  private static <T> T await(CompletableFuture<T> call) throws IOException, InterruptedException {
+    try {
+      return call.get();
+    } catch (ExecutionException e) {
+      throw ConnectionPort.unwrap(e);
+    } catch (InterruptedException e) {
+      call.cancel(true);
+      throw e;
+    }
+  }
+
+
+  /**
+   * Helper method to check if a failure may go away when the request is made again.
+   *
+   * @param error failure of a request.
+   * @return true for network failures, timeouts, too many requests and server errors.
+   */
+  private static boolean isUpstreamFailure(Throwable error) {
+    if (error instanceof ApiResponseException) {
+      return ((ApiResponseException) error).isRetryable();
+    }
+    return error instanceof IOException && !(error instanceof QuotaExceededException)
+        && !(error instanceof CircuitOpenException);
+  }
+
+
+  /**
+   * Helper method to find the failure behind a completion exception.
+   *
+   * @param error failure of a future.
+   * @return cause of the failure.
+   */
+  private static Throwable unwrap(Throwable error) {
+    while (error instanceof CompletionException && error.getCause() != null) {
+      error = error.getCause();
+    }
+    return error;
+  }
+}
@@ -0,0 +1,104 @@
+package com.lyit.csd;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * SaleHistory interface is the store of all sales of a portfolio. Sales are only ever added and
+ * are kept in time order, sales made at the same time in the order they were added, so sales of a
+ * time range are found by a binary search.
+ * <p>
+ * A cursor reads the sales of a range in place, one at a time, without making a SoldAsset for
+ * each of them.
+ */
+public interface SaleHistory extends Closeable {
+
+  /**
+   * Adds a sale at its place in time order. Sales normally arrive in time order and are appended,
+   * an earlier sale moves the later ones.
+   *
+   * @param sale sale to add.
+   */
+  void add(SoldAsset sale);
+
+
+  /**
+   * Returns number of sales.
+   *
+   * @return number of sales.
+   */
+  int size();
+
+
+  /**
+   * Returns one sale as a new SoldAsset.
+   *
+   * @param index position of the sale in time order.
+   * @return the sale.
+   */
+  SoldAsset get(int index);
+
+
+  /**
+   * Returns a cursor over the sales made between the two timestamps (both included), oldest
+   * first. Sales made later can be added while the cursor is used, an earlier sale moves the sales
+   * under the cursor and makes its next move fail with a ConcurrentModificationException.
+   *
+   * @param startTimeStamp a UNIX timestamp representing the start range date
+   * @param endTimeStamp   a UNIX timestamp representing the end range date
+   * @return cursor placed before the first sale of the range.
+   */
+  Cursor cursor(long startTimeStamp, long endTimeStamp);
+
+
+  /**
+   * Returns true if added sales are kept on disk, so they do not need to be journaled.
+   *
+   * @return true for a durable history.
+   */
+  default boolean isPersistent() {
+    return false;
+  }
+
+
+  /**
+   * Forces added sales to disk. Nothing is done by a history kept in memory.
+   *
+   * @throws IOException thrown if the history can not be written.
+   */
+  default void flush() throws IOException {
+  }
+
+
+  @Override
+  default void close() throws IOException {
+  }
+
+
+  /**
+   * Cursor over a range of sales. The getters read the sale the cursor is on.
+   */
+  interface Cursor {
+
+    /**
+     * Moves to the next sale of the range.
+     *
+     * @return false if there are no more sales.
+     */
+    boolean next();
+
+    String getAssetSymbol();
+
+    String getAssetFullName();
+
+    String getAssetType();
+
+    long getTimeStamp();
+
+    double getAvgPurchasePrice();
+
+    double getPriceSold();
+
+    double getAmount();
+  }
+}
@@ -0,0 +1,148 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * SimulatedQuoteProvider class makes up live quotes with a random walk of prices. Every symbol has
+ * its own walk seeded from the provider seed and the symbol, and moves one step each time it is
+ * quoted, so the same requests always give the same prices. Any symbol is quoted; symbols ending
+ * with "-USD" are cryptocurrencies and all the others are equities, unless registered with
+ * addAsset.
+ * <p>
+ * History is made up without walking: the price of every point is drawn around the first price of
+ * the symbol from a random seeded by the symbol and the time of the point, so a point always has
+ * the same price whichever range it is asked with.
+ */
+public class SimulatedQuoteProvider extends LocalQuoteProvider {
+
+  public static final double DEFAULT_VOLATILITY = 0.01;
+  public static final long START_TIME_STAMP = 1645000000;
+  public static final long STEP_SECONDS = 60;
+
+  private final long seed;
+  private final double volatility;
+  private final Map<String, Walk> walks = new HashMap<>();
+
+
+  /**
+   * Constructor to instantiate a simulator with default volatility.
+   *
+   * @param seed seed of prices and injected failures.
+   */
+  public SimulatedQuoteProvider(long seed) {
+    this(seed, DEFAULT_VOLATILITY);
+  }
+
+
+  /**
+   * Constructor to instantiate a simulator.
+   *
+   * @param seed       seed of prices and injected failures.
+   * @param volatility largest relative price change of one step, for example 0.01 for 1%.
+   */
+  public SimulatedQuoteProvider(long seed, double volatility) {
+    super(seed);
+    if (volatility < 0 || volatility >= 1) {
+      throw new IllegalArgumentException("volatility must be between 0 and 1");
+    }
+    this.seed = seed;
+    this.volatility = volatility;
+  }
+
+
+  /**
+   * Registers name, type and first price of a symbol. Walk of the symbol starts again.
+   *
+   * @param assetSymbol   asset symbol.
+   * @param assetFullName asset full name.
+   * @param assetType     asset type, EQUITY or CRYPTOCURRENCY.
+   * @param startPrice    first quoted price.
+   */
+  public synchronized void addAsset(String assetSymbol, String assetFullName, String assetType,
+      double startPrice) {
+    String symbol = QuoteCache.normalise(assetSymbol);
+    walks.put(symbol, new Walk(symbol, assetFullName, assetType, startPrice));
+  }
+
+
+  @Override
+  protected synchronized Map<String, AssetQuote> quote(List<String> symbols) {
+    Map<String, AssetQuote> quotes = new LinkedHashMap<>();
+    for (String symbol : symbols) {
+      quotes.put(symbol, walkOf(symbol).next());
+    }
+    return quotes;
+  }
+
+
+  @Override
+  protected synchronized List<AssetQuote> history(String symbol, long step, long start,
+      long end) {
+    Walk walk = walkOf(symbol);
+    List<AssetQuote> points = new ArrayList<>();
+    for (long time = Math.floorDiv(start + step - 1, step) * step; time < end; time += step) {
+      SplittableRandom random = new SplittableRandom(
+          (seed * 31 + symbol.hashCode()) * 0x9E3779B97F4A7C15L + time);
+      double change = 10 * volatility * (2 * random.nextDouble() - 1);
+      double price = Math.max(0.01, Math.round(walk.startPrice * (1 + change) * 100) / 100.0);
+      points.add(new AssetQuote(symbol, walk.fullName, walk.type, time, price));
+    }
+    return points;
+  }
+
+
+  /**
+   * Helper method to find walk of a symbol, unknown symbols get a walk from a made up price.
+   *
+   * @param symbol upper cased asset symbol.
+   * @return walk of the symbol.
+   */
+  private Walk walkOf(String symbol) {
+    Walk walk = walks.get(symbol);
+    if (walk == null) {
+      walk = new Walk(symbol, symbol, symbol.endsWith("-USD") ? "CRYPTOCURRENCY" : "EQUITY", 0);
+      walks.put(symbol, walk);
+    }
+    return walk;
+  }
+
+
+  /**
+   * Price walk of one symbol.
+   */
+  private final class Walk {
+
+    private final String symbol;
+    private final String fullName;
+    private final String type;
+    private final SplittableRandom random;
+    private final double startPrice;
+    private double price;
+    private long steps;
+
+    private Walk(String symbol, String fullName, String type, double startPrice) {
+      this.symbol = symbol;
+      this.fullName = fullName;
+      this.type = type;
+      this.random = new SplittableRandom(seed * 31 + symbol.hashCode());
+      this.startPrice = startPrice > 0 ? startPrice : 10 + random.nextInt(990);
+      this.price = this.startPrice;
+    }
+
+    private AssetQuote next() {
+      if (steps > 0) {
+        double change = volatility * (2 * random.nextDouble() - 1);
+        price = Math.max(0.01, Math.round(price * (1 + change) * 100) / 100.0);
+      }
+      AssetQuote quote = new AssetQuote(symbol, fullName, type,
+          START_TIME_STAMP + steps * STEP_SECONDS, price);
+      steps++;
+      return quote;
+    }
+  }
+}
@@ -0,0 +1,370 @@
+package com.lyit.csd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SymbolDirectory class finds asset symbols by symbol or full name. Symbols and names are kept in
+ * two prefix tries with letter case folded, so finding a name costs one step per character of the
+ * query, however many assets the directory holds.
+ * <p>
+ * A query is a symbol if one matches it exactly, otherwise a full name or the start of full names.
+ * "Apple" finds Apple Inc. but not Applied Materials, "Appl" finds both. A query which matches
+ * nothing is tried once more allowing one wrong, missing or extra character.
+ * <p>
+ * The directory is changed one symbol at a time, a portfolio keeps it up to date with its assets.
+ * It is thread safe, every method holds the directory's monitor.
+ */
+public class SymbolDirectory {
+
+  /**
+   * Shortest query matched with an edit, shorter ones would match too many symbols.
+   */
+  public static final int MIN_FUZZY_LENGTH = 4;
+
+  private final Trie symbols = new Trie();
+  private final Trie names = new Trie();
+  // full name of every symbol keyed by symbol
+  private final Map<String, String> namesBySymbol = new HashMap<>();
+
+
+  /**
+   * Adds a symbol with its full name, or changes the name of a symbol already in the directory.
+   *
+   * @param symbol asset symbol.
+   * @param name   full asset name, null if it is not known.
+   */
+  public synchronized void put(String symbol, String name) {
+    if (namesBySymbol.containsKey(symbol)) {
+      remove(symbol);
+    }
+    namesBySymbol.put(symbol, name);
+    symbols.add(fold(symbol), symbol);
+    if (name != null) {
+      names.add(fold(name), symbol);
+    }
+  }
+
+
+  /**
+   * Removes a symbol and its full name.
+   *
+   * @param symbol asset symbol.
+   * @return true if the symbol was in the directory.
+   */
+  public synchronized boolean remove(String symbol) {
+    if (!namesBySymbol.containsKey(symbol)) {
+      return false;
+    }
+    String name = namesBySymbol.remove(symbol);
+    symbols.remove(fold(symbol), symbol);
+    if (name != null) {
+      names.remove(fold(name), symbol);
+    }
+    return true;
+  }
+
+
+  /**
+   * Returns symbols matching a query: the symbol itself, otherwise symbols of the full names which
+   * are or start with the query, otherwise symbols within one edit of the query.
+   *
+   * @param query symbol, full name or start of full name, letter case is ignored.
+   * @return matching symbols in name order, empty if nothing matches.
+   */
+  public synchronized List<String> resolve(String query) {
+    String folded = fold(query);
+    if (folded.isEmpty()) {
+      return List.of();
+    }
+
+    Node node = symbols.find(folded);
+    if (node != null && node.values != null) {
+      return List.of(node.values);
+    }
+    node = names.find(folded);
+    if (node != null) {
+      Set<String> result = new LinkedHashSet<>();
+      Trie.collect(node, result, Integer.MAX_VALUE);
+      return new ArrayList<>(result);
+    }
+    if (folded.length() >= MIN_FUZZY_LENGTH) {
+      return findFuzzy(query, 1);
+    }
+    return List.of();
+  }
+
+
+  /**
+   * Returns symbols whose symbol or full name starts with a prefix, for completing user input.
+   * Symbols matched by symbol come first.
+   *
+   * @param prefix start of a symbol or full name, letter case is ignored.
+   * @param limit  maximum number of symbols returned.
+   * @return matching symbols in symbol and name order.
+   */
+  public synchronized List<String> complete(String prefix, int limit) {
+    String folded = fold(prefix);
+    Set<String> result = new LinkedHashSet<>();
+    Trie.collect(symbols.find(folded), result, limit);
+    Trie.collect(names.find(folded), result, limit);
+    return new ArrayList<>(result);
+  }
+
+
+  /**
+   * Returns symbols whose symbol or full name is within a number of edits of a query. An edit is
+   * one character changed, added or removed.
+   *
+   * @param query    symbol or full name, letter case is ignored.
+   * @param maxEdits maximum number of edits.
+   * @return matching symbols in symbol and name order.
+   */
+  public synchronized List<String> findFuzzy(String query, int maxEdits) {
+    String folded = fold(query);
+    Set<String> result = new LinkedHashSet<>();
+    symbols.fuzzy(folded, maxEdits, result);
+    names.fuzzy(folded, maxEdits, result);
+    return new ArrayList<>(result);
+  }
+
+
+  /**
+   * Returns full name of a symbol.
+   *
+   * @param symbol asset symbol.
+   * @return full name, null if the symbol is not in the directory or has no name.
+   */
+  public synchronized String getName(String symbol) {
+    return namesBySymbol.get(symbol);
+  }
+
+
+  /**
+   * Returns number of symbols in the directory.
+   *
+   * @return number of symbols.
+   */
+  public synchronized int size() {
+    return namesBySymbol.size();
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to fold letter case of a symbol, name or query.
+   *
+   * @param text text to fold.
+   * @return trimmed lower cased text.
+   */
+  private static String fold(String text) {
+    return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+  }
+
+
+  /**
+   * Node of a trie. Children are kept in arrays sorted by their character, a node has few of them.
+   */
+  private static final class Node {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private char[] keys = NO_KEYS;
+    private Node[] children = NO_CHILDREN;
+    // symbols whose key ends at this node, null if none
+    private String[] values;
+
+    private Node child(char key) {
+      int index = Arrays.binarySearch(keys, key);
+      return index >= 0 ? children[index] : null;
+    }
+
+    private Node addChild(char key) {
+      int index = Arrays.binarySearch(keys, key);
+      if (index >= 0) {
+        return children[index];
+      }
+      index = -index - 1;
+      char[] newKeys = new char[keys.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(keys, 0, newKeys, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      newKeys[index] = key;
+      newChildren[index] = new Node();
+      System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+      System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+      keys = newKeys;
+      children = newChildren;
+      return newChildren[index];
+    }
+
+    private void removeChild(char key) {
+      int index = Arrays.binarySearch(keys, key);
+      if (index < 0) {
+        return;
+      }
+      char[] newKeys = new char[keys.length - 1];
+      Node[] newChildren = new Node[children.length - 1];
+      System.arraycopy(keys, 0, newKeys, 0, index);
+      System.arraycopy(children, 0, newChildren, 0, index);
+      System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+      System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+      keys = newKeys;
+      children = newChildren;
+    }
+
+    private boolean isEmpty() {
+      return values == null && keys.length == 0;
+    }
+  }
+
+
+  /**
+   * Prefix trie of folded keys, every key holds the symbols it belongs to.
+   */
+  private static final class Trie {
+
+    // distance of cells which can not be close enough
+    private static final int FAR = Integer.MAX_VALUE / 2;
+
+    private final Node root = new Node();
+    // length of the longest key ever added, keys are never longer
+    private int longest;
+
+    private void add(String key, String symbol) {
+      longest = Math.max(longest, key.length());
+      Node node = root;
+      for (int i = 0; i < key.length(); i++) {
+        node = node.addChild(key.charAt(i));
+      }
+      if (node.values == null) {
+        node.values = new String[] {symbol};
+      } else if (!Arrays.asList(node.values).contains(symbol)) {
+        node.values = Arrays.copyOf(node.values, node.values.length + 1);
+        node.values[node.values.length - 1] = symbol;
+      }
+    }
+
+    private void remove(String key, String symbol) {
+      // path from the root, so nodes left empty can be cut off from the bottom
+      Node[] path = new Node[key.length() + 1];
+      path[0] = root;
+      for (int i = 0; i < key.length(); i++) {
+        path[i + 1] = path[i].child(key.charAt(i));
+        if (path[i + 1] == null) {
+          return;
+        }
+      }
+
+      Node node = path[key.length()];
+      if (node.values == null) {
+        return;
+      }
+      List<String> left = new ArrayList<>(Arrays.asList(node.values));
+      left.remove(symbol);
+      node.values = left.isEmpty() ? null : left.toArray(new String[0]);
+
+      for (int i = key.length(); i > 0 && path[i].isEmpty(); i--) {
+        path[i - 1].removeChild(key.charAt(i - 1));
+      }
+    }
+
+    private Node find(String key) {
+      Node node = root;
+      for (int i = 0; i < key.length() && node != null; i++) {
+        node = node.child(key.charAt(i));
+      }
+      return node;
+    }
+
+    /**
+     * Adds symbols of a node and the nodes below it in key order until there are enough.
+     */
+    private static void collect(Node node, Collection<String> result, int limit) {
+      if (node == null || result.size() >= limit) {
+        return;
+      }
+      if (node.values != null) {
+        for (String symbol : node.values) {
+          if (result.size() >= limit) {
+            return;
+          }
+          result.add(symbol);
+        }
+      }
+      for (Node child : node.children) {
+        collect(child, result, limit);
+      }
+    }
+
+    /**
+     * Adds symbols of keys within a number of edits of the query. Every depth of the walk has one
+     * row of the edit distance table. Only cells at most maxEdits away from the diagonal can stay
+     * close enough, so only they are computed, and a branch is left as soon as none of them is.
+     */
+    private void fuzzy(String query, int maxEdits, Collection<String> result) {
+      if (query.length() - maxEdits > longest) {
+        return;
+      }
+      // keys longer than the query by more than maxEdits are never close enough
+      int[][] rows = new int[query.length() + maxEdits + 1][];
+      rows[0] = new int[query.length() + 1];
+      for (int i = 0; i < rows[0].length; i++) {
+        rows[0][i] = i <= maxEdits ? i : FAR;
+      }
+      fuzzy(root, 0, query, rows, maxEdits, result);
+    }
+
+    private static void fuzzy(Node node, int depth, String query, int[][] rows, int maxEdits,
+        Collection<String> result) {
+
+      int next = depth + 1;
+      if (next >= rows.length) {
+        return;
+      }
+      int length = query.length();
+      int[] previous = rows[depth];
+      if (rows[next] == null) {
+        rows[next] = new int[length + 1];
+      }
+      int[] row = rows[next];
+      int low = Math.max(1, next - maxEdits);
+      int high = Math.min(length, next + maxEdits);
+
+      for (int child = 0; child < node.keys.length; child++) {
+        char key = node.keys[child];
+        row[0] = next <= maxEdits ? next : FAR;
+        if (low > 1) {
+          row[low - 1] = FAR;
+        }
+        if (high < length) {
+          row[high + 1] = FAR;
+        }
+        int best = row[0];
+        for (int i = low; i <= high; i++) {
+          int replace = previous[i - 1] + (query.charAt(i - 1) == key ? 0 : 1);
+          row[i] = Math.min(FAR, Math.min(replace, Math.min(row[i - 1], previous[i]) + 1));
+          best = Math.min(best, row[i]);
+        }
+
+        Node found = node.children[child];
+        if (high == length && row[length] <= maxEdits && found.values != null) {
+          result.addAll(Arrays.asList(found.values));
+        }
+        if (best <= maxEdits) {
+          fuzzy(found, next, query, rows, maxEdits, result);
+        }
+      }
+    }
+  }
+}
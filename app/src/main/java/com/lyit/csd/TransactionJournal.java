@@ -0,0 +1,823 @@
+package com.lyit.csd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * TransactionJournal class makes a portfolio durable. Every change of the portfolio is appended as
+ * a binary record with a sequence number to a journal file, and every few thousand records the
+ * whole portfolio is written to a snapshot file and the journal is started again. On start the
+ * portfolio is recovered from the snapshot and the journal records written after it, so recovery
+ * time depends on the snapshot interval and not on the whole history.
+ * <p>
+ * Records are collected in memory and written and forced to disk together by a background thread
+ * every sync interval, or as soon as the collected records fill the buffer. A due snapshot is
+ * written by the same thread from an in-memory copy of the portfolio, so a trade never waits for
+ * the disk. At most the records of the last sync interval are lost on a crash; sync can be called
+ * to force them out earlier.
+ * <p>
+ * The available funds are part of the portfolio, every deposit, reservation and credit of money is
+ * journaled and the snapshot holds the funds of its moment.
+ * <p>
+ * A journal record is: int body length, body (long sequence, byte type, fields), int CRC32 of the
+ * body. A record which is cut short or fails its checksum ends the journal.
+ * <p>
+ * Sales of a portfolio with a persistent sale history are neither journaled nor snapshotted, the
+ * history is forced to disk with the journal instead. The same kind of history must be given on
+ * every recovery.
+ */
+public class TransactionJournal implements Closeable {
+
+  public static final String JOURNAL_FILE = "journal.bin";
+  public static final String SNAPSHOT_FILE = "snapshot.bin";
+  public static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofMillis(50);
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+
+  private static final int SNAPSHOT_MAGIC = 0x50465332;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // largest record: header, three strings of up to Short.MAX_VALUE bytes, numbers and checksum
+  private static final int MAX_RECORD_SIZE = 64 + 3 * (Short.BYTES + Short.MAX_VALUE);
+
+  private static final byte LOT_ADDED = 1;
+  private static final byte LOT_REMOVED = 2;
+  private static final byte AMOUNT_CHANGED = 3;
+  private static final byte SALE_RECORDED = 4;
+  private static final byte FUNDS_DEPOSITED = 5;
+  private static final byte FUNDS_RESERVED = 6;
+  private static final byte FUNDS_CREDITED = 7;
+
+  private final Path directory;
+  private final Path journalFile;
+  private final Path snapshotFile;
+  private final int snapshotInterval;
+  private final FileChannel channel;
+  private final ScheduledExecutorService syncer;
+  private final Object syncLock = new Object();
+
+  // record scratch buffer of each writing thread
+  private final ThreadLocal<ByteBuffer> scratch =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_SIZE));
+
+  // records waiting to be written, guarded by this
+  private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+  private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+  private long lastSequence;
+  private long snapshotSequence;
+  private int recordsSinceSnapshot;
+  private IOException failure;
+  // background write or snapshot asked for and not started yet
+  private boolean backgroundQueued;
+  private Portfolio portfolio;
+  private SaleHistory saleHistory;
+  private boolean closed;
+
+
+  /**
+   * Constructor to open a journal with default sync and snapshot intervals.
+   *
+   * @param directory directory of the journal and snapshot files, created if missing.
+   * @throws IOException thrown if the journal file can not be opened.
+   */
+  public TransactionJournal(Path directory) throws IOException {
+    this(directory, DEFAULT_SYNC_INTERVAL, DEFAULT_SNAPSHOT_INTERVAL);
+  }
+
+
+  /**
+   * Constructor to open a journal.
+   *
+   * @param directory        directory of the journal and snapshot files, created if missing.
+   * @param syncInterval     time between two writes of collected records to disk.
+   * @param snapshotInterval number of records after which a new snapshot is written.
+   * @throws IOException thrown if the journal file can not be opened.
+   */
+  public TransactionJournal(Path directory, Duration syncInterval, int snapshotInterval)
+      throws IOException {
+    if (syncInterval.isNegative() || syncInterval.isZero()) {
+      throw new IllegalArgumentException("sync interval must be positive");
+    }
+    if (snapshotInterval < 1) {
+      throw new IllegalArgumentException("snapshot interval must be at least 1");
+    }
+    this.directory = Files.createDirectories(directory);
+    this.journalFile = directory.resolve(JOURNAL_FILE);
+    this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+    this.snapshotInterval = snapshotInterval;
+    this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "journal-sync");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = syncInterval.toNanos();
+    syncer.scheduleWithFixedDelay(this::syncQuietly, interval, interval, TimeUnit.NANOSECONDS);
+  }
+
+
+  /**
+   * Recovers the portfolio from the snapshot and the journal, then records all its changes. A
+   * journal without any records gives a portfolio with the default assets, which are recorded too.
+   * Sales are kept in memory.
+   *
+   * @return recovered portfolio.
+   * @throws IOException thrown if the files can not be read.
+   */
+  public Portfolio recover() throws IOException {
+    return recover(new HeapSaleHistory());
+  }
+
+
+  /**
+   * Recovers the portfolio from the snapshot and the journal, keeping its sales in the given
+   * history. A persistent history already holds the sales and is kept as it is.
+   *
+   * @param saleHistory store of the sales of the portfolio.
+   * @return recovered portfolio.
+   * @throws IOException thrown if the files can not be read.
+   */
+  public Portfolio recover(SaleHistory saleHistory) throws IOException {
+    Portfolio recovered;
+    boolean empty;
+    synchronized (syncLock) {
+      synchronized (this) {
+        if (portfolio != null) {
+          throw new IllegalStateException("journal is already recovered");
+        }
+      }
+
+      recovered = new Portfolio(false, saleHistory);
+      long sequence = readSnapshot(recovered);
+      long snapshotAt = sequence;
+      int replayed = 0;
+
+      // replay records written after the snapshot, a torn record ends the journal
+      ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+      long validLength = 0;
+      while (records.remaining() >= Integer.BYTES) {
+        int start = records.position();
+        int length = records.getInt();
+        if (length < Long.BYTES + 1 || records.remaining() < length + Integer.BYTES) {
+          break;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(records.array(), start + Integer.BYTES, length);
+        ByteBuffer body = records.slice(start + Integer.BYTES, length);
+        records.position(start + Integer.BYTES + length);
+        if ((int) crc.getValue() != records.getInt()) {
+          break;
+        }
+
+        long recordSequence = body.getLong();
+        if (recordSequence > sequence) {
+          apply(recovered, body.get(), body);
+          sequence = recordSequence;
+          replayed++;
+        }
+        validLength = records.position();
+      }
+      channel.truncate(validLength);
+      channel.position(validLength);
+      channel.force(true);
+
+      synchronized (this) {
+        lastSequence = sequence;
+        snapshotSequence = snapshotAt;
+        recordsSinceSnapshot = replayed;
+        portfolio = recovered;
+        this.saleHistory = saleHistory;
+      }
+      recovered.setJournal(this);
+      empty = sequence == 0;
+    }
+
+    // outside the sync lock, the portfolio's monitor is always taken first
+    if (empty) {
+      recovered.addDefaultAssets();
+    }
+    return recovered;
+  }
+
+
+  /**
+   * Writes collected records to the journal file and forces them to disk.
+   *
+   * @throws IOException thrown if the journal can not be written.
+   */
+  public void sync() throws IOException {
+    synchronized (syncLock) {
+      SaleHistory history;
+      synchronized (this) {
+        checkFailure();
+        history = saleHistory;
+      }
+      if (history != null) {
+        history.flush();
+      }
+
+      ByteBuffer toWrite = takePending();
+      if (toWrite != null) {
+        write(toWrite);
+      }
+    }
+  }
+
+
+  /**
+   * Writes the whole portfolio to a new snapshot file and starts the journal again. The snapshot
+   * is written to a temporary file first and moved in place, so a crash leaves either the old or
+   * the new snapshot. The portfolio's monitor is only held while the portfolio is copied in
+   * memory, the copy is written without it, so changes made meanwhile do not wait for the disk.
+   *
+   * @throws IOException thrown if the snapshot can not be written.
+   */
+  public void snapshot() throws IOException {
+    Portfolio current;
+    synchronized (this) {
+      if (portfolio == null) {
+        throw new IllegalStateException("journal is not recovered yet");
+      }
+      current = portfolio;
+    }
+
+    synchronized (syncLock) {
+      long sequence;
+      ByteBuffer toWrite;
+      List<Asset> stock;
+      List<Asset> crypto;
+      List<SoldAsset> sales;
+      double funds;
+
+      // the copy and the records it includes are taken in one step
+      synchronized (current) {
+        synchronized (this) {
+          checkFailure();
+          sequence = lastSequence;
+        }
+        toWrite = takePending();
+        stock = copyLots(current.getStock());
+        crypto = copyLots(current.getCrypto());
+        // a persistent sale history keeps its sales itself
+        sales = current.getSaleHistory().isPersistent() ? List.of()
+            : new ArrayList<>(current.getSoldAssets());
+        funds = current.getFunds();
+      }
+
+      // records up to the snapshot reach the disk before the old snapshot is replaced
+      current.getSaleHistory().flush();
+      if (toWrite != null) {
+        write(toWrite);
+      }
+
+      Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+      writeSnapshot(temporary, sequence, stock, crypto, sales, funds);
+      Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+
+      // records up to the snapshot are not needed any more, later ones are still collected
+      channel.truncate(0);
+      channel.position(0);
+      channel.force(true);
+      synchronized (this) {
+        snapshotSequence = sequence;
+        recordsSinceSnapshot = (int) (lastSequence - sequence);
+      }
+    }
+  }
+
+
+  /**
+   * Writes remaining records to disk and closes the journal. Later changes of the portfolio are
+   * not recorded.
+   *
+   * @throws IOException thrown if the remaining records can not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    syncer.shutdownNow();
+    try {
+      sync();
+    } finally {
+      synchronized (this) {
+        closed = true;
+      }
+      channel.close();
+    }
+  }
+
+
+  public synchronized long getLastSequence() {
+    return lastSequence;
+  }
+
+
+  public synchronized long getSnapshotSequence() {
+    return snapshotSequence;
+  }
+
+
+  public synchronized int getRecordsSinceSnapshot() {
+    return recordsSinceSnapshot;
+  }
+
+
+  /**
+   * Waits until the background writes and snapshots asked for so far are done, used by tests.
+   *
+   * @throws InterruptedException thrown if thread is interrupted while waiting.
+   */
+  void awaitBackground() throws InterruptedException {
+    try {
+      syncer.submit(() -> { }).get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+
+  // records of portfolio changes, called by the portfolio
+
+
+  void lotAdded(int list, Asset asset) {
+    ByteBuffer record = begin(LOT_ADDED);
+    record.put((byte) list);
+    putAsset(record, asset.getAssetSymbol(), asset.getAssetFullName(), asset.getAssetType());
+    record.putLong(asset.getTimeStamp());
+    record.putDouble(asset.getPriceBought());
+    record.putDouble(asset.getAmount());
+    end(record);
+  }
+
+
+  void lotRemoved(String symbol, long timeStamp, double priceBought, double amount) {
+    ByteBuffer record = begin(LOT_REMOVED);
+    putString(record, symbol);
+    record.putLong(timeStamp);
+    record.putDouble(priceBought);
+    record.putDouble(amount);
+    end(record);
+  }
+
+
+  void amountChanged(String symbol, long timeStamp, double priceBought, double oldAmount,
+      double newAmount) {
+    ByteBuffer record = begin(AMOUNT_CHANGED);
+    putString(record, symbol);
+    record.putLong(timeStamp);
+    record.putDouble(priceBought);
+    record.putDouble(oldAmount);
+    record.putDouble(newAmount);
+    end(record);
+  }
+
+
+  void saleRecorded(SoldAsset sale) {
+    ByteBuffer record = begin(SALE_RECORDED);
+    putAsset(record, sale.getAssetSymbol(), sale.getAssetFullName(), sale.getAssetType());
+    record.putLong(sale.getTimeStamp());
+    record.putDouble(sale.getAvgPurchasePrice());
+    record.putDouble(sale.getPriceSold());
+    record.putDouble(sale.getAmount());
+    end(record);
+  }
+
+
+  void fundsDeposited(double amount) {
+    ByteBuffer record = begin(FUNDS_DEPOSITED);
+    record.putDouble(amount);
+    end(record);
+  }
+
+
+  void fundsReserved(double amount) {
+    ByteBuffer record = begin(FUNDS_RESERVED);
+    record.putDouble(amount);
+    end(record);
+  }
+
+
+  void fundsCredited(double amount) {
+    ByteBuffer record = begin(FUNDS_CREDITED);
+    record.putDouble(amount);
+    end(record);
+  }
+
+
+  // helper private methods
+
+
+  /**
+   * Helper method to start a record in a scratch buffer.
+   *
+   * @param type record type.
+   * @return buffer positioned after the record header.
+   */
+  private ByteBuffer begin(byte type) {
+    ByteBuffer record = scratch.get();
+    record.clear();
+    record.putInt(0);
+    record.putLong(0);
+    record.put(type);
+    return record;
+  }
+
+
+  /**
+   * Helper method to number a record and append it to the collected records. The background
+   * thread is woken up to write a snapshot when enough records were collected since the last one,
+   * or to write the records when they fill the buffer.
+   *
+   * @param record record started with begin.
+   */
+  private void end(ByteBuffer record) {
+    boolean wake;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (failure != null) {
+        throw new UncheckedIOException("journal failed", failure);
+      }
+      int length = record.position() - Integer.BYTES;
+      record.putInt(0, length);
+      record.putLong(Integer.BYTES, ++lastSequence);
+      CRC32 crc = new CRC32();
+      crc.update(record.array(), Integer.BYTES, length);
+      record.putInt((int) crc.getValue());
+      record.flip();
+
+      if (pending.remaining() < record.remaining()) {
+        ByteBuffer larger = ByteBuffer.allocate(
+            Math.max(pending.capacity() * 2, pending.position() + record.remaining()));
+        pending.flip();
+        larger.put(pending);
+        pending = larger;
+      }
+      pending.put(record);
+      recordsSinceSnapshot++;
+      wake = !backgroundQueued && (recordsSinceSnapshot >= snapshotInterval
+          || pending.position() >= BUFFER_SIZE);
+      backgroundQueued |= wake;
+    }
+
+    if (wake) {
+      try {
+        syncer.execute(this::writeInBackground);
+      } catch (RejectedExecutionException e) {
+        // journal is being closed, close writes the records
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to write a due snapshot, or else the collected records, in the background. A
+   * failure is kept and reported by the next change of the portfolio.
+   */
+  private void writeInBackground() {
+    boolean snapshotDue;
+    synchronized (this) {
+      backgroundQueued = false;
+      snapshotDue = recordsSinceSnapshot >= snapshotInterval;
+    }
+    try {
+      if (snapshotDue) {
+        snapshot();
+      } else {
+        sync();
+      }
+    } catch (IOException e) {
+      synchronized (this) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to write collected records in the background. A failure is kept and reported
+   * by the next change of the portfolio.
+   */
+  private void syncQuietly() {
+    try {
+      sync();
+    } catch (IOException e) {
+      // kept in failure by sync
+    }
+  }
+
+
+  /**
+   * Helper method to take the collected records, leaving an empty buffer to collect new ones.
+   *
+   * @return collected records, null if there are none.
+   */
+  private synchronized ByteBuffer takePending() {
+    if (pending.position() == 0) {
+      return null;
+    }
+    ByteBuffer taken = pending;
+    pending = spare != null ? spare : ByteBuffer.allocate(BUFFER_SIZE);
+    spare = null;
+    return taken;
+  }
+
+
+  /**
+   * Helper method to write taken records to the journal file and force them to disk. The sync
+   * lock must be held, so records are written in sequence order.
+   *
+   * @param records records taken with takePending.
+   * @throws IOException thrown if the journal can not be written.
+   */
+  private void write(ByteBuffer records) throws IOException {
+    try {
+      records.flip();
+      while (records.hasRemaining()) {
+        channel.write(records);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      synchronized (this) {
+        failure = e;
+      }
+      throw e;
+    }
+
+    records.clear();
+    synchronized (this) {
+      if (records.capacity() == BUFFER_SIZE) {
+        spare = records;
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to report an earlier failed write.
+   *
+   * @throws IOException thrown if a write of the journal failed before.
+   */
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("journal failed", failure);
+    }
+  }
+
+
+  /**
+   * Helper method to write symbol, full name and type.
+   */
+  private static void putAsset(ByteBuffer record, String symbol, String fullName, String type) {
+    putString(record, symbol);
+    putString(record, fullName);
+    putString(record, type);
+  }
+
+
+  /**
+   * Helper method to write a string as its UTF-8 length and bytes, null as length -1.
+   *
+   * @param record record buffer.
+   * @param value  string to write.
+   */
+  private static void putString(ByteBuffer record, String value) {
+    if (value == null) {
+      record.putShort((short) -1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("text is too long for the journal");
+    }
+    record.putShort((short) bytes.length);
+    record.put(bytes);
+  }
+
+
+  /**
+   * Helper method to read a string written by putString.
+   *
+   * @param record record buffer.
+   * @return string or null.
+   */
+  private static String getString(ByteBuffer record) {
+    int length = record.getShort();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    record.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  /**
+   * Helper method to apply one journal record to the portfolio.
+   *
+   * @param target portfolio being recovered.
+   * @param type   record type.
+   * @param record record fields.
+   */
+  private static void apply(Portfolio target, byte type, ByteBuffer record) throws IOException {
+    switch (type) {
+      case LOT_ADDED -> {
+        int list = record.get();
+        Asset asset = new Asset(getString(record), getString(record), getString(record),
+            record.getLong(), record.getDouble(), record.getDouble());
+        (list == LotStore.CRYPTO ? target.getCrypto() : target.getStock()).add(asset);
+      }
+      case LOT_REMOVED -> target.removeAsset(new Asset(getString(record), null, null,
+          record.getLong(), record.getDouble(), record.getDouble()));
+      case AMOUNT_CHANGED -> {
+        Asset asset = new Asset(getString(record), null, null, record.getLong(),
+            record.getDouble(), record.getDouble());
+        target.changeAmount(asset, record.getDouble());
+      }
+      case SALE_RECORDED -> target.getSoldAssets().add(new SoldAsset(getString(record),
+          getString(record), getString(record), record.getLong(), record.getDouble(),
+          record.getDouble(), record.getDouble()));
+      case FUNDS_DEPOSITED -> target.depositFunds(record.getDouble());
+      // a reservation was checked when it was made, it is taken again without checking
+      case FUNDS_RESERVED -> target.creditFunds(-record.getDouble());
+      case FUNDS_CREDITED -> target.creditFunds(record.getDouble());
+      default -> throw new IOException("unknown journal record type " + type);
+    }
+  }
+
+
+  /**
+   * Helper method to copy lots of one list, in list order, for a snapshot. The portfolio's monitor
+   * must be held.
+   *
+   * @param lots stock or crypto list.
+   * @return copies of the lots.
+   */
+  private static List<Asset> copyLots(List<Asset> lots) {
+    List<Asset> copies = new ArrayList<>(lots.size());
+    for (Asset lot : lots) {
+      copies.add(new Asset(lot.getAssetSymbol(), lot.getAssetFullName(), lot.getAssetType(),
+          lot.getTimeStamp(), lot.getPriceBought(), lot.getAmount()));
+    }
+    return copies;
+  }
+
+
+  /**
+   * Helper method to write a copy of the portfolio to a file.
+   *
+   * @param file     file to write.
+   * @param sequence sequence number of the last record included.
+   * @param stock    copies of the stock lots in list order.
+   * @param crypto   copies of the crypto lots in list order.
+   * @param sales    sales kept in memory, empty for a persistent sale history.
+   * @param funds    available funds.
+   */
+  private static void writeSnapshot(Path file, long sequence, List<Asset> stock,
+      List<Asset> crypto, List<SoldAsset> sales, double funds) throws IOException {
+    CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(file), BUFFER_SIZE), new CRC32());
+    try (DataOutputStream out = new DataOutputStream(checked)) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeLong(sequence);
+      out.writeDouble(funds);
+
+      out.writeInt(stock.size() + crypto.size());
+      writeLots(out, LotStore.STOCK, stock);
+      writeLots(out, LotStore.CRYPTO, crypto);
+
+      out.writeInt(sales.size());
+      for (SoldAsset sale : sales) {
+        writeAsset(out, sale.getAssetSymbol(), sale.getAssetFullName(), sale.getAssetType());
+        out.writeLong(sale.getTimeStamp());
+        out.writeDouble(sale.getAvgPurchasePrice());
+        out.writeDouble(sale.getPriceSold());
+        out.writeDouble(sale.getAmount());
+      }
+
+      out.flush();
+      out.writeInt((int) checked.getChecksum().getValue());
+    }
+
+    try (FileChannel written = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      written.force(true);
+    }
+  }
+
+
+  /**
+   * Helper method to write lots of one list to a snapshot.
+   */
+  private static void writeLots(DataOutputStream out, int list, Iterable<Asset> lots)
+      throws IOException {
+    for (Asset lot : lots) {
+      out.writeByte(list);
+      writeAsset(out, lot.getAssetSymbol(), lot.getAssetFullName(), lot.getAssetType());
+      out.writeLong(lot.getTimeStamp());
+      out.writeDouble(lot.getPriceBought());
+      out.writeDouble(lot.getAmount());
+    }
+  }
+
+
+  /**
+   * Helper method to write symbol, full name and type to a snapshot, null as an empty flag.
+   */
+  private static void writeAsset(DataOutputStream out, String symbol, String fullName,
+      String type) throws IOException {
+    for (String value : new String[] {symbol, fullName, type}) {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        out.writeUTF(value);
+      }
+    }
+  }
+
+
+  /**
+   * Helper method to read symbol, full name and type written by writeAsset.
+   */
+  private static String[] readAsset(DataInputStream in) throws IOException {
+    String[] values = new String[3];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readBoolean() ? in.readUTF() : null;
+    }
+    return values;
+  }
+
+
+  /**
+   * Helper method to load the snapshot into an empty portfolio.
+   *
+   * @param target empty portfolio.
+   * @return sequence number of the last record included in the snapshot, 0 without snapshot.
+   * @throws IOException thrown if the snapshot can not be read or is damaged.
+   */
+  private long readSnapshot(Portfolio target) throws IOException {
+    if (!Files.exists(snapshotFile)) {
+      return 0;
+    }
+
+    CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(
+        Files.newInputStream(snapshotFile), BUFFER_SIZE), new CRC32());
+    try (DataInputStream in = new DataInputStream(checked)) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("not a portfolio snapshot: " + snapshotFile);
+      }
+      long sequence = in.readLong();
+      target.depositFunds(in.readDouble());
+
+      int lotCount = in.readInt();
+      for (int i = 0; i < lotCount; i++) {
+        int list = in.readByte();
+        String[] names = readAsset(in);
+        Asset lot = new Asset(names[0], names[1], names[2], in.readLong(), in.readDouble(),
+            in.readDouble());
+        (list == LotStore.CRYPTO ? target.getCrypto() : target.getStock()).add(lot);
+      }
+
+      int saleCount = in.readInt();
+      for (int i = 0; i < saleCount; i++) {
+        String[] names = readAsset(in);
+        target.getSoldAssets().add(new SoldAsset(names[0], names[1], names[2], in.readLong(),
+            in.readDouble(), in.readDouble(), in.readDouble()));
+      }
+
+      int expected = (int) checked.getChecksum().getValue();
+      if (in.readInt() != expected) {
+        throw new IOException("damaged portfolio snapshot: " + snapshotFile);
+      }
+      return sequence;
+    } catch (EOFException e) {
+      throw new IOException("damaged portfolio snapshot: " + snapshotFile, e);
+    }
+  }
+}
@@ -1,15 +1,28 @@
 package com.lyit.csd;
 
+import com.lyit.csd.QuoteProvider.Priority;
 import java.io.IOException;
-import java.text.DecimalFormat;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.Map.Entry;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * User class is the portfolio system of one account. A user can be shared by threads: funds are
+ * kept and reserved by the portfolio in one step, so two purchases never spend the same money and
+ * a journaled portfolio recovers its funds with its assets, and a sale holds the lock of its symbol
+ * while it reads and changes the lots. Reports are written from snapshots of the portfolio. Live
+ * quotes are fetched without holding any lock.
+ */
 public class User implements PortfolioSystem {
 
-  private String keyApi;
-  private double availableFunds;
+  private QuoteProvider quoteProvider;
   private Portfolio userPortfolio;
+  private QuoteCache quoteCache;
+  private volatile HistoryCache historyCache;
 
   /**
     * Constructor to instantiate a User.
@@ -18,9 +31,68 @@ public class User implements PortfolioSystem {
     * and retrieve information.
     */
   public User(String keyApi) {
-    this.keyApi = keyApi;
-    availableFunds = 10_000;
-    userPortfolio = new Portfolio();
+    this(newApiProvider(keyApi), new QuoteCache());
+  }
+
+  /**
+    * Constructor to instantiate a User which shares quote cache with others.
+    *
+    * @param keyApi the Api Key used to the user connect to Yahoo Finance API
+    * and retrieve information.
+    * @param quoteCache cache of live quotes used before a request is made.
+    */
+  public User(String keyApi, QuoteCache quoteCache) {
+    this(newApiProvider(keyApi), quoteCache);
+  }
+
+  /**
+    * Constructor to instantiate a User which reads historic data through the on-disk cache of a
+    * directory. Users given the same directory share the cached prices, each fetches what is
+    * missing with its own Api Key. The directory is created when the first prices are cached.
+    *
+    * @param keyApi the Api Key used to the user connect to Yahoo Finance API
+    * and retrieve information.
+    * @param quoteCache cache of live quotes used before a request is made.
+    * @param historyDirectory directory of the history cache.
+    */
+  public User(String keyApi, QuoteCache quoteCache, Path historyDirectory) {
+    this(newApiProvider(keyApi), quoteCache);
+    historyCache = HistoryCache.shared(historyDirectory);
+  }
+
+  /**
+    * Constructor to instantiate a User which gets live quotes from any provider, for example
+    * a simulator when no network should be used.
+    *
+    * @param quoteProvider source of live quotes.
+    */
+  public User(QuoteProvider quoteProvider) {
+    this(quoteProvider, new QuoteCache());
+  }
+
+  /**
+    * Constructor to instantiate a User which gets live quotes from any provider and shares quote
+    * cache with others.
+    *
+    * @param quoteProvider source of live quotes.
+    * @param quoteCache cache of live quotes used before the provider is asked.
+    */
+  public User(QuoteProvider quoteProvider, QuoteCache quoteCache) {
+    this(quoteProvider, quoteCache, new Portfolio());
+  }
+
+  /**
+    * Constructor to instantiate a User with an existing portfolio, for example one recovered from
+    * a transaction journal. Available funds are the funds of the portfolio.
+    *
+    * @param quoteProvider source of live quotes.
+    * @param quoteCache cache of live quotes used before the provider is asked.
+    * @param portfolio portfolio of the user.
+    */
+  public User(QuoteProvider quoteProvider, QuoteCache quoteCache, Portfolio portfolio) {
+    this.quoteProvider = quoteProvider;
+    this.quoteCache = quoteCache;
+    userPortfolio = portfolio;
   }
 
 
@@ -33,13 +105,13 @@ public class User implements PortfolioSystem {
   @Override
   public void addFunds(double amount) {
     if (amount > 0) {
-      availableFunds += amount;
+      userPortfolio.depositFunds(amount);
     }
   }
 
   @Override
   public boolean withdrawFunds(double amount) {
-    return availableFunds - amount >= 0;
+    return getAvailableFunds() - amount >= 0;
   }
 
 
@@ -61,48 +133,53 @@ public class User implements PortfolioSystem {
       return false;
     }
 
-    // make connection to get asset quote from yahoo finance api
-    String requestString = "v6/finance/quote?region=US&lang=en&symbols=" + assetSymbol;
-    ConnectionPort cp = new ConnectionPort(requestString, keyApi);
+    // get asset quote from cache or yahoo finance api
+    AssetQuote quote = getLiveQuote(assetSymbol, Priority.TRADE);
 
     // if requested symbol is not real asset symbol
-    if (cp.getAssetQuote().isEmpty()) {
+    if (quote == null) {
       return false;
     }
 
-    // if we have enough funds to purchase asset
-    double transactionCost = cp.getAssetQuote().get(0).getLivePrice() * amount;
-
-    if (withdrawFunds(transactionCost)) {
-
-      //create new asset instance
-      Asset newAsset = new Asset(
-          cp.getAssetQuote().get(0).getAssetSymbol(),
-          cp.getAssetQuote().get(0).getAssetFullName(),
-          cp.getAssetQuote().get(0).getAssetType(),
-          cp.getAssetQuote().get(0).getTimeStamp(),
-          cp.getAssetQuote().get(0).getLivePrice(),
-          amount
-      );
-
-      //add it to the right portfolio type and pay for asset
-      findPortfolioType(newAsset.getAssetType(), newAsset);
-      availableFunds -= transactionCost;
-
-      // update our portfolio class with needed information
-      if (!userPortfolio.getAssetsInPortfolio().containsKey(assetSymbol)) {
-        userPortfolio.getAssetsInPortfolio().put(newAsset.getAssetSymbol(),
-            newAsset.getAssetType());
-      }
+    // pay for asset if we have enough funds, in one step so no other purchase spends them
+    double transactionCost = quote.getLivePrice() * amount;
+    if (!userPortfolio.reserveFunds(transactionCost)) {
+      return false;
+    }
 
-      if (!userPortfolio.getAllAssetNames().contains(newAsset.getAssetFullName())) {
-        userPortfolio.getAllAssetNames().add(newAsset.getAssetFullName());
-      }
+    try {
+      addPurchase(quote, amount);
+    } catch (RuntimeException e) {
+      userPortfolio.creditFunds(transactionCost);
+      throw e;
     }
 
     return true;
   }
 
+  /**
+   * Helper method to add a paid purchase to the portfolio.
+   *
+   * @param quote  live quote the asset is bought at
+   * @param amount amount bought
+   */
+  private void addPurchase(AssetQuote quote, double amount) {
+
+    //create new asset instance
+    Asset newAsset = new Asset(
+        quote.getAssetSymbol(),
+        quote.getAssetFullName(),
+        quote.getAssetType(),
+        quote.getTimeStamp(),
+        quote.getLivePrice(),
+        amount
+    );
+
+    // add it to the right portfolio type, portfolio indexes it by symbol and updates names,
+    // types and valuation
+    findPortfolioType(newAsset.getAssetType(), newAsset);
+  }
+
   /**
    * Helper method to find proper asset list by type for a new Asset.
    *
@@ -136,85 +213,297 @@ public class User implements PortfolioSystem {
   public boolean sellAsset(String assetSymbol, double amount)
       throws IOException, InterruptedException {
 
-    // check if asset symbol is in portfolio
-    if(!userPortfolio.getAssetsInPortfolio().containsKey(assetSymbol))
+    if(amount <= 0)
       return false;
 
-    if(amount <= 0)
+    // if asset symbol is not in portfolio or user wants to sell more than he have, checked
+    // again against the lots once the symbol is locked
+    if(amount > userPortfolio.getAmount(assetSymbol))
       return false;
 
-    // find amount of asset user holds in the portfolio
-    double userHoldsAmount = 0;
-    double toSell = amount;
-    String assetFullName = "";
-
-    //make list with all assets of this symbol
-    List<Asset> requestedAssets = new ArrayList<>();
-    for (Asset asset : userPortfolio.findPortfolioListType(assetSymbol)) {
-      if(asset.getAssetSymbol().equals(assetSymbol)){
-        userHoldsAmount += asset.getAmount();
-        requestedAssets.add(asset);
-      }
-    }
+    // get live price before any asset is changed
+    AssetQuote quote = getLiveQuote(assetSymbol, Priority.TRADE);
 
-    // if user wants to sell more than he have
-    if(amount > userHoldsAmount)
+    // api does not know the symbol
+    if(quote == null)
       return false;
 
-    // sort list by price (low to high)
+    // lots of the symbol must not change between reading and selling them
+    Lock symbolLock = userPortfolio.getSymbolLock(assetSymbol);
+    symbolLock.lock();
+    try {
+      // another sale may have been made while the quote was fetched
+      if(amount > userPortfolio.getAmount(assetSymbol))
+        return false;
+
+      sellLots(assetSymbol, amount, quote);
+    } finally {
+      symbolLock.unlock();
+    }
+
+    // check transaction cost and add it to our funds
+    userPortfolio.creditFunds(quote.getLivePrice() * amount);
+    return true;
+  }
+
+  /**
+   * Helper method to sell held assets of a symbol, cheapest first, and record the sale. The lock of
+   * the symbol must be held and enough of the asset must be held.
+   *
+   * @param assetSymbol the name of the asset to sell
+   * @param amount      the amount of the asset to sell
+   * @param quote       live quote the asset is sold at
+   */
+  private void sellLots(String assetSymbol, double amount, AssetQuote quote) {
+
+    // all assets of this symbol sorted by price (low to high)
+    List<Asset> requestedAssets = new ArrayList<>(userPortfolio.getLots(assetSymbol));
+
+    // sale of everything held removes every lot, whatever rounding of the sum in price order
+    // leaves over
+    boolean sellAll = amount >= userPortfolio.getAmount(assetSymbol);
     requestedAssets.sort(Comparator.comparing(Asset::getPriceBought));
 
     // as list is sorted, we can sell assets in right order
+    double toSell = amount;
     double avgPurchasePrice = 0;
     int assetsCount = 0;
-    boolean isStill = false;
     for (Asset asset : requestedAssets){
 
+      if(toSell <= 0 && !sellAll)
+        break;
+
       avgPurchasePrice += asset.getPriceBought();
       assetsCount++;
 
-      if(toSell - asset.getAmount() >= 0) {
-        userPortfolio.findPortfolioListType(assetSymbol).remove(asset);
+      // portfolio removes names and type of the symbol with its last asset
+      if(sellAll || toSell - asset.getAmount() >= 0) {
+        userPortfolio.removeAsset(asset);
         toSell -= asset.getAmount();
       } else {
-        asset.setAmount(asset.getAmount() - toSell);
-        isStill = true;
+        userPortfolio.changeAmount(asset, asset.getAmount() - toSell);
+        toSell = 0;
       }
-      if(assetFullName.isEmpty())
-        assetFullName = asset.getAssetFullName();
     }
 
-    // make connection to get live price
-    String requestString = "v6/finance/quote?region=US&lang=en&symbols=" + assetSymbol;
-    ConnectionPort cp = new ConnectionPort(requestString, keyApi);
-
-    // to avoid limit exceeded if user has more than 100 requests per day
-    if(cp.getAssetQuote().isEmpty())
-      return false;
-
-    // check transaction cost and add it to our funds
-    double transactionCost = cp.getAssetQuote().get(0).getLivePrice() * amount;
-    availableFunds += transactionCost;
+    userPortfolio.getValuation().updatePrice(assetSymbol, quote.getLivePrice());
 
     // add sold asset to the sold asset list
     userPortfolio.getSoldAssets().add(new SoldAsset(
-        cp.getAssetQuote().get(0).getAssetSymbol(),
-        cp.getAssetQuote().get(0).getAssetFullName(),
-        cp.getAssetQuote().get(0).getAssetType(),
-        cp.getAssetQuote().get(0).getTimeStamp(),
+        quote.getAssetSymbol(),
+        quote.getAssetFullName(),
+        quote.getAssetType(),
+        quote.getTimeStamp(),
         avgPurchasePrice / assetsCount,
-        cp.getAssetQuote().get(0).getLivePrice(),
+        quote.getLivePrice(),
         amount
     ));
+  }
+
+  /**
+   * Execute a batch of purchases and sales. All orders are priced with one request for the live
+   * prices of their symbols. Sales are made before purchases, so money from the sales of the batch
+   * pays for its purchases, and funds are checked for the whole batch. The locks of all symbols of
+   * the batch are held while it is executed.
+   * <p>
+   * An atomic batch is executed completely or not at all: if any order can not be executed, no
+   * order is. Otherwise every order is executed if it can be and the others report why not.
+   *
+   * @param orders orders to execute
+   * @param atomic true to execute all orders or none
+   * @return result of every order, in the order of the orders
+   */
+  @Override
+  public List<OrderResult> executeOrders(List<Order> orders, boolean atomic)
+      throws IOException, InterruptedException {
+
+    OrderResult[] results = new OrderResult[orders.size()];
 
-    // if asset is fully sold we need to remove extra information we hold
-    if(!isStill) {
-      userPortfolio.getAssetsInPortfolio().remove(assetSymbol);
-      userPortfolio.getSymbolFullName().remove(assetSymbol);
-      userPortfolio.getAllAssetNames().remove(assetFullName);
+    // one request for the live prices of all symbols
+    Set<String> symbols = new LinkedHashSet<>();
+    for (Order order : orders) {
+      if (order.getAssetSymbol() != null && order.getAmount() > 0) {
+        symbols.add(order.getAssetSymbol());
+      }
     }
+    Map<String, AssetQuote> quotes = getLiveQuotes(symbols, Priority.TRADE);
 
-    return true;
+    // sales first, so their money is there for the purchases
+    List<Integer> sequence = new ArrayList<>(orders.size());
+    for (int i = 0; i < orders.size(); i++) {
+      if (orders.get(i).getSide() == Order.Side.SELL) {
+        sequence.add(i);
+      }
+    }
+    for (int i = 0; i < orders.size(); i++) {
+      if (orders.get(i).getSide() != Order.Side.SELL) {
+        sequence.add(i);
+      }
+    }
+
+    // portfolio keeps symbols as the api spells them
+    Set<String> quotedSymbols = new HashSet<>();
+    for (AssetQuote quote : quotes.values()) {
+      quotedSymbols.add(quote.getAssetSymbol());
+    }
+    List<Lock> locks = userPortfolio.getSymbolLocks(quotedSymbols);
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    try {
+      if (atomic) {
+        executeAtomically(orders, sequence, quotes, results);
+      } else {
+        for (int i : sequence) {
+          results[i] = executeOrder(orders.get(i), quotes);
+        }
+      }
+    } finally {
+      for (Lock lock : locks) {
+        lock.unlock();
+      }
+    }
+
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Helper method to execute a batch completely or not at all. All orders are checked against the
+   * holdings and funds first, the funds for the whole batch are taken in one step and then all
+   * orders are applied.
+   *
+   * @param orders   orders of the batch
+   * @param sequence positions of the orders in execution order
+   * @param quotes   live quotes keyed by normalised symbol
+   * @param results  results to fill, by position of the order
+   */
+  private void executeAtomically(List<Order> orders, List<Integer> sequence,
+      Map<String, AssetQuote> quotes, OrderResult[] results) {
+
+    // check every order against what the batch leaves of the holdings
+    Map<String, Double> holdings = new HashMap<>();
+    double cost = 0;
+    boolean rejected = false;
+    for (int i : sequence) {
+      Order order = orders.get(i);
+      AssetQuote quote = priceOf(order, quotes);
+      double price = quote == null ? Double.NaN : quote.getLivePrice();
+      String failure = checkOrder(order, quote);
+      if (failure == null && order.getSide() == Order.Side.SELL) {
+        double held = holdings.computeIfAbsent(quote.getAssetSymbol(), userPortfolio::getAmount);
+        if (order.getAmount() > held) {
+          failure = "not enough " + quote.getAssetSymbol() + " held";
+        } else {
+          holdings.put(quote.getAssetSymbol(), held - order.getAmount());
+          cost -= price * order.getAmount();
+        }
+      } else if (failure == null) {
+        cost += price * order.getAmount();
+      }
+      results[i] = failure == null ? OrderResult.executed(order, price)
+          : OrderResult.failed(order, price, failure);
+      rejected |= failure != null;
+    }
+
+    if (!rejected && cost > 0 && !userPortfolio.reserveFunds(cost)) {
+      for (int i : sequence) {
+        results[i] = OrderResult.failed(orders.get(i), results[i].getPrice(),
+            "not enough funds for the batch");
+      }
+      return;
+    }
+    if (rejected) {
+      for (int i : sequence) {
+        if (results[i].isExecuted()) {
+          results[i] = OrderResult.failed(orders.get(i), results[i].getPrice(),
+              "batch rejected");
+        }
+      }
+      return;
+    }
+
+    for (int i : sequence) {
+      Order order = orders.get(i);
+      AssetQuote quote = priceOf(order, quotes);
+      if (order.getSide() == Order.Side.SELL) {
+        sellLots(quote.getAssetSymbol(), order.getAmount(), quote);
+      } else {
+        addPurchase(quote, order.getAmount());
+      }
+    }
+    if (cost < 0) {
+      userPortfolio.creditFunds(-cost);
+    }
+  }
+
+  /**
+   * Helper method to execute one order of a batch which is not atomic. The lock of the order's
+   * symbol must be held.
+   *
+   * @param order  order to execute
+   * @param quotes live quotes keyed by normalised symbol
+   * @return result of the order
+   */
+  private OrderResult executeOrder(Order order, Map<String, AssetQuote> quotes) {
+
+    AssetQuote quote = priceOf(order, quotes);
+    double price = quote == null ? Double.NaN : quote.getLivePrice();
+    String failure = checkOrder(order, quote);
+    if (failure != null) {
+      return OrderResult.failed(order, price, failure);
+    }
+
+    if (order.getSide() == Order.Side.SELL) {
+      if (order.getAmount() > userPortfolio.getAmount(quote.getAssetSymbol())) {
+        return OrderResult.failed(order, price, "not enough " + quote.getAssetSymbol() + " held");
+      }
+      sellLots(quote.getAssetSymbol(), order.getAmount(), quote);
+      userPortfolio.creditFunds(price * order.getAmount());
+    } else {
+      double cost = price * order.getAmount();
+      if (!userPortfolio.reserveFunds(cost)) {
+        return OrderResult.failed(order, price, "not enough funds");
+      }
+      try {
+        addPurchase(quote, order.getAmount());
+      } catch (RuntimeException e) {
+        userPortfolio.creditFunds(cost);
+        throw e;
+      }
+    }
+    return OrderResult.executed(order, price);
+  }
+
+  /**
+   * Helper method to check an order which does not depend on holdings or funds.
+   *
+   * @param order order to check
+   * @param quote live quote of its symbol, null if there is none
+   * @return reason the order can not be executed, null if it can
+   */
+  private static String checkOrder(Order order, AssetQuote quote) {
+    if (order.getAssetSymbol() == null || order.getSide() == null) {
+      return "incomplete order";
+    }
+    if (order.getAmount() <= 0) {
+      return "amount must be positive";
+    }
+    if (quote == null) {
+      return "no live price for " + order.getAssetSymbol();
+    }
+    return null;
+  }
+
+  /**
+   * Helper method to find the live quote of an order.
+   *
+   * @param order  the order
+   * @param quotes live quotes keyed by normalised symbol
+   * @return quote or null if there is none
+   */
+  private static AssetQuote priceOf(Order order, Map<String, AssetQuote> quotes) {
+    return order.getAssetSymbol() == null ? null
+        : quotes.get(QuoteCache.normalise(order.getAssetSymbol()));
   }
 
   /**
@@ -241,11 +530,34 @@ public class User implements PortfolioSystem {
    *                     data for the specified assets. Valid values include 1d 5d, 1mo, 3mo, 6mo,
    *                     1y, 5y, max. Where max represents the maximum available duration (lifetime
    *                     of the asset).
-   * @return A list of assetQuotes objects.
+   * @return A list of assetQuotes objects, the points of every asset in time order, assets in the
+   * order of the list. Empty if there is no source of historic data.
    */
   @Override
   public List<AssetQuote> getHistoricalData(List<String> assetSymbols, String interval, String range) {
-    return null;
+
+    // cached history if there is a cache, prices it misses come from the provider of this user
+    HistoryCache cache = historyCache;
+    List<AssetQuote> result = new ArrayList<>();
+    if (!(quoteProvider instanceof HistoryProvider)) {
+      return result;
+    }
+    HistoryProvider source = (HistoryProvider) quoteProvider;
+
+    long end = System.currentTimeMillis() / 1000;
+    long start = HistoryCache.rangeStart(interval, range, end);
+    try {
+      for (String symbol : new LinkedHashSet<>(assetSymbols)) {
+        result.addAll(cache != null ? cache.getHistory(symbol, interval, start, end, source)
+            : source.getHistory(symbol, interval, start, end));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new InterruptedIOException("interrupted fetching history"));
+    }
+    return result;
   }
 
   /**
@@ -269,12 +581,93 @@ public class User implements PortfolioSystem {
    * exchange.
    *
    * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
-   * @return A list of AssetQuote objects. Return an empty list if we have no assets in our
-   * portfolio.
+   * @return A list of AssetQuote objects in order of the names, each asset once. Return an empty
+   * list if we have no assets in our portfolio.
    */
   @Override
   public List<AssetQuote> getAssetInformation(List<String> assetNames) {
-    return null;
+    return getAssetInformationAsync(assetNames).join();
+  }
+
+  /**
+   * Retrieve realtime quote data for the assets within the list assetNames without blocking the
+   * calling thread. Quotes for all names are requested at the same time.
+   *
+   * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
+   * @return A future completed with a list of AssetQuote objects in order of the names, each asset
+   * once. The list is empty if we have no assets in our portfolio.
+   */
+  @Override
+  public CompletableFuture<List<AssetQuote>> getAssetInformationAsync(List<String> assetNames) {
+    return lookupAssetsAsync(assetNames).thenApply(lookups -> {
+      // an asset found by two names is listed once
+      Map<String, AssetQuote> quotes = new LinkedHashMap<>();
+      for (AssetLookup lookup : lookups) {
+        for (AssetQuote quote : lookup.getQuotes()) {
+          quotes.putIfAbsent(quote.getAssetSymbol(), quote);
+        }
+      }
+      return new ArrayList<>(quotes.values());
+    });
+  }
+
+  /**
+   * Find the assets of the portfolio for every name and their realtime quotes, telling for every
+   * name which could not be found or quoted why.
+   *
+   * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
+   * @return lookup of every name, in order of the names
+   */
+  @Override
+  public List<AssetLookup> lookupAssets(List<String> assetNames) {
+    return lookupAssetsAsync(assetNames).join();
+  }
+
+  /**
+   * Find the assets of the portfolio for every name and their realtime quotes without blocking
+   * the calling thread. Every name is looked up in the portfolio symbol directory once, quotes
+   * which are fresh in the quote cache are used and all other symbols are fetched together, in as
+   * few requests as the quote endpoint allows.
+   *
+   * @param assetNames a list of asset symbols for example, "Bitcoin-USD", "Appl", "TSLA"
+   * @return A future completed with the lookup of every name, in order of the names
+   */
+  @Override
+  public CompletableFuture<List<AssetLookup>> lookupAssetsAsync(List<String> assetNames) {
+
+    // a name asked for more than once is resolved once
+    SymbolDirectory directory = userPortfolio.getSymbolDirectory();
+    Map<String, List<String>> symbolsByName = new HashMap<>();
+    Set<String> symbols = new LinkedHashSet<>();
+    for (String name : assetNames) {
+      symbols.addAll(symbolsByName.computeIfAbsent(name, directory::resolve));
+    }
+
+    return getLiveQuotesAsync(symbols, Priority.REPORT).thenApply(quotes -> {
+      List<AssetLookup> result = new ArrayList<>(assetNames.size());
+      for (String name : assetNames) {
+        List<String> found = symbolsByName.get(name);
+        List<AssetQuote> quoted = new ArrayList<>();
+        List<String> unquoted = new ArrayList<>();
+        for (String symbol : found) {
+          AssetQuote quote = quotes.get(QuoteCache.normalise(symbol));
+          if (quote != null) {
+            quoted.add(quote);
+          } else {
+            unquoted.add(symbol);
+          }
+        }
+
+        String failure = null;
+        if (found.isEmpty()) {
+          failure = "no asset of the portfolio matches the name";
+        } else if (!unquoted.isEmpty()) {
+          failure = "no live quote for " + String.join(", ", unquoted);
+        }
+        result.add(new AssetLookup(name, found, quoted, failure));
+      }
+      return result;
+    });
   }
 
   /**
@@ -285,7 +678,24 @@ public class User implements PortfolioSystem {
    */
   @Override
   public double getPortfolioValue() {
-    return 0;
+    return getPortfolioValueAsync().join();
+  }
+
+  /**
+   * Retrieve the current value of all of the assets in the portfolio without blocking the calling
+   * thread. Live values of all assets are requested at the same time.
+   *
+   * @return a future completed with the value of the portfolio in USD
+   */
+  @Override
+  public CompletableFuture<Double> getPortfolioValueAsync() {
+
+    // only quotes which are not fresh are fetched, only changed prices update the value
+    PortfolioValuation valuation = userPortfolio.getValuation();
+    return getLiveQuotesAsync(valuation.getSymbols(), Priority.REPORT).thenApply(quotes -> {
+      valuation.updatePrices(quotes.values());
+      return valuation.getMarketValue();
+    });
   }
 
   /**
@@ -297,24 +707,64 @@ public class User implements PortfolioSystem {
    */
   @Override
   public String listAllInvestments() {
+    return listAllInvestmentsAsync().join();
+  }
+
+  /**
+   * Writes details of every asset within the portfolio, like listAllInvestments, to the output as
+   * they are made. Assets are taken from the portfolio in one snapshot, so the report is
+   * consistent while other threads trade.
+   *
+   * @param out destination of the summary information on the assets in the portfolio.
+   */
+  @Override
+  public void listAllInvestments(Appendable out) throws IOException, InterruptedException {
+
+    Map<String, Collection<Asset>> lotsBySymbol = userPortfolio.getLotsBySymbol();
+    Map<String, AssetQuote> quotes = getLiveQuotes(lotsBySymbol.keySet(), Priority.REPORT);
+
+    ReportRenderer renderer = new ReportRenderer(out);
+    for (Entry<String, Collection<Asset>> entry : lotsBySymbol.entrySet()) {
+      AssetQuote quote = quotes.get(QuoteCache.normalise(entry.getKey()));
+      if (quote != null) {
+        assetDetailedInfo(renderer, entry.getValue(), quote.getLivePrice());
+      }
+    }
+  }
+
+  /**
+   * Returns a formatted string detailing every asset within the portfolio, like
+   * listAllInvestments, without blocking the calling thread. Live values of all assets are
+   * requested at the same time.
+   *
+   * @return a future completed with summary information on the assets in the portfolio.
+   */
+  @Override
+  public CompletableFuture<String> listAllInvestmentsAsync() {
 
-    // Creating StringBuilder to store all investments for return
-    StringBuilder result = new StringBuilder();
     // HashMap to help return assets by symbol
     HashMap<String, List<Asset>> sortedPortfolio = getAllSortedPortfolio();
 
     // getting current information of the user's assets
-    List<String> userHoldsSymbol = userPortfolio.getAllAssetNames();
-    List<AssetQuote> quotes = getAssetInformation(userHoldsSymbol);
+    return getLiveQuotesAsync(sortedPortfolio.keySet(), Priority.REPORT).thenApply(quotes -> {
 
-    // creating loop to iterate through the quotes for detailed information
-    for (AssetQuote quote : quotes) {
-      List<Asset> assetList = sortedPortfolio.get(quote.getAssetSymbol());
-      result.append(assetDetailedInfo(assetList, quote.getLivePrice()));
-    }
+      // Creating StringBuilder to store all investments for return
+      StringBuilder result = new StringBuilder();
+      ReportRenderer renderer = new ReportRenderer(result);
 
+      // creating loop to iterate through the quotes for detailed information
+      try {
+        for (AssetQuote quote : quotes.values()) {
+          List<Asset> assetList = sortedPortfolio.get(quote.getAssetSymbol());
+          assetDetailedInfo(renderer, assetList, quote.getLivePrice());
+        }
+      } catch (IOException e) {
+        // StringBuilder is never failing to append
+        throw new UncheckedIOException(e);
+      }
 
-    return result.toString();
+      return result.toString();
+    });
   }
 
  
@@ -336,69 +786,37 @@ public class User implements PortfolioSystem {
 
       if(assetType.equals("CRYPTOCURRENCY")|| assetType.equals("EQUITY")){
           StringBuilder body = new StringBuilder();
-          HashMap<String, List<Asset>> orderedPortfolio = new HashMap<>();
-          List<Asset> checkPortfolio = new ArrayList<>();
-          List<String> symbolsInPortfolio = new ArrayList<>();
-
-        if(assetType.equals("EQUITY"))
-            checkPortfolio = userPortfolio.getStock();
-
-        if(assetType.equals("CRYPTOCURRENCY"))
-            checkPortfolio = userPortfolio.getCrypto();
-
-        for(Asset asset : checkPortfolio){
-            if(!orderedPortfolio.containsKey(asset.getAssetSymbol())){
-                ArrayList<Asset> list = new ArrayList<>();
-                list.add(asset);
-                orderedPortfolio.put(asset.getAssetSymbol(), list);
-            }else{
-                orderedPortfolio.get(asset.getAssetSymbol()).add(asset);
-            }
-        }
-          double totalPrice;
-          double amount;
-          List<AssetQuote> quotes = getAssetInformation(symbolsInPortfolio);
-          HashMap<String, AssetQuote> quotesGrouped = new HashMap<>();
-          for(AssetQuote quote : quotes)
-              quotesGrouped.put(quote.getAssetSymbol(), quote);
-
-          for(String assetKey : orderedPortfolio.keySet()) {
-              totalPrice = 0;
-              amount = 0;
-              for (Asset asset : orderedPortfolio.get(assetKey)) {
+          ReportRenderer renderer = new ReportRenderer(body);
+
+          // symbols of requested type, their assets come from one snapshot of the portfolio
+          Map<String, Collection<Asset>> lotsOfType = new HashMap<>();
+          for (Entry<String, Collection<Asset>> entry :
+                  userPortfolio.getLotsBySymbol().entrySet()) {
+              if (entry.getValue().iterator().next().getAssetType().equals(assetType))
+                  lotsOfType.put(entry.getKey(), entry.getValue());
+          }
+
+          Map<String, AssetQuote> quotesGrouped =
+                  getLiveQuotes(lotsOfType.keySet(), Priority.REPORT);
+
+          for(Entry<String, Collection<Asset>> entry : lotsOfType.entrySet()) {
+              String assetKey = entry.getKey();
+              Collection<Asset> assets = entry.getValue();
+              AssetQuote quote = quotesGrouped.get(QuoteCache.normalise(assetKey));
+              if (quote == null)
+                  continue;
+
+              double totalPrice = 0;
+              double amount = 0;
+              String assetFullName = "";
+              for (Asset asset : assets) {
                   totalPrice += asset.getPriceBought();
                   amount += asset.getAmount();
-                  if (orderedPortfolio.get(asset.getAssetSymbol()).indexOf(asset) ==
-                          orderedPortfolio.get(asset.getAssetSymbol()).size() - 1) {
-
-                      double avgPurchasePrice = totalPrice /
-                              orderedPortfolio.get(asset.getAssetSymbol()).size();
-                      avgPurchasePrice = Double.parseDouble(
-                              new DecimalFormat(".##").format(avgPurchasePrice));
-
-                      double livePrice = quotesGrouped.get(asset.getAssetSymbol()).getLivePrice();
-                      double currentValue = amount *
-                              quotesGrouped.get(asset.getAssetSymbol()).getLivePrice();
-                      currentValue =  Double.parseDouble(
-                              new DecimalFormat(".##").format(currentValue));
-
-                      String ANSI_GREEN = "\u001B[32m";
-                      String ANSI_RED = "\u001B[31m";
-                      String rightColor = avgPurchasePrice < livePrice ?ANSI_GREEN : ANSI_RED;
-
-                      body.append(rightColor);
-                      body.append("Asset Name          :  ").append(asset.getAssetFullName()). append("\n");
-                      body.append("Asset Symbol        :  ").append(asset.getAssetSymbol()). append("\n");
-                      body.append("Amount in Portfolio :  ").append(amount). append("\n");
-                      body.append("Avg Purchase Price  :  ").append(avgPurchasePrice). append("\n");
-                      body.append("Asset Live Price:   :  ").append(livePrice). append("\n");
-                      body.append("Current Value:      :  ")
-                              .append(currentValue).append("\n").append("\n");
-                      body.append(rightColor);
-
-
-                  }
+                  assetFullName = asset.getAssetFullName();
               }
+
+              renderer.assetOfType(assetFullName, assetKey, amount, totalPrice / assets.size(),
+                      quote.getLivePrice());
           }
           result = body.toString();
 
@@ -446,35 +864,44 @@ public class User implements PortfolioSystem {
           throws IOException, InterruptedException {
 
     StringBuilder result = new StringBuilder();
+    listPortfolioPurchasesInRange(startTimeStamp, endTimeStamp, result);
+    return result.toString();
+  }
+
+  /**
+   * Writes summary information for all assets within the portfolio purchased between the dates
+   * startTimeStamp and endTimeStamp, oldest first, to the output as it is made. Purchases of the
+   * range are taken from the portfolio in one snapshot, so the report is consistent while other
+   * threads trade.
+   *
+   * @param startTimeStamp a UNIX timestamp representing the start range date
+   * @param endTimeStamp   a UNIX timestamp representing the end range date
+   * @param out            destination of the summary information
+   */
+  @Override
+  public void listPortfolioPurchasesInRange(long startTimeStamp, long endTimeStamp,
+      Appendable out) throws IOException, InterruptedException {
 
     // if start date is in front of the end date
     if(startTimeStamp > endTimeStamp)
-      return result.toString();
-
-    HashMap<String, List<Asset>> sortedAllPortfolio = getAllSortedPortfolio();
-
-    // sort map sortedAllPortfolio by purchase timestamp
-    for (String symbol : sortedAllPortfolio.keySet()) {
-      List<Asset> toSort = sortedAllPortfolio.get(symbol);
+      return;
 
-      // remove assets not in range
-      toSort.removeIf(
-              asset -> asset.getTimeStamp() < startTimeStamp || asset.getTimeStamp() > endTimeStamp);
-
-      // sort based on timestamp (low to high)
-      toSort.sort(Comparator.comparing(Asset::getTimeStamp));
+    // symbols bought in range, so live information of all of them is requested at once
+    List<Asset> purchases = userPortfolio.getPurchasesInRange(startTimeStamp, endTimeStamp);
+    Set<String> symbols = new LinkedHashSet<>();
+    for (Asset asset : purchases) {
+      symbols.add(asset.getAssetSymbol());
     }
-
-    // get live information for each asset symbol
-    List<AssetQuote> quotes = getAssetInformation(userPortfolio.getAllAssetNames());
-
-    // loop through quotes and print detailed information
-    for (AssetQuote quote : quotes) {
-      List<Asset> assetList = sortedAllPortfolio.get(quote.getAssetSymbol());
-      result.append(assetPurchaseRangeInfo(assetList, quote.getLivePrice()));
+    Map<String, AssetQuote> quotes = getLiveQuotes(symbols, Priority.REPORT);
+
+    // loop through purchases again and print detailed information
+    ReportRenderer renderer = new ReportRenderer(out);
+    for (Asset asset : purchases) {
+      AssetQuote quote = quotes.get(QuoteCache.normalise(asset.getAssetSymbol()));
+      if (quote != null) {
+        renderer.purchase(asset.getAssetFullName(), asset.getPriceBought(), quote.getLivePrice());
+      }
     }
-
-    return result.toString();
   }
 
   /**
@@ -496,58 +923,43 @@ public class User implements PortfolioSystem {
   public String listPortfolioSalesInRange(long startTimeStamp, long endTimeStamp) {
 
     StringBuilder result = new StringBuilder();
-
-    // if start date is in front of the end date
-    if(startTimeStamp > endTimeStamp)
-      return result.toString();
-
-    HashMap<String, List<SoldAsset>> sortedSales = new HashMap<>();
-
-    // populate sortedSales with related sales for each asset symbol
-    for (SoldAsset soldAsset : userPortfolio.getSoldAssets()) {
-      String symbol = soldAsset.getAssetSymbol();
-      if(!sortedSales.containsKey(symbol)) {
-        List<SoldAsset> list = new ArrayList<>();
-        list.add(soldAsset);
-        sortedSales.put(symbol, list);
-      } else {
-        sortedSales.get(symbol).add(soldAsset);
-      }
+    try {
+      listPortfolioSalesInRange(startTimeStamp, endTimeStamp, result);
+    } catch (IOException e) {
+      // StringBuilder is never failing to append
+      throw new UncheckedIOException(e);
     }
+    return result.toString();
+  }
 
-    // loop through map and build result string
-    for (String symbol : sortedSales.keySet()) {
-
-      // sort based on timestamp (low to high)
-      List<SoldAsset> list = sortedSales.get(symbol);
-      list.sort(Comparator.comparing(SoldAsset::getTimeStamp));
-
-      // loop through sorted list and add to result string in range sold assets
-      for (SoldAsset soldAsset : list) {
-
-        double avgPurchasePrice = soldAsset.getAvgPurchasePrice();
-        double soldPrice = soldAsset.getPriceSold();
-        double differenceUSD = soldPrice - avgPurchasePrice;
-        differenceUSD = Double.parseDouble(
-                new DecimalFormat(".##").format(differenceUSD));
-        int differencePercentage = (int) (100 * (soldPrice - avgPurchasePrice) / avgPurchasePrice);
-
-        if(soldAsset.getTimeStamp() >= startTimeStamp && soldAsset.getTimeStamp() <= endTimeStamp) {
-          result.append("\nAsset Name         : ").append(soldAsset.getAssetFullName());
-          result.append("\nAvg Purchase Price : ").append(soldAsset.getAvgPurchasePrice());
-          result.append("\nSale price         : ").append(soldAsset.getPriceSold());
-          result.append("\nDifference USD     : ").append(differenceUSD);
-          result.append("\nDifference %       : ").append(differencePercentage);
-          result.append("\n");
-        }
+  /**
+   * Writes a summary of all of the assets sales between the dates startTimeStamp and
+   * endTimeStamp, oldest first, to the output as it is made. The first sale is found by a binary
+   * search of the sale history and the sales are read in place, so nothing is copied. The
+   * portfolio is locked while the sales are written, so the report is consistent but trades wait
+   * for a slow output.
+   *
+   * @param startTimeStamp a UNIX timestamp representing the start range date
+   * @param endTimeStamp   a UNIX timestamp representing the end range date
+   * @param out            destination of the summary information
+   */
+  @Override
+  public void listPortfolioSalesInRange(long startTimeStamp, long endTimeStamp, Appendable out)
+      throws IOException {
+
+    ReportRenderer renderer = new ReportRenderer(out);
+    synchronized (userPortfolio) {
+      SaleHistory.Cursor sales =
+          userPortfolio.getSaleHistory().cursor(startTimeStamp, endTimeStamp);
+      while (sales.next()) {
+        renderer.sale(sales.getAssetFullName(), sales.getAvgPurchasePrice(),
+            sales.getPriceSold());
       }
     }
-
-    return result.toString();
   }
 
   public double getAvailableFunds() {
-      return availableFunds;
+      return userPortfolio.getFunds();
   }
 
 
@@ -556,134 +968,117 @@ public class User implements PortfolioSystem {
   }
 
 
-  // helper private methods
+  public QuoteCache getQuoteCache() {
+      return quoteCache;
+  }
+
+
+  public QuoteProvider getQuoteProvider() {
+      return quoteProvider;
+  }
+
+
+  public HistoryCache getHistoryCache() {
+      return historyCache;
+  }
 
 
   /**
-   * Helper method to check if user portfolio contains symbol or partial asset name (example: Appl).
-   * Will check first 3 letters of name to avoid similar asset names.
+   * Sets on-disk cache historic data is read through, prices it does not hold are fetched with
+   * the quote provider of this user.
    *
-   * @param names list of asset partial names or full symbols
-   * @return list with symbols which user has from names list.
+   * @param historyCache cache of historic data, null to ask the quote provider every time.
    */
-  private List<String> namesToSymbolList(List<String> names) {
+  public void setHistoryCache(HistoryCache historyCache) {
+      this.historyCache = historyCache;
+  }
 
-    List<String> result = new ArrayList<>();
-    // lower cased names list
-    List<String> lowerCasedNames = new ArrayList<>();
 
-    // change to lower case to be sure it matches user input
-    for (String name : names) {
-      lowerCasedNames.add(name.toLowerCase());
-    }
-
-    // check if names contains symbol
-    for (Entry<String, String> entry : userPortfolio.getAssetsInPortfolio().entrySet()) {
-      String symbol = entry.getKey();
-      String toCompare = symbol.toLowerCase();
-      if(lowerCasedNames.contains(toCompare)){
-        result.add(symbol);
-        lowerCasedNames.remove(toCompare);
-      }
-    }
+  // helper private methods
 
-    // if it is name, we need to cut to 3 characters
-    for (int i = 0; i < lowerCasedNames.size(); i++) {
-      String tempName = lowerCasedNames.get(i).substring(0, 3);
-      lowerCasedNames.remove(i);
-      lowerCasedNames.add(i, tempName);
-    }
 
-    // check if name contains partial name
-    for (Entry<String, String> entry : userPortfolio.getSymbolFullName().entrySet()) {
-      String key = entry.getKey();
-      String compareTo = key.substring(0, 3).toLowerCase();
-      String value = entry.getValue();
-      if(lowerCasedNames.contains(compareTo)){
-        result.add(value);
-      }
-    }
-
-    return result;
+  /**
+   * Helper method to build the provider of quotes from the finance api. Requests are kept within
+   * the quota, and retries and hedges are counted against it too.
+   *
+   * @param keyApi the Api Key used to connect to Yahoo Finance API.
+   * @return provider of live quotes and historic prices.
+   */
+  private static QuoteProvider newApiProvider(String keyApi) {
+    return new ResilientQuoteProvider(
+        new RateLimitedQuoteProvider(new YahooQuoteProvider(keyApi)));
   }
 
   /**
-   * Helper method to get sorted stock assets in our portfolio by asset symbol
+   * Helper method to get live quote of one asset, served from the quote cache while it is fresh.
    *
-   * @return sorted portfolio hash map
+   * @param assetSymbol asset symbol
+   * @param priority    what the quote is needed for
+   * @return live quote or null if api does not know the symbol.
    */
-  private HashMap<String, List<Asset>> getSortedStockPortfolio() {
-
-    HashMap<String, List<Asset>> result = new HashMap<>();
-
-    // populate result hash map with stock assets
-    for(Asset asset : userPortfolio.getStock()) {
-      if(!result.containsKey(asset.getAssetSymbol())) {
-        List<Asset> newList = new ArrayList<>();
-        newList.add(asset);
-        result.put(asset.getAssetSymbol(), newList);
-      } else {
-        result.get(asset.getAssetSymbol()).add(asset);
-      }
-    }
-
-    return result;
+  private AssetQuote getLiveQuote(String assetSymbol, Priority priority)
+      throws IOException, InterruptedException {
+    return getLiveQuotes(List.of(assetSymbol), priority).get(QuoteCache.normalise(assetSymbol));
   }
 
   /**
-   * Helper method to get sorted crypto assets in our portfolio by asset symbol
+   * Helper method to get live quotes of many assets. Quotes which are not fresh in the cache are
+   * fetched together in as few requests as possible.
    *
-   * @return sorted portfolio hash map
+   * @param assetSymbols asset symbols
+   * @param priority     what the quotes are needed for, trades go first when requests are limited
+   * @return live quotes keyed by upper cased asset symbol.
    */
-  private HashMap<String, List<Asset>> getSortedCryptoPortfolio() {
-
-    HashMap<String, List<Asset>> result = new HashMap<>();
-
-    // populate result hash map with crypto assets
-    for(Asset asset : userPortfolio.getCrypto()) {
-      if(!result.containsKey(asset.getAssetSymbol())) {
-        List<Asset> newList = new ArrayList<>();
-        newList.add(asset);
-        result.put(asset.getAssetSymbol(), newList);
-      } else {
-        result.get(asset.getAssetSymbol()).add(asset);
-      }
-    }
+  private Map<String, AssetQuote> getLiveQuotes(Collection<String> assetSymbols,
+      Priority priority) throws IOException, InterruptedException {
+    return quoteCache.getQuotes(assetSymbols,
+        symbols -> quoteProvider.getQuotes(symbols, priority));
+  }
 
-    return result;
+  /**
+   * Helper method to get live quotes of many assets without blocking the calling thread.
+   *
+   * @param assetSymbols asset symbols
+   * @param priority     what the quotes are needed for, trades go first when requests are limited
+   * @return future completed with live quotes keyed by upper cased asset symbol.
+   */
+  private CompletableFuture<Map<String, AssetQuote>> getLiveQuotesAsync(
+      Collection<String> assetSymbols, Priority priority) {
+    return quoteCache.getQuotesAsync(assetSymbols,
+        symbols -> quoteProvider.getQuotesAsync(symbols, priority));
   }
 
+
   /**
-   * Helper method to get all sorted crypto and stock portfolio by asset symbol
+   * Helper method to copy assets of the portfolio grouped by asset symbol. Groups come straight
+   * from the portfolio symbol index, so nothing is regrouped.
    *
-   * @return sorted portfolio hash map
+   * @return copy of the portfolio symbol index
    */
   private HashMap<String, List<Asset>> getAllSortedPortfolio() {
 
     HashMap<String, List<Asset>> result = new HashMap<>();
-
-    // merge two hash (stock and crypto) together
-    result = getSortedStockPortfolio();
-    result.putAll(getSortedCryptoPortfolio());
+    for (Entry<String, Collection<Asset>> entry : userPortfolio.getLotsBySymbol().entrySet()) {
+      result.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    }
 
     return result;
   }
 
   /**
-   * Helper method to get detailed information String on all assets of one symbol.
+   * Helper method to write detailed information on all assets of one symbol.
    *
+   * @param renderer destination of the information
    * @param assets grouped list of same symbol assets
    * @param livePrice live price for this asset symbol
-   * @return detailed information about asset.
    */
-  private String assetDetailedInfo(List<Asset> assets, double livePrice) {
+  private void assetDetailedInfo(ReportRenderer renderer, Collection<Asset> assets,
+      double livePrice) throws IOException {
 
     String name = "";
     String symbol = "";
     double avgPurchasePrice = 0;
     double amount = 0;
-    double differenceUSD = 0;
-    int differencePercentage = 0;
 
     for (Asset asset : assets) {
 
@@ -699,47 +1094,7 @@ public class User implements PortfolioSystem {
     }
 
     avgPurchasePrice /= assets.size();
-    differenceUSD = livePrice - avgPurchasePrice;
-    livePrice = Double.parseDouble(
-        new DecimalFormat(".##").format(livePrice));
-    differenceUSD = Double.parseDouble(
-        new DecimalFormat(".##").format(differenceUSD));
-    differencePercentage = (int) (100 * (livePrice - avgPurchasePrice) / avgPurchasePrice);
-
-
-    return "\nAsset Name     : " + name +
-        "\nAsset Symbol   : " + symbol +
-        "\nAsset Amount   : " + amount +
-        "\nAverage Price  : " + avgPurchasePrice + " USD" +
-        "\nLive Price     : " + livePrice + " USD" +
-        "\nDifference USD : " + differenceUSD + " USD" +
-        "\nDifference %   : " + differencePercentage + "%\n";
-
-  }
-
-  private String assetPurchaseRangeInfo(List<Asset> assets, double livePrice) {
-
-    StringBuilder result = new StringBuilder();
-
-    for (Asset asset : assets) {
-
-      double purchasePrice = asset.getPriceBought();
-      double differenceUSD = livePrice - purchasePrice;
-      livePrice = Double.parseDouble(
-              new DecimalFormat(".##").format(livePrice));
-      differenceUSD = Double.parseDouble(
-              new DecimalFormat(".##").format(differenceUSD));
-      int differencePercentage = (int) (100 * (livePrice - purchasePrice) / purchasePrice);
-
-      result.append("\nAsset Name     : ").append(asset.getAssetFullName());
-      result.append("\nPrice Bought   : ").append(asset.getPriceBought());
-      result.append("\nLive Price     : ").append(livePrice);
-      result.append("\nDifference USD : ").append(differenceUSD);
-      result.append("\nDifference %   : ").append(differencePercentage);
-      result.append("\n");
-    }
-
-    return result.toString();
+    renderer.investment(name, symbol, amount, avgPurchasePrice, livePrice);
   }
 
 }
@@ -0,0 +1,70 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * YahooQuoteProvider class fetches live quotes from the yahoo finance quote endpoint and historic
+ * prices from its chart endpoint.
+ */
+public class YahooQuoteProvider implements QuoteProvider, HistoryProvider {
+
+  private final String keyApi;
+  private final HttpTransport transport;
+
+
+  /**
+   * Constructor to instantiate a provider using the default transport at the time of each request.
+   *
+   * @param keyApi the Api Key used to connect to Yahoo Finance API.
+   */
+  public YahooQuoteProvider(String keyApi) {
+    this(keyApi, null);
+  }
+
+
+  /**
+   * Constructor to instantiate a provider using its own transport.
+   *
+   * @param keyApi    the Api Key used to connect to Yahoo Finance API.
+   * @param transport transport used to send requests, null for the default transport.
+   */
+  public YahooQuoteProvider(String keyApi, HttpTransport transport) {
+    this.keyApi = keyApi;
+    this.transport = transport;
+  }
+
+
+  @Override
+  public Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+      throws IOException, InterruptedException {
+    return ConnectionPort.requestQuotes(symbols, keyApi, getTransport());
+  }
+
+
+  @Override
+  public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+    return ConnectionPort.requestQuotesAsync(symbols, keyApi, getTransport())
+        .thenApply(ConnectionPort::toSymbolMap);
+  }
+
+
+  @Override
+  public List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+      throws IOException, InterruptedException {
+    return ConnectionPort.requestHistory(symbol, interval, start, end, keyApi, getTransport());
+  }
+
+
+  /**
+   * Returns transport used for the next request.
+   *
+   * @return own transport or the default one.
+   */
+  public HttpTransport getTransport() {
+    return transport != null ? transport : HttpTransport.getDefault();
+  }
+}
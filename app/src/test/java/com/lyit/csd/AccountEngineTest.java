@@ -0,0 +1,88 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.testng.annotations.Test;
+
+public class AccountEngineTest {
+
+  @Test
+  public void testTickFetchesEverySymbolOnce() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(11);
+    provider.addAsset("TSLA", "Tesla, Inc.", "EQUITY", 900);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    provider.addAsset("NVDA", "NVIDIA Corporation", "EQUITY", 250);
+    provider.addAsset("BTC-USD", "Bitcoin USD", "CRYPTOCURRENCY", 40000);
+    provider.addAsset("MSFT", "Microsoft Corporation", "EQUITY", 300);
+
+    try (AccountEngine engine = new AccountEngine(provider, new QuoteCache(), 4)) {
+      for (int i = 0; i < 200; i++) {
+        engine.openAccount("account-" + i);
+      }
+      assertEquals(engine.getAccountCount(), 200);
+
+      // every tenth account buys a symbol no default portfolio holds
+      List<CompletableFuture<Boolean>> purchases = new ArrayList<>();
+      for (int i = 0; i < 200; i += 10) {
+        purchases.add(engine.submit("account-" + i, user -> user.purchaseAsset("MSFT", 1)));
+      }
+      for (CompletableFuture<Boolean> purchase : purchases) {
+        assertTrue(purchase.join());
+      }
+
+      long requests = provider.getRequestCount();
+      assertEquals(engine.tick(), 5);
+      assertEquals(provider.getRequestCount(), requests + 1);
+
+      // accounts are valued from the shared cache without asking the provider again
+      double first = engine.submit("account-1", User::getPortfolioValue).join();
+      double second = engine.submit("account-2", User::getPortfolioValue).join();
+      assertEquals(first, second);
+      assertEquals(provider.getRequestCount(), requests + 1);
+      assertEquals(engine.getAccount("account-0").getUserPortfolio().getValuation()
+          .getLastPrice("MSFT"), engine.getQuoteCache().get("MSFT").getLivePrice());
+      assertEquals(engine.getTickCount(), 1);
+    }
+  }
+
+  @Test
+  public void testAccountsHaveHistoricalData() {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+
+    try (AccountEngine engine = new AccountEngine(provider)) {
+      engine.openAccount("a");
+      List<AssetQuote> points = engine.submit("a",
+          user -> user.getHistoricalData(List.of("AAPL"), "1d", "5d")).join();
+      assertEquals(points.size(), 5);
+      for (AssetQuote point : points) {
+        assertEquals(point.getAssetSymbol(), "AAPL");
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownAccounts() {
+
+    try (AccountEngine engine = new AccountEngine(new SimulatedQuoteProvider(1))) {
+      engine.openAccount("a");
+      expectThrows(IllegalArgumentException.class, () -> engine.openAccount("a"));
+
+      CompletionException failure = expectThrows(CompletionException.class,
+          () -> engine.submit("b", User::getAvailableFunds).join());
+      assertTrue(failure.getCause() instanceof IllegalArgumentException);
+
+      assertTrue(engine.closeAccount("a"));
+      assertNull(engine.getAccount("a"));
+    }
+  }
+}
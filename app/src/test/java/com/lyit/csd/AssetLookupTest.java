@@ -0,0 +1,41 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class AssetLookupTest {
+
+  @Test
+  public void testNamesAreLookedUpInOrderWithOneRequest() {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    provider.addAsset("TSLA", "Tesla, Inc.", "EQUITY", 800);
+    provider.addAsset("BTC-USD", "Bitcoin USD", "CRYPTOCURRENCY", 40000);
+    User user = new User(provider);
+
+    List<AssetLookup> lookups = user.lookupAssets(
+        List.of("Tesla", "Microsoft", "Bitcoin-USD", "aapl", "TSLA"));
+
+    assertEquals(provider.getRequestCount(), 1);
+    assertEquals(lookups.size(), 5);
+    assertEquals(lookups.get(0).getSymbols(), List.of("TSLA"));
+    assertFalse(lookups.get(1).isFound());
+    assertTrue(lookups.get(1).getQuotes().isEmpty());
+    assertEquals(lookups.get(2).getQuotes().get(0).getAssetSymbol(), "BTC-USD");
+    assertEquals(lookups.get(3).getAssetName(), "aapl");
+    assertTrue(lookups.get(4).isFound());
+
+    // an asset asked for by two names is listed once
+    List<AssetQuote> quotes = user.getAssetInformation(List.of("Tesla", "Appl", "TSLA"));
+    assertEquals(quotes.size(), 2);
+    assertEquals(quotes.get(0).getAssetSymbol(), "TSLA");
+    assertEquals(quotes.get(1).getAssetSymbol(), "AAPL");
+    // quotes of the first lookup were still fresh in the cache
+    assertEquals(provider.getRequestCount(), 1);
+  }
+}
@@ -0,0 +1,104 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class BatchOrderTest {
+
+  @Test
+  public void testBatchIsPricedWithOneRequest() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    provider.addAsset("TSLA", "Tesla, Inc.", "EQUITY", 900);
+    provider.addAsset("MSFT", "Microsoft Corporation", "EQUITY", 300);
+    User user = new User(provider);
+
+    // purchase is paid with money of the sales of the same batch
+    List<OrderResult> results = user.executeOrders(List.of(
+        Order.buy("MSFT", 40),
+        Order.sell("TSLA", 10),
+        Order.sell("aapl", 5)), true);
+
+    assertEquals(provider.getRequestCount(), 1);
+    assertEquals(results.size(), 3);
+    for (OrderResult result : results) {
+      assertTrue(result.isExecuted(), result.toString());
+    }
+    assertEquals(results.get(0).getOrder().getAssetSymbol(), "MSFT");
+
+    Portfolio portfolio = user.getUserPortfolio();
+    assertEquals(portfolio.getAmount("MSFT"), 40.0);
+    assertEquals(portfolio.getAmount("TSLA"), 0.0);
+    assertEquals(portfolio.getAmount("AAPL"), 15.0);
+    assertEquals(portfolio.getSoldAssets().size(), 2);
+
+    double proceeds = results.get(1).getPrice() * 10 + results.get(2).getPrice() * 5;
+    assertEquals(user.getAvailableFunds(), 10_000 + proceeds - results.get(0).getPrice() * 40,
+        1e-6);
+  }
+
+  @Test
+  public void testAtomicBatchIsRejectedCompletely() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    provider.addAsset("MSFT", "Microsoft Corporation", "EQUITY", 300);
+    User user = new User(provider);
+    Portfolio portfolio = user.getUserPortfolio();
+
+    // more AAPL is sold than held
+    List<OrderResult> results = user.executeOrders(List.of(
+        Order.sell("AAPL", 15),
+        Order.sell("AAPL", 15),
+        Order.buy("MSFT", 1)), true);
+
+    for (OrderResult result : results) {
+      assertFalse(result.isExecuted());
+    }
+    assertEquals(results.get(2).getFailure(), "batch rejected");
+    assertEquals(portfolio.getAmount("AAPL"), 20.0);
+    assertEquals(portfolio.getAmount("MSFT"), 0.0);
+    assertEquals(portfolio.getSoldAssets().size(), 0);
+    assertEquals(user.getAvailableFunds(), 10_000.0);
+
+    // purchases cost more than funds
+    results = user.executeOrders(List.of(Order.buy("MSFT", 20), Order.buy("MSFT", 20)), true);
+    assertFalse(results.get(0).isExecuted());
+    assertFalse(results.get(1).isExecuted());
+    assertEquals(portfolio.getAmount("MSFT"), 0.0);
+    assertEquals(user.getAvailableFunds(), 10_000.0);
+  }
+
+  @Test
+  public void testOrdersOfBatchFailOneByOne() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    provider.addAsset("MSFT", "Microsoft Corporation", "EQUITY", 300);
+    User user = new User(provider);
+    Portfolio portfolio = user.getUserPortfolio();
+
+    List<OrderResult> results = user.executeOrders(List.of(
+        Order.buy("MSFT", 20),
+        Order.buy("MSFT", 20),
+        Order.sell("AAPL", 25),
+        Order.sell("NOPE", 1),
+        Order.buy("MSFT", -1)), false);
+
+    assertTrue(results.get(0).isExecuted());
+    assertFalse(results.get(1).isExecuted());
+    assertFalse(results.get(2).isExecuted());
+    assertFalse(results.get(3).isExecuted());
+    assertEquals(results.get(3).getFailure(), "not enough NOPE held");
+    assertFalse(results.get(4).isExecuted());
+
+    assertEquals(portfolio.getAmount("MSFT"), 20.0);
+    assertEquals(portfolio.getAmount("AAPL"), 20.0);
+    assertEquals(user.getAvailableFunds(), 10_000 - results.get(0).getPrice() * 20, 1e-6);
+  }
+}
@@ -0,0 +1,158 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+public class CoalescingQuoteProviderTest {
+
+  @Test
+  public void testConcurrentLookupsShareOneFetch() throws Exception {
+
+    BlockingProvider blocking = new BlockingProvider(new SimulatedQuoteProvider(3));
+    CoalescingQuoteProvider provider = new CoalescingQuoteProvider(blocking);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Map<String, AssetQuote>>> lookups = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        lookups.add(executor.submit(() -> provider.getQuotes(List.of("AAPL", "tsla"))));
+      }
+
+      // hold the first fetch until every other lookup joined it
+      awaitDeduplicated(provider, 14);
+      blocking.release.countDown();
+
+      Map<String, AssetQuote> first = lookups.get(0).get();
+      assertEquals(new ArrayList<>(first.keySet()), List.of("AAPL", "TSLA"));
+      for (Future<Map<String, AssetQuote>> lookup : lookups) {
+        assertSame(lookup.get().get("AAPL"), first.get("AAPL"));
+      }
+      assertEquals(blocking.requests.size(), 1);
+      assertEquals(provider.getRequestCount(), 1);
+      assertEquals(provider.getDeduplicatedCallCount(), 7);
+      assertEquals(provider.getInFlightCount(), 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testOverlappingLookupFetchesOnlyNewSymbols() throws Exception {
+
+    BlockingProvider blocking = new BlockingProvider(new SimulatedQuoteProvider(3));
+    CoalescingQuoteProvider provider = new CoalescingQuoteProvider(blocking);
+
+    CompletableFuture<Map<String, AssetQuote>> first =
+        provider.getQuotesAsync(List.of("AAPL", "MSFT"));
+    CompletableFuture<Map<String, AssetQuote>> second =
+        provider.getQuotesAsync(List.of("MSFT", "NVDA"));
+    blocking.release.countDown();
+
+    assertEquals(second.join().size(), 2);
+    assertSame(second.join().get("MSFT"), first.join().get("MSFT"));
+    assertEquals(blocking.requests, List.of(List.of("AAPL", "MSFT"), List.of("NVDA")));
+    assertEquals(provider.getDeduplicatedSymbolCount(), 1);
+    assertEquals(provider.getDeduplicatedCallCount(), 0);
+  }
+
+  @Test
+  public void testFailureReachesEveryWaiterAndIsNotKept() throws Exception {
+
+    SimulatedQuoteProvider simulator = new SimulatedQuoteProvider(3);
+    simulator.setErrorRate(1);
+    BlockingProvider blocking = new BlockingProvider(simulator);
+    CoalescingQuoteProvider provider = new CoalescingQuoteProvider(blocking);
+
+    CompletableFuture<Map<String, AssetQuote>> first = provider.getQuotesAsync(List.of("AAPL"));
+    CompletableFuture<Map<String, AssetQuote>> second = provider.getQuotesAsync(List.of("AAPL"));
+    blocking.release.countDown();
+
+    assertTrue(expectThrows(Exception.class, first::join).getCause() instanceof IOException);
+    assertTrue(expectThrows(Exception.class, second::join).getCause() instanceof IOException);
+
+    simulator.setErrorRate(0);
+    assertEquals(provider.getQuotes(List.of("AAPL")).size(), 1);
+    assertEquals(blocking.requests.size(), 2);
+  }
+
+  @Test
+  public void testTradeDoesNotWaitForReportFetch() {
+
+    BlockingProvider blocking = new BlockingProvider(new SimulatedQuoteProvider(3));
+    CoalescingQuoteProvider provider = new CoalescingQuoteProvider(blocking);
+
+    CompletableFuture<Map<String, AssetQuote>> report = provider.getQuotesAsync(List.of("AAPL"));
+    CompletableFuture<Map<String, AssetQuote>> trade =
+        provider.getQuotesAsync(List.of("AAPL"), QuoteProvider.Priority.TRADE);
+    // later report joins the report fetch, the trade fetch is not shared
+    CompletableFuture<Map<String, AssetQuote>> later = provider.getQuotesAsync(List.of("AAPL"));
+    blocking.release.countDown();
+
+    assertEquals(trade.join().size(), 1);
+    assertSame(later.join().get("AAPL"), report.join().get("AAPL"));
+    assertEquals(blocking.requests, List.of(List.of("AAPL"), List.of("AAPL")));
+    assertEquals(provider.getDeduplicatedCallCount(), 1);
+  }
+
+  /**
+   * Waits until the provider counted a number of deduplicated symbols.
+   */
+  private static void awaitDeduplicated(CoalescingQuoteProvider provider, long symbols)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (provider.getDeduplicatedSymbolCount() < symbols && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(provider.getDeduplicatedSymbolCount(), symbols);
+  }
+
+  /**
+   * Provider which holds every request until it is released and keeps the symbols asked for.
+   */
+  private static final class BlockingProvider implements QuoteProvider {
+
+    private final QuoteProvider provider;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<List<String>> requests = new ArrayList<>();
+
+    private BlockingProvider(QuoteProvider provider) {
+      this.provider = provider;
+    }
+
+    @Override
+    public synchronized Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+        throws IOException, InterruptedException {
+      requests.add(new ArrayList<>(symbols));
+      release.await();
+      return provider.getQuotes(symbols);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+      synchronized (this) {
+        requests.add(new ArrayList<>(symbols));
+      }
+      return CompletableFuture.runAsync(() -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }).thenCompose(done -> provider.getQuotesAsync(symbols));
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ConnectionPortTest {
+
+  HttpServer server;
+  HttpTransport transport;
+  AtomicInteger requestCount = new AtomicInteger();
+
+  @BeforeClass
+  public void startServer() throws IOException {
+    // local server answering like yahoo finance quote endpoint
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/v6/finance/quote", exchange -> {
+      requestCount.incrementAndGet();
+      String query = exchange.getRequestURI().getQuery();
+      String symbols = query.substring(query.indexOf("symbols=") + "symbols=".length());
+      StringBuilder body = new StringBuilder("{\"quoteResponse\":{\"result\":[");
+      String[] split = symbols.split(",");
+      for (int i = 0; i < split.length; i++) {
+        if (i > 0) {
+          body.append(',');
+        }
+        body.append("{\"symbol\":\"").append(split[i])
+            .append("\",\"shortName\":\"").append(split[i]).append(" Inc.\"")
+            .append(",\"quoteType\":\"EQUITY\",\"regularMarketTime\":1645000000")
+            .append(",\"regularMarketPrice\":").append(100 + i)
+            .append(",\"notMapped\":true}");
+      }
+      body.append("],\"error\":null}}");
+      byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    });
+    // chart endpoint which is always down
+    server.createContext("/v8/finance/chart", exchange -> {
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+    });
+    server.start();
+
+    URI baseUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    transport = new HttpTransport(baseUri, Duration.ofSeconds(2), Duration.ofSeconds(2), 4);
+  }
+
+  @AfterClass
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testRequestThroughInjectedTransport() throws IOException, InterruptedException {
+
+    ConnectionPort cp = new ConnectionPort("v6/finance/quote?region=US&lang=en&symbols=AAPL",
+        "key", transport);
+
+    List<AssetQuote> quotes = cp.getAssetQuote();
+    assertEquals(quotes.size(), 1);
+    assertEquals(quotes.get(0).getAssetSymbol(), "AAPL");
+    assertEquals(quotes.get(0).getAssetType(), "EQUITY");
+    assertEquals(quotes.get(0).getLivePrice(), 100.0);
+
+    // every permit is given back after the request
+    assertEquals(transport.getAvailablePermits(), transport.getMaxConcurrentRequests());
+  }
+
+  @Test
+  public void testRequestQuotesInChunks() throws IOException, InterruptedException {
+
+    List<String> symbols = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      symbols.add("sym" + i);
+    }
+    // duplicates are asked only once
+    symbols.add("SYM0");
+
+    int before = requestCount.get();
+    Map<String, AssetQuote> quotes = ConnectionPort.requestQuotes(symbols, "key", transport);
+
+    assertEquals(requestCount.get() - before, 3);
+    assertEquals(quotes.size(), 25);
+    assertEquals(quotes.keySet().iterator().next(), "SYM0");
+    assertEquals(quotes.get("SYM24").getAssetFullName(), "SYM24 Inc.");
+  }
+
+  @Test
+  public void testRequestQuotesAsync() {
+
+    List<AssetQuote> quotes = ConnectionPort
+        .requestQuotesAsync(List.of("AAPL", "TSLA"), "key", transport)
+        .join();
+
+    assertEquals(quotes.size(), 2);
+    assertEquals(quotes.get(1).getAssetSymbol(), "TSLA");
+  }
+
+  @Test
+  public void testPermitIsReleasedWhenRequestCanNotStart() {
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    HttpClient client = HttpClient.newBuilder().executor(executor).build();
+    executor.shutdownNow();
+    HttpTransport stopped = new HttpTransport(client, transport.getBaseUri(),
+        Duration.ofSeconds(2), 1);
+
+    // with one permit a leaked permit would leave the second request waiting forever
+    for (int i = 0; i < 2; i++) {
+      CompletableFuture<HttpResponse<String>> response = stopped.sendAsync(
+          stopped.newGetRequest("v6/finance/quote?symbols=AAPL", "key"),
+          HttpResponse.BodyHandlers.ofString());
+      expectThrows(CompletionException.class, response::join);
+    }
+    assertEquals(stopped.getAvailablePermits(), 1);
+  }
+
+  @Test
+  public void testErrorStatusIsNotParsed() {
+
+    ApiResponseException e = expectThrows(ApiResponseException.class,
+        () -> ConnectionPort.requestHistory("AAPL", "1d", 0, 86400, "key", transport));
+    assertEquals(e.getStatusCode(), 503);
+    assertTrue(e.isRetryable());
+  }
+
+  @Test
+  public void testParseQuotesSkipsQuoteWhichCanNotBeMapped() throws IOException {
+
+    String body = "{\"quoteResponse\":{\"error\":null,\"result\":["
+        + "{\"symbol\":\"AAPL\",\"regularMarketPrice\":170.5,\"extra\":{\"a\":[1,2]}},"
+        + "{\"symbol\":\"BAD\",\"regularMarketPrice\":\"not a price\",\"x\":{}},"
+        + "{\"symbol\":\"BTC-USD\",\"quoteType\":\"CRYPTOCURRENCY\"}]}}";
+
+    long skipped = ConnectionPort.getSkippedQuoteCount();
+    List<AssetQuote> quotes = ConnectionPort.parseQuotes(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(quotes.size(), 2);
+    assertEquals(ConnectionPort.getSkippedQuoteCount(), skipped + 1);
+    assertEquals(quotes.get(0).getLivePrice(), 170.5);
+    assertEquals(quotes.get(1).getAssetType(), "CRYPTOCURRENCY");
+  }
+
+  @Test
+  public void testParseChartSkipsPointsWithoutPrice() throws IOException {
+
+    String body = "{\"chart\":{\"result\":[{\"meta\":{\"currency\":\"USD\","
+        + "\"symbol\":\"AAPL\",\"instrumentType\":\"EQUITY\","
+        + "\"currentTradingPeriod\":{\"pre\":{\"start\":1}}},"
+        + "\"timestamp\":[1645000000,1645000060,1645000120],"
+        + "\"indicators\":{\"quote\":[{\"open\":[1,2,3],\"close\":[170.5,null,171.25]}],"
+        + "\"adjclose\":[{\"adjclose\":[1,2,3]}]}}],\"error\":null}}";
+
+    List<AssetQuote> points = ConnectionPort.parseChart(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(points.size(), 2);
+    assertEquals(points.get(0).getAssetSymbol(), "AAPL");
+    assertEquals(points.get(0).getAssetType(), "EQUITY");
+    assertEquals(points.get(1).getTimeStamp(), 1645000120);
+    assertEquals(points.get(1).getLivePrice(), 171.25);
+    assertEquals(ConnectionPort.chartRequestString("btc-usd", "1d", 1, 2),
+        "v8/finance/chart/BTC-USD?interval=1d&period1=1&period2=2");
+  }
+}
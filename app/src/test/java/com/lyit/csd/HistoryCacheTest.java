@@ -0,0 +1,155 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class HistoryCacheTest {
+
+  private static final long NOW = 1_650_000_000;
+
+  TempDirectories directories = new TempDirectories();
+
+  @AfterMethod
+  public void deleteDirectories() throws IOException {
+    directories.deleteAll();
+  }
+
+  @Test
+  public void testOnlyMissingRangesAreFetched() throws Exception {
+
+    SimulatedQuoteProvider simulator = new SimulatedQuoteProvider(7);
+    simulator.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    RecordingProvider provider = new RecordingProvider(simulator);
+    Path directory = directories.create("history");
+    HistoryCache cache = new HistoryCache(directory, provider, () -> NOW, 4);
+
+    // two thousand minutes spread over three chunks
+    long start = NOW - 3000 * 60;
+    long end = NOW - 1000 * 60;
+    List<AssetQuote> points = cache.getHistory("aapl", "1m", start, end);
+    assertEquals(points.size(), 2000);
+    assertEquals(provider.ranges, List.of(List.of(Math.floorDiv(start, 61440) * 61440, end)));
+    assertSamePrices(points, simulator.getHistory("AAPL", "1m", start, end));
+    assertEquals(points.get(0).getAssetFullName(), "Apple Inc.");
+
+    // covered range and a part of it cost nothing
+    cache.getHistory("AAPL", "1m", start, end);
+    cache.getHistory("AAPL", "1m", start + 600, end - 600);
+    assertEquals(cache.getFetchCount(), 1);
+
+    // longer range fetches the new part only
+    List<AssetQuote> longer = cache.getHistory("AAPL", "1m", start, end + 500 * 60);
+    assertEquals(longer.size(), 2500);
+    assertEquals(provider.ranges.get(1), List.of(end, end + 500 * 60));
+
+    // chunks are read again from disk
+    HistoryCache reopened = new HistoryCache(directory, provider, () -> NOW, 4);
+    assertSamePrices(reopened.getHistory("AAPL", "1m", start, end), points);
+    assertEquals(reopened.getFetchCount(), 0);
+  }
+
+  @Test
+  public void testDirectoryIsSharedByOneCache() throws Exception {
+
+    SimulatedQuoteProvider simulator = new SimulatedQuoteProvider(7);
+    Path directory = directories.create("history").resolve("shared");
+    HistoryCache cache = HistoryCache.shared(directory);
+    assertSame(HistoryCache.shared(directory.resolve("x").resolve("..")), cache);
+    assertNotSame(HistoryCache.shared(directories.create("history")), cache);
+    assertFalse(Files.exists(directory));
+    expectThrows(IllegalStateException.class,
+        () -> cache.getHistory("AAPL", "1m", NOW - 600, NOW));
+
+    // every request fetches with its own provider, cached prices serve both
+    RecordingProvider first = new RecordingProvider(simulator);
+    RecordingProvider second = new RecordingProvider(simulator);
+    long start = NOW - 1000 * 60;
+    cache.getHistory("AAPL", "1m", start, NOW - 500 * 60, first);
+    assertEquals(cache.getHistory("AAPL", "1m", start, NOW, second).size(), 1000);
+    assertEquals(first.ranges.size(), 1);
+    assertEquals(second.ranges, List.of(List.of(NOW - 500 * 60, NOW)));
+    assertTrue(Files.isDirectory(directory));
+  }
+
+  @Test
+  public void testLastIntervalIsNotCached() throws Exception {
+
+    RecordingProvider provider = new RecordingProvider(new SimulatedQuoteProvider(7));
+    HistoryCache cache = new HistoryCache(directories.create("history"), provider,
+        () -> NOW, HistoryCache.DEFAULT_MAX_LOADED_CHUNKS);
+
+    List<AssetQuote> points = cache.getHistory("MSFT", "5m", "1d");
+    assertEquals(points.size(), 288);
+    assertEquals(points.get(points.size() - 1).getTimeStamp(), NOW - 300);
+
+    // only the point which may still change is asked for again
+    assertEquals(cache.getHistory("MSFT", "5m", "1d").size(), 288);
+    assertEquals(provider.ranges.size(), 2);
+    assertEquals(provider.ranges.get(1), List.of(NOW - 300, NOW));
+  }
+
+  @Test
+  public void testDamagedChunkIsFetchedAgain() throws Exception {
+
+    RecordingProvider provider = new RecordingProvider(new SimulatedQuoteProvider(7));
+    Path directory = directories.create("history");
+    long start = NOW - 100 * 86_400;
+    long end = NOW - 10 * 86_400;
+    List<AssetQuote> points = new HistoryCache(directory, provider)
+        .getHistory("BTC-USD", "1d", start, end);
+
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+        Files.write(file, new byte[] {0x78, (byte) 0x9c, 1, 2, 3});
+      }
+    }
+
+    HistoryCache cache = new HistoryCache(directory, provider);
+    assertSamePrices(cache.getHistory("BTC-USD", "1d", start, end), points);
+    assertEquals(cache.getFetchCount(), 1);
+  }
+
+  /**
+   * Checks time and price of every point, prices are cached as floats.
+   */
+  private static void assertSamePrices(List<AssetQuote> actual, List<AssetQuote> expected) {
+    assertEquals(actual.size(), expected.size());
+    for (int i = 0; i < actual.size(); i++) {
+      assertEquals(actual.get(i).getTimeStamp(), expected.get(i).getTimeStamp());
+      assertEquals(actual.get(i).getLivePrice(), expected.get(i).getLivePrice(), 1e-3);
+    }
+  }
+
+  /**
+   * Provider which keeps every range it was asked for.
+   */
+  private static final class RecordingProvider implements HistoryProvider {
+
+    private final HistoryProvider provider;
+    private final List<List<Long>> ranges = new ArrayList<>();
+
+    private RecordingProvider(HistoryProvider provider) {
+      this.provider = provider;
+    }
+
+    @Override
+    public List<AssetQuote> getHistory(String symbol, String interval, long start, long end)
+        throws IOException, InterruptedException {
+      ranges.add(List.of(start, end));
+      return provider.getHistory(symbol, interval, start, end);
+    }
+  }
+}
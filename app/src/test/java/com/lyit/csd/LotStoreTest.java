@@ -0,0 +1,77 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.PrimitiveIterator;
+import org.testng.annotations.Test;
+
+public class LotStoreTest {
+
+  @Test
+  public void testSlotsAreReusedWithNewGeneration() {
+
+    LotStore store = new LotStore();
+    int apple = store.internSymbol("AAPL", "Apple Inc.", "EQUITY");
+    int first = store.add(LotStore.STOCK, apple, 100, 150, 1);
+    int second = store.add(LotStore.STOCK, apple, 200, 160, 2);
+    int generation = store.getGeneration(first);
+
+    store.remove(first);
+    assertFalse(store.isLive(first, generation));
+    assertEquals(store.firstOfSymbol(apple), second);
+    assertEquals(store.countOfSymbol(apple), 1);
+
+    int third = store.add(LotStore.STOCK, apple, 50, 140, 3);
+    assertEquals(third, first);
+    assertFalse(store.isLive(third, generation));
+    assertTrue(store.isLive(third, store.getGeneration(third)));
+
+    // list keeps purchase order, time index keeps time order
+    assertEquals(store.firstOfList(LotStore.STOCK), second);
+    assertEquals(store.nextOfList(second), third);
+    assertEquals(store.slotsInRange(0, 1000), new int[] {third, second});
+  }
+
+  @Test
+  public void testTimeIndexSkipsRemovedLots() {
+
+    LotStore store = new LotStore();
+    int bitcoin = store.internSymbol("BTC-USD", "Bitcoin USD", "CRYPTOCURRENCY");
+    int[] slots = new int[100];
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = store.add(LotStore.CRYPTO, bitcoin, 1000 - i, 40000, 0.1);
+    }
+    for (int i = 0; i < slots.length; i += 2) {
+      store.remove(slots[i]);
+    }
+
+    int[] inRange = store.slotsInRange(901, 950);
+    assertEquals(inRange.length, 25);
+    for (int i = 0; i < inRange.length; i++) {
+      assertEquals(store.getTimeStamp(inRange[i]), 901 + 2 * i);
+    }
+    assertEquals(store.sizeOfList(LotStore.CRYPTO), 50);
+    assertEquals(store.slotsInRange(2000, 1000).length, 0);
+  }
+
+  @Test
+  public void testRangeMayStartAtSmallestTimeStamp() {
+
+    LotStore store = new LotStore();
+    int apple = store.internSymbol("AAPL", "Apple Inc.", "EQUITY");
+    int first = store.add(LotStore.STOCK, apple, Long.MIN_VALUE, 150, 1);
+    int second = store.add(LotStore.STOCK, apple, 100, 160, 2);
+    int third = store.add(LotStore.STOCK, apple, 200, 170, 3);
+
+    assertEquals(store.slotsInRange(Long.MIN_VALUE, Long.MAX_VALUE),
+        new int[] {first, second, third});
+    assertEquals(store.slotsInRange(Long.MIN_VALUE, 150), new int[] {first, second});
+
+    PrimitiveIterator.OfInt slots = store.iterateSlotsInRange(Long.MIN_VALUE, 150);
+    assertEquals(slots.nextInt(), first);
+    assertEquals(slots.nextInt(), second);
+    assertFalse(slots.hasNext());
+  }
+}
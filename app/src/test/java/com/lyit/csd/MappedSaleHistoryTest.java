@@ -0,0 +1,137 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ConcurrentModificationException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class MappedSaleHistoryTest {
+
+  TempDirectories directories = new TempDirectories();
+
+  @AfterMethod
+  public void deleteDirectories() throws IOException {
+    directories.deleteAll();
+  }
+
+  @Test
+  public void testSalesAreKeptInTimeOrderAcrossReopen() throws IOException {
+
+    Path directory = directories.create("sales");
+    try (MappedSaleHistory history = new MappedSaleHistory(directory)) {
+      // more sales than the first mapping holds
+      for (int i = 0; i < 3000; i++) {
+        history.add(new SoldAsset("TSLA", "Tesla, Inc.", "EQUITY", 1645000000 + 2 * i, 775.22,
+            900 + i, 1));
+      }
+      history.add(new SoldAsset("NVDA", "NVIDIA Corporation", "EQUITY", 1645000001, 152.77,
+          250, 2));
+    }
+
+    // one dictionary entry for each symbol
+    long dictionarySize = Files.size(directory.resolve(MappedSaleHistory.SYMBOLS_FILE));
+    try (MappedSaleHistory history = new MappedSaleHistory(directory)) {
+      assertEquals(history.size(), 3001);
+      assertEquals(history.get(1).getAssetSymbol(), "NVDA");
+      assertEquals(history.get(2).getPriceSold(), 901.0);
+
+      SaleHistory.Cursor cursor = history.cursor(1645000001, 1645000004);
+      assertTrue(cursor.next());
+      assertEquals(cursor.getAssetFullName(), "NVIDIA Corporation");
+      assertEquals(cursor.getAmount(), 2.0);
+      assertTrue(cursor.next());
+      assertEquals(cursor.getTimeStamp(), 1645000002);
+      assertTrue(cursor.next());
+      assertEquals(cursor.getAvgPurchasePrice(), 775.22);
+      assertEquals(cursor.getPriceSold(), 902.0);
+      assertFalse(cursor.next());
+      assertFalse(history.cursor(1645000004, 1645000001).next());
+
+      history.add(new SoldAsset("NVDA", "NVIDIA Corporation", "EQUITY", 1646000000, 152.77,
+          260, 1));
+    }
+    assertEquals(Files.size(directory.resolve(MappedSaleHistory.SYMBOLS_FILE)), dictionarySize);
+  }
+
+  @Test
+  public void testCursorFailsWhenEarlierSaleIsAdded() throws Exception {
+
+    try (MappedSaleHistory history = new MappedSaleHistory(directories.create("sales"))) {
+      for (int i = 0; i < 4; i++) {
+        history.add(new SoldAsset("AAPL", "Apple Inc.", "EQUITY", 1645000000 + 100 * i, 139.96,
+            150 + i, 1));
+      }
+
+      // a later sale, added from another thread, leaves the records under the cursor in place
+      SaleHistory.Cursor cursor = history.cursor(1645000000, 1645000300);
+      assertTrue(cursor.next());
+      Thread adder = new Thread(() -> history.add(
+          new SoldAsset("TSLA", "Tesla, Inc.", "EQUITY", 1646000000, 775.22, 800, 1)));
+      adder.start();
+      adder.join();
+      assertTrue(cursor.next());
+      assertEquals(cursor.getPriceSold(), 151.0);
+
+      // a back dated sale moves them, the cursor would return the second sale again
+      history.add(new SoldAsset("NVDA", "NVIDIA Corporation", "EQUITY", 1645000050, 152.77,
+          250, 2));
+      expectThrows(ConcurrentModificationException.class, cursor::next);
+      assertEquals(history.size(), 6);
+    }
+  }
+
+  @Test
+  public void testTornRecordIsDropped() throws IOException {
+
+    Path directory = directories.create("sales");
+    try (MappedSaleHistory history = new MappedSaleHistory(directory)) {
+      history.add(new SoldAsset("AAPL", "Apple Inc.", "EQUITY", 1645000000, 139.96, 150, 5));
+      history.add(new SoldAsset("AAPL", "Apple Inc.", "EQUITY", 1645000100, 139.96, 155, 5));
+    }
+
+    // damage the amount of the last record
+    try (FileChannel channel = FileChannel.open(directory.resolve(MappedSaleHistory.SALES_FILE),
+        StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4}),
+          16 + 2 * MappedSaleHistory.RECORD_SIZE - 4);
+    }
+
+    try (MappedSaleHistory history = new MappedSaleHistory(directory)) {
+      assertEquals(history.size(), 1);
+      assertEquals(history.get(0).getPriceSold(), 150.0);
+    }
+  }
+
+  @Test
+  public void testJournalLeavesSalesToPersistentHistory() throws IOException {
+
+    Path directory = directories.create("journal");
+    try (TransactionJournal journal = new TransactionJournal(directory);
+        MappedSaleHistory history = new MappedSaleHistory(directory)) {
+      Portfolio portfolio = journal.recover(history);
+      portfolio.getSoldAssets().add(
+          new SoldAsset("NVDA", "NVIDIA Corporation", "EQUITY", 1645000200, 152.77, 250, 12));
+      // default assets and funds are journaled, the sale is not
+      assertEquals(journal.getLastSequence(), 5);
+      journal.snapshot();
+    }
+
+    try (TransactionJournal journal = new TransactionJournal(directory);
+        MappedSaleHistory history = new MappedSaleHistory(directory)) {
+      Portfolio portfolio = journal.recover(history);
+      assertEquals(portfolio.getSoldAssets().size(), 1);
+      assertEquals(portfolio.getSalesInRange(0, Long.MAX_VALUE).get(0).getAmount(), 12.0);
+      assertEquals(portfolio.getStock().size(), 3);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.testng.annotations.Test;
+
+public class PortfolioAnalyticsTest {
+
+  @Test
+  public void testCurvesOfHoldingsAndSales() {
+
+    Portfolio portfolio = new Portfolio(false, new HeapSaleHistory());
+    portfolio.getStock().add(new Asset("AAA", "Triple A", "EQUITY", 150, 11, 2));
+    portfolio.getStock().add(new Asset("BBB", "Triple B", "EQUITY", 150, 5, 1));
+    portfolio.getSoldAssets().add(new SoldAsset("AAA", "Triple A", "EQUITY", 320, 10, 12, 1));
+
+    Map<String, List<AssetQuote>> history = Map.of("AAA", List.of(
+        new AssetQuote("AAA", "Triple A", "EQUITY", 50, 10),
+        new AssetQuote("AAA", "Triple A", "EQUITY", 250, 12),
+        new AssetQuote("AAA", "Triple A", "EQUITY", 350, 9)));
+
+    PortfolioAnalytics.Curves curves = new PortfolioAnalytics(null, null)
+        .analyse(portfolio, history, new long[] {100, 200, 300, 400});
+
+    // sold amount is held until its sale, the lot from its purchase
+    assertEquals(curves.getValue(), new double[] {10, 30, 36, 18});
+    assertEquals(curves.getProfitAndLoss(), new double[] {0, -2, 4, -2});
+    assertEquals(curves.getProfitAndLoss("AAA"), curves.getProfitAndLoss());
+    assertEquals(curves.getMissingSymbols(), List.of("BBB"));
+
+    double[] returns = curves.getReturns();
+    assertEquals(returns[1], -0.2, 1e-12);
+    assertEquals(returns[2], 0.2, 1e-12);
+    assertEquals(returns[3], -1.0 / 6, 1e-12);
+    double mean = (returns[1] + returns[2] + returns[3]) / 3;
+    double variance = (Math.pow(returns[1] - mean, 2) + Math.pow(returns[2] - mean, 2)
+        + Math.pow(returns[3] - mean, 2)) / 2;
+    assertEquals(curves.getVolatility(), Math.sqrt(variance), 1e-12);
+    assertEquals(curves.getMaxDrawdown(), 6.0);
+  }
+
+  @Test
+  public void testParallelRunGivesSameCurves() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(9);
+    Portfolio portfolio = new Portfolio(false, new HeapSaleHistory());
+    long start = SimulatedQuoteProvider.START_TIME_STAMP;
+    for (int i = 0; i < 2000; i++) {
+      String symbol = "S" + (i % 40);
+      portfolio.getStock().add(new Asset(symbol, symbol, "EQUITY", start + i * 3_000L,
+          100 + i % 7, 1 + i % 3));
+      if (i % 10 == 0) {
+        portfolio.getSoldAssets().add(new SoldAsset(symbol, symbol, "EQUITY",
+            start + i * 3_100L, 100, 104, 1));
+      }
+    }
+
+    long end = start + 10_000 * 900L;
+    PortfolioAnalytics.Curves sequential = new PortfolioAnalytics(provider, null)
+        .analyse(portfolio, "15m", start, end);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      PortfolioAnalytics.Curves parallel = new PortfolioAnalytics(provider, pool)
+          .analyse(portfolio, "15m", start, end);
+
+      assertEquals(parallel.getTimeStamps().length, 10_000);
+      assertEquals(parallel.getSymbols().size(), 40);
+      assertEquals(parallel.getValue(), sequential.getValue());
+      assertEquals(parallel.getProfitAndLoss(), sequential.getProfitAndLoss());
+      assertEquals(parallel.getVolatility(), sequential.getVolatility());
+      assertEquals(parallel.getMaxDrawdown(), sequential.getMaxDrawdown());
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class PortfolioTest {
+
+  @Test
+  public void testSymbolIndexFollowsListChanges() {
+
+    Portfolio portfolio = new Portfolio();
+    Asset apple = new Asset("AAPL", "Apple Inc.", "EQUITY", 1625487172, 100, 5);
+
+    // assets added straight to the list are indexed too
+    portfolio.getStock().add(apple);
+    assertEquals(portfolio.getLots("AAPL").size(), 2);
+    assertEquals(portfolio.getAmount("AAPL"), 25.0);
+    Asset last = portfolio.getStock().get(portfolio.getStock().size() - 1);
+    assertEquals(last.getAssetSymbol(), "AAPL");
+    assertEquals(last.getPriceBought(), 100.0);
+    assertTrue(portfolio.getStock().contains(apple));
+
+    // views write through to the portfolio
+    last.setAmount(2);
+    assertEquals(portfolio.getAmount("AAPL"), 22.0);
+    assertEquals(apple.getAmount(), 5.0);
+
+    assertTrue(portfolio.getStock().remove(last));
+    assertFalse(portfolio.getStock().remove(apple));
+    assertEquals(last.getAmount(), 2.0);
+    assertEquals(portfolio.getLots("AAPL").size(), 1);
+    assertEquals(portfolio.getAmount("AAPL"), 20.0);
+
+    // removing last asset of a symbol removes its name and type
+    Iterator<Asset> iterator = portfolio.getStock().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getAssetSymbol().equals("TSLA")) {
+        iterator.remove();
+      }
+    }
+    assertTrue(portfolio.getLots("TSLA").isEmpty());
+    assertFalse(portfolio.getAssetsInPortfolio().containsKey("TSLA"));
+    assertFalse(portfolio.getAllAssetNames().contains("Tesla, Inc."));
+    assertFalse(portfolio.getSymbolFullName().containsKey("Tesla, Inc."));
+    assertEquals(portfolio.getStock().size(), 2);
+
+    // indexes follow the removal, AAPL was bought before NVDA
+    assertEquals(portfolio.getStock().get(0).getAssetSymbol(), "AAPL");
+    assertEquals(portfolio.getStock().get(1).getAssetSymbol(), "NVDA");
+    assertEquals(portfolio.getStock().remove(0).getAssetSymbol(), "AAPL");
+    assertEquals(portfolio.getStock().get(0).getAssetSymbol(), "NVDA");
+  }
+
+  @Test
+  public void testAddAssetChoosesListByType() {
+
+    Portfolio portfolio = new Portfolio();
+    portfolio.addAsset(new Asset("ETH-USD", "Ethereum USD", "CRYPTOCURRENCY", 1645000000, 3000, 1));
+    portfolio.addAsset(new Asset("ZS", "Zscaler, Inc.", "EQUITY", 1645000000, 250, 2));
+
+    assertEquals(portfolio.getCrypto().size(), 2);
+    assertEquals(portfolio.getStock().size(), 4);
+    assertEquals(portfolio.getAssetsInPortfolio().get("ETH-USD"), "CRYPTOCURRENCY");
+    assertEquals(portfolio.getValuation().getSymbols().size(), 6);
+    assertEquals(List.copyOf(portfolio.getLotsBySymbol().get("ZS")).get(0).getAmount(), 2.0);
+  }
+
+  @Test
+  public void testPurchasesAndSalesInRange() {
+
+    Portfolio portfolio = new Portfolio();
+    Asset apple = new Asset("AAPL", "Apple Inc.", "EQUITY", 1625504400, 150, 1);
+    portfolio.addAsset(apple);
+    portfolio.getSoldAssets().add(
+        new SoldAsset("TSLA", "Tesla, Inc.", "EQUITY", 1645000000, 775.22, 900, 2));
+    portfolio.getSoldAssets().add(
+        new SoldAsset("NVDA", "NVIDIA Corporation", "EQUITY", 1640000000, 152.77, 250, 1));
+
+    // NVDA 1618419600, AAPL 1625504400 (two lots), TSLA 1633107600
+    List<Asset> purchases = portfolio.getPurchasesInRange(1618419600, 1625504400);
+    assertEquals(purchases.size(), 3);
+    assertEquals(purchases.get(0).getAssetSymbol(), "NVDA");
+    assertEquals(purchases.get(2).getPriceBought(), 150.0);
+
+    assertTrue(portfolio.removeAsset(apple));
+    assertEquals(portfolio.getPurchasesInRange(1618419600, 1625504400).size(), 2);
+    assertTrue(portfolio.getPurchasesInRange(1625504400, 1618419600).isEmpty());
+
+    List<SoldAsset> sales = portfolio.getSalesInRange(0, Long.MAX_VALUE);
+    assertEquals(sales.size(), 2);
+    assertEquals(sales.get(0).getAssetSymbol(), "NVDA");
+    assertEquals(portfolio.getSalesInRange(1640000001, 1645000000).size(), 1);
+  }
+}
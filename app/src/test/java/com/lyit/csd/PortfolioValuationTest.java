@@ -0,0 +1,68 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class PortfolioValuationTest {
+
+  @Test
+  public void testValueFollowsPurchasesSalesAndPrices() {
+
+    PortfolioValuation valuation = new PortfolioValuation();
+    valuation.recordPurchase("AAPL", 10, 100);
+    valuation.recordPurchase("AAPL", 10, 120);
+    valuation.recordPurchase("TSLA", 2, 700);
+
+    // purchase price is the last known price of a new symbol
+    assertEquals(valuation.getMarketValue(), 20 * 100 + 2 * 700, 1e-9);
+    assertEquals(valuation.getCostBasis("AAPL"), 2200, 1e-9);
+
+    // unchanged price is not applied again
+    assertTrue(valuation.updatePrice("AAPL", 150));
+    assertFalse(valuation.updatePrice("AAPL", 150));
+    assertEquals(valuation.getMarketValue(), 20 * 150 + 2 * 700, 1e-9);
+
+    int changed = valuation.updatePrices(List.of(
+        new AssetQuote("AAPL", "Apple Inc.", "EQUITY", 1645000000, 150),
+        new AssetQuote("TSLA", "Tesla, Inc.", "EQUITY", 1645000000, 800),
+        new AssetQuote("NVDA", "NVIDIA Corporation", "EQUITY", 1645000000, 200)));
+    assertEquals(changed, 1);
+    assertEquals(valuation.getMarketValue(), 20 * 150 + 2 * 800, 1e-9);
+
+    // fully sold symbol is dropped
+    valuation.recordSale("TSLA", 2, 1400);
+    assertEquals(valuation.getSymbols(), List.of("AAPL"));
+    assertEquals(valuation.getMarketValue(), 20 * 150, 1e-9);
+    assertEquals(valuation.getCostBasis(), 2200, 1e-9);
+  }
+
+  @Test
+  public void testSaleIsCheckedAgainstLotsHeld() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("ETH-USD", "Ethereum USD", "CRYPTOCURRENCY", 3000);
+    User user = new User(provider);
+    Portfolio portfolio = user.getUserPortfolio();
+    portfolio.addAsset(
+        new Asset("ETH-USD", "Ethereum USD", "CRYPTOCURRENCY", 1640000000, 2000, 0.1));
+    portfolio.addAsset(
+        new Asset("ETH-USD", "Ethereum USD", "CRYPTOCURRENCY", 1641000000, 3000, 0.7));
+    portfolio.addAsset(
+        new Asset("ETH-USD", "Ethereum USD", "CRYPTOCURRENCY", 1642000000, 3100, 0.3));
+    assertTrue(user.sellAsset("ETH-USD", 0.1));
+
+    // running amount has drifted below the 0.7 + 0.3 still held
+    assertTrue(portfolio.getValuation().getAmount("ETH-USD") < 1.0);
+    assertEquals(portfolio.getAmount("ETH-USD"), 1.0);
+    assertFalse(user.sellAsset("ETH-USD", 1.0000001));
+
+    // everything held is sold, no lot is left behind
+    assertTrue(user.sellAsset("ETH-USD", 1.0));
+    assertTrue(portfolio.getLots("ETH-USD").isEmpty());
+    assertEquals(portfolio.getValuation().getAmount("ETH-USD"), 0.0);
+  }
+}
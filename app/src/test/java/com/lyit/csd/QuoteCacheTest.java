@@ -0,0 +1,72 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.Test;
+
+public class QuoteCacheTest {
+
+  AtomicLong now = new AtomicLong();
+  List<Collection<String>> loads = new ArrayList<>();
+
+  // loader which knows every symbol except LYIT
+  QuoteCache.Loader loader = symbols -> {
+    loads.add(symbols);
+    Map<String, AssetQuote> result = new LinkedHashMap<>();
+    for (String symbol : symbols) {
+      if (!symbol.equals("LYIT")) {
+        result.put(symbol, new AssetQuote(symbol, symbol + " Inc.", "EQUITY", 1645000000, 10));
+      }
+    }
+    return result;
+  };
+
+  @Test
+  public void testFreshQuotesServedFromMemory() throws IOException, InterruptedException {
+
+    QuoteCache cache = new QuoteCache(Duration.ofSeconds(15), 10, now::get);
+
+    Map<String, AssetQuote> first = cache.getQuotes(List.of("aapl", "TSLA", "LYIT"), loader);
+    assertEquals(first.keySet(), List.of("AAPL", "TSLA"));
+    assertEquals(loads.size(), 1);
+
+    // same symbols again within time to live, only unknown symbol is asked again
+    now.addAndGet(Duration.ofSeconds(14).toNanos());
+    cache.getQuotes(List.of("AAPL", "TSLA", "LYIT"), loader);
+    assertEquals(loads.size(), 2);
+    assertEquals(loads.get(1), List.of("LYIT"));
+    assertEquals(cache.getHitCount(), 2);
+    assertEquals(cache.getMissCount(), 4);
+
+    // expired quotes are loaded again
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    assertNull(cache.get("AAPL"));
+    cache.getQuotes(List.of("AAPL"), loader);
+    assertEquals(loads.size(), 3);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedQuoteEvicted() throws IOException, InterruptedException {
+
+    QuoteCache cache = new QuoteCache(Duration.ofSeconds(15), 2, now::get);
+
+    cache.getQuotes(List.of("AAPL", "TSLA"), loader);
+    // touch AAPL, so TSLA is least recently used
+    cache.get("AAPL");
+    cache.getQuotes(List.of("NVDA"), loader);
+
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.getEvictionCount(), 1);
+    assertNull(cache.get("TSLA"));
+    assertEquals(cache.get("AAPL").getAssetSymbol(), "AAPL");
+  }
+}
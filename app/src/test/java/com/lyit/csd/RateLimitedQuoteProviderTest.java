@@ -0,0 +1,103 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import com.lyit.csd.QuoteProvider.Priority;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.Test;
+
+public class RateLimitedQuoteProviderTest {
+
+  AtomicLong now = new AtomicLong();
+  SimulatedQuoteProvider simulator = new SimulatedQuoteProvider(3);
+
+  @Test
+  public void testTradeServedBeforeQueuedReport() {
+
+    RateLimitedQuoteProvider provider =
+        new RateLimitedQuoteProvider(simulator, 1, 100, 10, 16, now::get);
+
+    // token of this second is taken by the first report, later lookups wait
+    assertEquals(provider.getQuotesAsync(List.of("AAPL")).join().size(), 1);
+    CompletableFuture<Map<String, AssetQuote>> report = provider.getQuotesAsync(List.of("MSFT"));
+    CompletableFuture<Map<String, AssetQuote>> trade =
+        provider.getQuotesAsync(List.of("TSLA"), Priority.TRADE);
+    assertEquals(provider.getQueuedCount(Priority.REPORT), 1);
+    assertEquals(provider.getQueuedCount(Priority.TRADE), 1);
+    assertEquals(provider.getRemainingDailyQuota(), 97);
+
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    provider.drain();
+    assertEquals(trade.join().keySet(), List.of("TSLA"));
+    assertFalse(report.isDone());
+
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    provider.drain();
+    assertEquals(report.join().keySet(), List.of("MSFT"));
+    assertEquals(provider.getQueuedCount(Priority.REPORT), 0);
+    assertEquals(provider.getShedCount(), 0);
+  }
+
+  @Test
+  public void testReportsShedToKeepTradeReserve() throws Exception {
+
+    RateLimitedQuoteProvider provider =
+        new RateLimitedQuoteProvider(simulator, 100, 13, 10, 16, now::get);
+
+    // eleven symbols need two requests of the quote endpoint
+    List<String> symbols = List.of("A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K");
+    assertEquals(provider.getQuotes(symbols).size(), 11);
+    provider.getQuotes(List.of("AAPL"));
+    assertEquals(provider.getRemainingDailyQuota(), 10);
+
+    QuotaExceededException shed =
+        expectThrows(QuotaExceededException.class, () -> provider.getQuotes(List.of("AAPL")));
+    assertEquals(shed.getPriority(), Priority.REPORT);
+    assertEquals(shed.getRemainingDailyQuota(), 10);
+
+    // reserve is left for trades until the quota of the day is used up
+    for (int i = 0; i < 10; i++) {
+      provider.getQuotes(List.of("TSLA"), Priority.TRADE);
+    }
+    QuotaExceededException refused = expectThrows(QuotaExceededException.class,
+        () -> provider.getQuotes(List.of("TSLA"), Priority.TRADE));
+    assertEquals(refused.getPriority(), Priority.TRADE);
+    assertEquals(refused.getRemainingDailyQuota(), 0);
+    assertEquals(provider.getShedCount(), 2);
+  }
+
+  @Test
+  public void testReportsShedWhenQueueFull() {
+
+    RateLimitedQuoteProvider provider =
+        new RateLimitedQuoteProvider(simulator, 1, 100, 10, 1, now::get);
+
+    provider.getQuotesAsync(List.of("AAPL")).join();
+    CompletableFuture<Map<String, AssetQuote>> queued = provider.getQuotesAsync(List.of("MSFT"));
+    CompletableFuture<Map<String, AssetQuote>> shed = provider.getQuotesAsync(List.of("NVDA"));
+    CompletableFuture<Map<String, AssetQuote>> trade =
+        provider.getQuotesAsync(List.of("TSLA"), Priority.TRADE);
+
+    assertTrue(expectThrows(Exception.class, shed::join).getCause()
+        instanceof QuotaExceededException);
+    assertFalse(trade.isDone());
+    // quota of a shed lookup is not taken
+    assertEquals(provider.getRemainingDailyQuota(), 97);
+
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    provider.drain();
+    assertEquals(trade.join().size(), 1);
+    assertFalse(queued.isDone());
+
+    now.addAndGet(Duration.ofSeconds(1).toNanos());
+    provider.drain();
+    assertEquals(queued.join().size(), 1);
+  }
+}
@@ -0,0 +1,52 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class ReplayQuoteProviderTest {
+
+  TempDirectories directories = new TempDirectories();
+
+  @AfterMethod
+  public void deleteDirectories() throws IOException {
+    directories.deleteAll();
+  }
+
+  private static String response(String symbol, double price) {
+    return "{\"quoteResponse\":{\"result\":[{\"symbol\":\"" + symbol + "\",\"shortName\":\""
+        + symbol + " Inc.\",\"quoteType\":\"EQUITY\",\"regularMarketTime\":1645000000"
+        + ",\"regularMarketPrice\":" + price + "}],\"error\":null}}";
+  }
+
+  @Test
+  public void testReplaysRecordedQuotesInOrder() throws IOException, InterruptedException {
+
+    Path directory = directories.create("replay");
+    Files.writeString(directory.resolve("2.json"), response("AAPL", 151));
+    Files.writeString(directory.resolve("1.json"), response("AAPL", 150));
+    Files.writeString(directory.resolve("3.json"), response("TSLA", 800));
+    Files.writeString(directory.resolve("notes.txt"), "not a response", StandardCharsets.UTF_8);
+
+    ReplayQuoteProvider provider = ReplayQuoteProvider.fromDirectory(directory);
+    assertEquals(List.copyOf(provider.getRecordedSymbols()), List.of("AAPL", "TSLA"));
+
+    Map<String, AssetQuote> quotes = provider.getQuotes(List.of("aapl", "MSFT", "TSLA"));
+    assertEquals(quotes.keySet(), List.of("AAPL", "TSLA"));
+    assertEquals(quotes.get("AAPL").getLivePrice(), 150.0);
+
+    // second request takes next recording, third starts again
+    assertEquals(provider.getQuotes(List.of("AAPL")).get("AAPL").getLivePrice(), 151.0);
+    assertEquals(provider.getQuotesAsync(List.of("AAPL")).join().get("AAPL").getLivePrice(),
+        150.0);
+    assertTrue(provider.getQuotes(List.of("MSFT")).isEmpty());
+  }
+}
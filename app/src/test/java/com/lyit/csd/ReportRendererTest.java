@@ -0,0 +1,72 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.testng.annotations.Test;
+
+public class ReportRendererTest {
+
+  @Test
+  public void testNumberFormatting() throws IOException {
+
+    StringBuilder out = new StringBuilder();
+    ReportRenderer renderer = new ReportRenderer(out);
+
+    renderer.money(1234.5);
+    out.append(' ');
+    renderer.money(-0.004);
+    out.append(' ');
+    renderer.money(-12.345);
+    out.append(' ');
+    renderer.amount(20);
+    out.append(' ');
+    renderer.amount(0.0445881);
+    out.append(' ');
+    renderer.integer(Long.MIN_VALUE);
+    out.append(' ');
+    renderer.money(Double.NaN);
+    out.append(' ');
+    renderer.money(1.5e11);
+    out.append(' ');
+    renderer.amount(9e10);
+
+    assertEquals(out.toString(), "1234.50 0.00 -12.35 20.0 0.0445881 -9223372036854775808 NaN"
+        + " 150000000000.00 90000000000.0");
+  }
+
+  @Test
+  public void testRowsWrittenToWriter() throws IOException {
+
+    StringWriter out = new StringWriter();
+    ReportRenderer renderer = new ReportRenderer(out);
+
+    renderer.purchase("Apple Inc.", 139.96, 150);
+    renderer.sale(new SoldAsset("TSLA", "Tesla, Inc.", "EQUITY", 1645000000, 800, 760, 1));
+
+    assertEquals(out.toString(), "\nAsset Name     : Apple Inc."
+        + "\nPrice Bought   : 139.96"
+        + "\nLive Price     : 150.00"
+        + "\nDifference USD : 10.04"
+        + "\nDifference %   : 7\n"
+        + "\nAsset Name         : Tesla, Inc."
+        + "\nAvg Purchase Price : 800.00"
+        + "\nSale price         : 760.00"
+        + "\nDifference USD     : -40.00"
+        + "\nDifference %       : -5\n");
+  }
+
+  @Test
+  public void testChangeFromZeroPriceHasNoPercentage() throws IOException {
+
+    StringBuilder out = new StringBuilder();
+    new ReportRenderer(out).purchase("Gift", 0, 150);
+
+    assertEquals(out.toString(), "\nAsset Name     : Gift"
+        + "\nPrice Bought   : 0.00"
+        + "\nLive Price     : 150.00"
+        + "\nDifference USD : 150.00"
+        + "\nDifference %   : n/a\n");
+  }
+}
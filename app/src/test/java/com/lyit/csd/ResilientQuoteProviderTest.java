@@ -0,0 +1,178 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import com.lyit.csd.QuoteProvider.Priority;
+import com.lyit.csd.ResilientQuoteProvider.State;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ResilientQuoteProviderTest {
+
+  AtomicLong now;
+  ScriptedProvider scripted;
+
+  @BeforeMethod
+  public void setUp() {
+    now = new AtomicLong();
+    scripted = new ScriptedProvider();
+  }
+
+  @Test
+  public void testFailedRequestsAreRetried() throws Exception {
+
+    ResilientQuoteProvider provider = new ResilientQuoteProvider(scripted, 3,
+        Duration.ofMillis(1), 5, Duration.ofSeconds(30));
+    scripted.failures.add(new HttpTimeoutException("request timed out"));
+    scripted.failures.add(new ApiResponseException(503, "/v6/finance/quote"));
+
+    assertEquals(provider.getQuotes(List.of("AAPL")).keySet(), List.of("AAPL"));
+    assertEquals(scripted.calls.get(), 3);
+    assertEquals(provider.getRetryCount(), 2);
+    assertEquals(provider.getState(), State.CLOSED);
+  }
+
+  @Test
+  public void testRefusalIsNotRetried() {
+
+    ResilientQuoteProvider provider = new ResilientQuoteProvider(scripted, 3,
+        Duration.ofMillis(1), 1, Duration.ofSeconds(30));
+    scripted.failures.add(new QuotaExceededException("quota used up", Priority.TRADE, 0));
+    scripted.failures.add(new ApiResponseException(401, "/v6/finance/quote"));
+
+    expectThrows(QuotaExceededException.class,
+        () -> provider.getQuotes(List.of("AAPL"), Priority.TRADE));
+    ApiResponseException refused = expectThrows(ApiResponseException.class,
+        () -> provider.getQuotes(List.of("AAPL")));
+    assertEquals(refused.getStatusCode(), 401);
+    assertEquals(scripted.calls.get(), 2);
+    assertEquals(provider.getRetryCount(), 0);
+    // api is not to blame, circuit stays closed even with threshold of one
+    assertEquals(provider.getState(), State.CLOSED);
+  }
+
+  @Test
+  public void testOpenCircuitFailsFastAndServesLastKnownReports() throws Exception {
+
+    ResilientQuoteProvider provider = new ResilientQuoteProvider(scripted, 1,
+        Duration.ofMillis(1), 2, Duration.ofSeconds(30), Duration.ofSeconds(1), now::get);
+    AssetQuote known = provider.getQuotes(List.of("AAPL")).get("AAPL");
+
+    scripted.failure = new IOException("connection reset");
+    assertStale(provider.getQuotes(List.of("aapl")).get("AAPL"), known);
+    expectThrows(IOException.class, () -> provider.getQuotes(List.of("AAPL"), Priority.TRADE));
+    assertEquals(provider.getState(), State.OPEN);
+
+    // no request is made while the circuit is open, trades fail and reports get old quotes
+    int calls = scripted.calls.get();
+    expectThrows(CircuitOpenException.class,
+        () -> provider.getQuotes(List.of("AAPL"), Priority.TRADE));
+    assertStale(provider.getQuotes(List.of("AAPL")).get("AAPL"), known);
+    expectThrows(CircuitOpenException.class, () -> provider.getQuotes(List.of("AAPL", "MSFT")));
+    assertEquals(scripted.calls.get(), calls);
+    assertEquals(provider.getFallbackCount(), 2);
+
+    // one request is let through after the open time, its success closes the circuit
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    scripted.failure = null;
+    assertEquals(provider.getQuotes(List.of("MSFT"), Priority.TRADE).size(), 1);
+    assertEquals(provider.getState(), State.CLOSED);
+  }
+
+  @Test
+  public void testStaleReportDoesNotPriceTrade() throws Exception {
+
+    ResilientQuoteProvider provider = new ResilientQuoteProvider(scripted, 1,
+        Duration.ofMillis(1), 5, Duration.ofSeconds(30), Duration.ofSeconds(1), now::get);
+    User user = new User(provider, new QuoteCache());
+    provider.getQuotes(List.of("AAPL"), Priority.TRADE);
+
+    // report during the outage gets the last known quote, it is not cached for the trade after it
+    scripted.failure = new IOException("connection reset");
+    assertTrue(user.lookupAssets(List.of("AAPL")).get(0).getQuotes().get(0).isStale());
+    assertEquals(provider.getFallbackCount(), 1);
+    expectThrows(IOException.class, () -> user.purchaseAsset("AAPL", 0.01));
+
+    // trade waits for a fresh quote
+    scripted.failure = null;
+    int calls = scripted.calls.get();
+    assertTrue(user.purchaseAsset("AAPL", 0.01));
+    assertEquals(scripted.calls.get(), calls + 1);
+  }
+
+  @Test
+  public void testSlowTradeIsHedged() throws Exception {
+
+    ResilientQuoteProvider provider = new ResilientQuoteProvider(scripted, 1,
+        Duration.ofMillis(1), 5, Duration.ofSeconds(30), Duration.ofMillis(20), System::nanoTime);
+    scripted.hanging.set(true);
+
+    // first request never answers, the hedge sent after the delay does
+    assertEquals(provider.getQuotes(List.of("AAPL"), Priority.TRADE).size(), 1);
+    assertEquals(scripted.calls.get(), 2);
+    assertEquals(provider.getHedgeCount(), 1);
+  }
+
+  /**
+   * Checks the quote is a stale copy of the known one.
+   */
+  private static void assertStale(AssetQuote quote, AssetQuote known) {
+    assertTrue(quote.isStale());
+    assertFalse(known.isStale());
+    assertEquals(quote.getAssetSymbol(), known.getAssetSymbol());
+    assertEquals(quote.getTimeStamp(), known.getTimeStamp());
+    assertEquals(quote.getLivePrice(), known.getLivePrice());
+  }
+
+  /**
+   * Provider which fails or hangs as scripted before it answers from the simulator.
+   */
+  private static final class ScriptedProvider implements QuoteProvider {
+
+    private final QuoteProvider simulator = new SimulatedQuoteProvider(3);
+    private final Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean hanging = new AtomicBoolean();
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile IOException failure;
+
+    @Override
+    public Map<String, AssetQuote> getQuotes(Collection<String> symbols)
+        throws IOException, InterruptedException {
+      try {
+        return getQuotesAsync(symbols).get();
+      } catch (ExecutionException e) {
+        throw ConnectionPort.unwrap(e);
+      }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, AssetQuote>> getQuotesAsync(Collection<String> symbols) {
+      calls.incrementAndGet();
+      if (hanging.getAndSet(false)) {
+        return new CompletableFuture<>();
+      }
+      IOException error = failures.poll();
+      if (error == null) {
+        error = failure;
+      }
+      return error != null ? CompletableFuture.failedFuture(error)
+          : simulator.getQuotesAsync(symbols);
+    }
+  }
+}
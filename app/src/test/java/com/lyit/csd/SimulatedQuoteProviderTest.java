@@ -0,0 +1,76 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import org.testng.annotations.Test;
+
+public class SimulatedQuoteProviderTest {
+
+  @Test
+  public void testSameSeedGivesSamePrices() throws IOException, InterruptedException {
+
+    SimulatedQuoteProvider first = new SimulatedQuoteProvider(7);
+    SimulatedQuoteProvider second = new SimulatedQuoteProvider(7);
+    first.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+
+    Map<String, AssetQuote> quotes = first.getQuotes(List.of("aapl", "BTC-USD", "AAPL"));
+    assertEquals(quotes.keySet(), List.of("AAPL", "BTC-USD"));
+    assertEquals(quotes.get("AAPL").getLivePrice(), 150.0);
+    assertEquals(quotes.get("AAPL").getAssetFullName(), "Apple Inc.");
+    assertEquals(quotes.get("BTC-USD").getAssetType(), "CRYPTOCURRENCY");
+
+    // every request moves the walk one step
+    for (int i = 0; i < 10; i++) {
+      double price = first.getQuotes(List.of("TSLA")).get("TSLA").getLivePrice();
+      assertEquals(second.getQuotes(List.of("TSLA")).get("TSLA").getLivePrice(), price);
+    }
+    AssetQuote moved = first.getQuotes(List.of("AAPL")).get("AAPL");
+    assertNotEquals(moved.getLivePrice(), 150.0);
+    assertTrue(Math.abs(moved.getLivePrice() - 150) <= 1.5 + 1e-9);
+    assertEquals(moved.getTimeStamp(),
+        SimulatedQuoteProvider.START_TIME_STAMP + SimulatedQuoteProvider.STEP_SECONDS);
+  }
+
+  @Test
+  public void testInjectedFailures() {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(1);
+    provider.setErrorRate(1);
+    expectThrows(IOException.class, () -> provider.getQuotes(List.of("AAPL")));
+
+    provider.setLatency(Duration.ofMillis(20));
+    CompletionException e = expectThrows(CompletionException.class,
+        () -> provider.getQuotesAsync(List.of("AAPL")).join());
+    assertTrue(e.getCause() instanceof IOException);
+    assertEquals(provider.getFailureCount(), 2);
+
+    provider.setErrorRate(0);
+    assertEquals(provider.getQuotesAsync(List.of("AAPL")).join().size(), 1);
+    assertEquals(provider.getRequestCount(), 3);
+  }
+
+  @Test
+  public void testUserTradesWithoutNetwork() throws IOException, InterruptedException {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 100);
+    User user = new User(provider);
+
+    assertTrue(user.purchaseAsset("AAPL", 10));
+    assertEquals(user.getAvailableFunds(), 9_000.0, 1e-9);
+    assertEquals(user.getUserPortfolio().getAmount("AAPL"), 30.0);
+
+    // quote is still fresh in the cache, so it is sold at the same price
+    assertTrue(user.sellAsset("AAPL", 5));
+    assertEquals(user.getAvailableFunds(), 9_500.0, 1e-9);
+    assertEquals(provider.getRequestCount(), 1);
+  }
+}
@@ -0,0 +1,66 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import org.testng.annotations.Test;
+
+public class SymbolDirectoryTest {
+
+  @Test
+  public void testResolveBySymbolNameAndPrefix() {
+
+    SymbolDirectory directory = new SymbolDirectory();
+    directory.put("AAPL", "Apple Inc.");
+    directory.put("AMAT", "Applied Materials, Inc.");
+    directory.put("APLE", "Apple Hospitality REIT, Inc.");
+
+    assertEquals(directory.resolve("aapl"), List.of("AAPL"));
+    assertEquals(directory.resolve(" APPLE INC. "), List.of("AAPL"));
+    // a whole word no longer matches every name sharing its first letters
+    assertEquals(directory.resolve("Applied"), List.of("AMAT"));
+    assertEquals(directory.resolve("Apple"), List.of("APLE", "AAPL"));
+    assertEquals(directory.resolve("Appl"), List.of("APLE", "AAPL", "AMAT"));
+    assertTrue(directory.resolve("Microsoft").isEmpty());
+    assertTrue(directory.resolve("").isEmpty());
+  }
+
+  @Test
+  public void testFuzzyMatchAndCompletion() {
+
+    SymbolDirectory directory = new SymbolDirectory();
+    directory.put("BTC-USD", "Bitcoin USD");
+    directory.put("TSLA", "Tesla, Inc.");
+    directory.put("TSM", "Taiwan Semiconductor Manufacturing Company Limited");
+
+    // one wrong character is forgiven for queries long enough
+    assertEquals(directory.resolve("Bitcoin-USD"), List.of("BTC-USD"));
+    assertEquals(directory.resolve("TSLL"), List.of("TSLA"));
+    assertTrue(directory.resolve("TSX").isEmpty());
+    assertEquals(directory.findFuzzy("TSX", 1), List.of("TSM"));
+
+    assertEquals(directory.complete("ts", 10), List.of("TSLA", "TSM"));
+    assertEquals(directory.complete("t", 10), List.of("TSLA", "TSM"));
+    assertEquals(directory.complete("t", 1), List.of("TSLA"));
+  }
+
+  @Test
+  public void testPortfolioKeepsDirectoryUpToDate() {
+
+    Portfolio portfolio = new Portfolio();
+    SymbolDirectory directory = portfolio.getSymbolDirectory();
+    assertEquals(directory.resolve("Tesla"), List.of("TSLA"));
+
+    portfolio.addAsset(new Asset("AMAT", "Applied Materials, Inc.", "EQUITY", 1645000000, 140, 5));
+    assertEquals(directory.resolve("Appl"), List.of("AAPL", "AMAT"));
+
+    // last lot of a symbol takes it out of the directory
+    assertTrue(portfolio.removeAsset(
+        new Asset("TSLA", "Tesla, Inc.", "EQUITY", 1633107600, 775.22, 10)));
+    assertTrue(directory.resolve("Tesla").isEmpty());
+    assertFalse(directory.remove("TSLA"));
+    assertEquals(directory.size(), 4);
+  }
+}
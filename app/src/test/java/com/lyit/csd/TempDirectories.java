@@ -0,0 +1,41 @@
+package com.lyit.csd;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Temporary directories made by a test class, deleted with all their files after every test.
+ */
+class TempDirectories {
+
+  private final List<Path> created = new ArrayList<>();
+
+  Path create(String prefix) throws IOException {
+    Path directory = Files.createTempDirectory(prefix);
+    created.add(directory);
+    return directory;
+  }
+
+  void deleteAll() throws IOException {
+    for (Path directory : created) {
+      if (!Files.exists(directory)) {
+        continue;
+      }
+      // files before the directories holding them
+      List<Path> paths;
+      try (Stream<Path> walk = Files.walk(directory)) {
+        paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+      }
+      for (Path path : paths) {
+        Files.deleteIfExists(path);
+      }
+    }
+    created.clear();
+  }
+}
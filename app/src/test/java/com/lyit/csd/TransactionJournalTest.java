@@ -0,0 +1,127 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class TransactionJournalTest {
+
+  TempDirectories directories = new TempDirectories();
+
+  @AfterMethod
+  public void deleteDirectories() throws IOException {
+    directories.deleteAll();
+  }
+
+  @Test
+  public void testRecoversFromSnapshotAndJournal() throws Exception {
+
+    Path directory = directories.create("journal");
+    try (TransactionJournal journal =
+        new TransactionJournal(directory, Duration.ofSeconds(1), 8)) {
+
+      // first start records the default assets and funds
+      Portfolio portfolio = journal.recover();
+      assertEquals(journal.getLastSequence(), 5);
+      assertEquals(portfolio.getFunds(), Portfolio.DEFAULT_FUNDS);
+
+      assertTrue(portfolio.reserveFunds(4500));
+      portfolio.addAsset(new Asset("ETH-USD", "Ethereum USD", "CRYPTOCURRENCY", 1645000000,
+          3000, 1.5));
+      portfolio.getStock().add(new Asset("AAPL", "Apple Inc.", "EQUITY", 1645000100, 150, 5));
+
+      // eighth record has a snapshot written in the background, which starts the journal again
+      journal.awaitBackground();
+      assertEquals(journal.getSnapshotSequence(), 8);
+      assertEquals(Files.size(directory.resolve(TransactionJournal.JOURNAL_FILE)), 0);
+
+      Asset tesla = portfolio.getLots("TSLA").iterator().next();
+      portfolio.changeAmount(tesla, 4);
+      portfolio.removeAsset(portfolio.getLots("NVDA").iterator().next());
+      portfolio.getSoldAssets().add(
+          new SoldAsset("NVDA", "NVIDIA Corporation", "EQUITY", 1645000200, 152.77, 250, 12));
+      portfolio.creditFunds(3000);
+      journal.sync();
+    }
+
+    try (TransactionJournal journal = new TransactionJournal(directory)) {
+      Portfolio recovered = journal.recover();
+
+      assertEquals(journal.getLastSequence(), 12);
+      assertEquals(journal.getRecordsSinceSnapshot(), 4);
+      assertEquals(recovered.getFunds(), 8500.0);
+      assertEquals(recovered.getAmount("TSLA"), 4.0);
+      assertEquals(recovered.getAmount("AAPL"), 25.0);
+      assertEquals(recovered.getAmount("ETH-USD"), 1.5);
+      assertTrue(recovered.getLots("NVDA").isEmpty());
+      assertEquals(recovered.getStock().size(), 3);
+      assertEquals(recovered.getCrypto().size(), 2);
+      assertEquals(recovered.getSoldAssets().size(), 1);
+      assertEquals(recovered.getSoldAssets().get(0).getPriceSold(), 250.0);
+    }
+  }
+
+  @Test
+  public void testTornRecordEndsJournal() throws IOException {
+
+    Path directory = directories.create("journal");
+    try (TransactionJournal journal = new TransactionJournal(directory)) {
+      journal.recover().addAsset(
+          new Asset("MSFT", "Microsoft Corporation", "EQUITY", 1645000000, 300, 2));
+    }
+
+    // cut the last record short, as if the process died while writing it
+    Path journalFile = directory.resolve(TransactionJournal.JOURNAL_FILE);
+    try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    try (TransactionJournal journal = new TransactionJournal(directory)) {
+      Portfolio recovered = journal.recover();
+      assertEquals(journal.getLastSequence(), 5);
+      assertTrue(recovered.getLots("MSFT").isEmpty());
+      assertEquals(recovered.getAmount("TSLA"), 10.0);
+
+      // new records continue after the last valid one
+      recovered.addAsset(new Asset("MSFT", "Microsoft Corporation", "EQUITY", 1645000000, 300, 1));
+      assertEquals(journal.getLastSequence(), 6);
+    }
+
+    try (TransactionJournal journal = new TransactionJournal(directory)) {
+      assertEquals(journal.recover().getAmount("MSFT"), 1.0);
+    }
+  }
+
+  @Test
+  public void testFundsSurviveCrashAfterPurchase() throws Exception {
+
+    Path directory = directories.create("journal");
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(3);
+    provider.addAsset("MSFT", "Microsoft Corporation", "EQUITY", 300);
+    double funds;
+    try (TransactionJournal journal = new TransactionJournal(directory)) {
+      User user = new User(provider, new QuoteCache(), journal.recover());
+      user.addFunds(500);
+      assertTrue(user.purchaseAsset("MSFT", 10));
+      assertTrue(user.sellAsset("TSLA", 4));
+      funds = user.getAvailableFunds();
+      journal.sync();
+
+      // process dies after the sync, the journal is opened again without closing it first
+      try (TransactionJournal restarted = new TransactionJournal(directory)) {
+        User recovered = new User(provider, new QuoteCache(), restarted.recover());
+        assertEquals(recovered.getAvailableFunds(), funds);
+        assertEquals(recovered.getUserPortfolio().getAmount("MSFT"), 10.0);
+        assertEquals(recovered.getUserPortfolio().getAmount("TSLA"), 6.0);
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.testng.annotations.Test;
+
+public class UserConcurrencyTest {
+
+  @Test
+  public void testPurchasesNeverSpendMoreThanFunds() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(5);
+    provider.addAsset("MSFT", "Microsoft Corporation", "EQUITY", 100);
+    User user = new User(provider);
+
+    // a purchase costs about 1000, so only about ten of them can be paid
+    int bought = runConcurrently(8, 5, () -> user.purchaseAsset("MSFT", 10));
+
+    double spent = 0;
+    for (Asset lot : user.getUserPortfolio().getLots("MSFT")) {
+      spent += lot.getPriceBought() * lot.getAmount();
+    }
+    assertTrue(user.getAvailableFunds() >= 0);
+    assertEquals(user.getAvailableFunds() + spent, 10_000, 1e-6);
+    assertEquals(user.getUserPortfolio().getLots("MSFT").size(), bought);
+  }
+
+  @Test
+  public void testSalesNeverSellMoreThanHeld() throws Exception {
+
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(5);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    provider.addAsset("TSLA", "Tesla, Inc.", "EQUITY", 900);
+    User user = new User(provider);
+    Portfolio portfolio = user.getUserPortfolio();
+
+    // default portfolio holds 20 AAPL and 10 TSLA, threads try to sell 40 of each
+    int sold = runConcurrently(8, 10,
+        () -> user.sellAsset(Thread.currentThread().getId() % 2 == 0 ? "AAPL" : "TSLA", 1));
+    int soldApple = 20 - (int) portfolio.getAmount("AAPL");
+    int soldTesla = 10 - (int) portfolio.getAmount("TSLA");
+
+    assertEquals(soldApple + soldTesla, sold);
+    assertEquals(portfolio.getSoldAssets().size(), sold);
+    assertTrue(portfolio.getAmount("AAPL") >= 0);
+    assertTrue(portfolio.getAmount("TSLA") >= 0);
+
+    double revenue = 0;
+    for (SoldAsset sale : portfolio.getSalesInRange(0, Long.MAX_VALUE)) {
+      revenue += sale.getPriceSold() * sale.getAmount();
+    }
+    assertEquals(user.getAvailableFunds(), 10_000 + revenue, 1e-6);
+  }
+
+  /**
+   * Runs a task on several threads at once.
+   *
+   * @param threads number of threads.
+   * @param times   times each thread runs the task.
+   * @param task    task returning true if it succeeded.
+   * @return number of successful runs.
+   */
+  private static int runConcurrently(int threads, int times, Callable<Boolean> task)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      results.add(executor.submit(() -> {
+        start.await();
+        int succeeded = 0;
+        for (int j = 0; j < times; j++) {
+          if (task.call()) {
+            succeeded++;
+          }
+        }
+        return succeeded;
+      }));
+    }
+
+    start.countDown();
+    int succeeded = 0;
+    for (Future<Integer> result : results) {
+      succeeded += result.get();
+    }
+    executor.shutdown();
+    return succeeded;
+  }
+}
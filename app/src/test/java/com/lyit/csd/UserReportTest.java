@@ -0,0 +1,61 @@
+package com.lyit.csd;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.testng.annotations.Test;
+
+public class UserReportTest {
+
+  private static User newUser() {
+    SimulatedQuoteProvider provider = new SimulatedQuoteProvider(5, 0);
+    provider.addAsset("AAPL", "Apple Inc.", "EQUITY", 150);
+    provider.addAsset("TSLA", "Tesla, Inc.", "EQUITY", 800);
+    provider.addAsset("NVDA", "NVIDIA Corporation", "EQUITY", 200);
+    provider.addAsset("BTC-USD", "Bitcoin USD", "CRYPTOCURRENCY", 40000);
+    return new User(provider);
+  }
+
+  @Test
+  public void testStreamedReportsMatchStrings() throws IOException, InterruptedException {
+
+    User user = newUser();
+    user.getUserPortfolio().getSoldAssets().add(
+        new SoldAsset("TSLA", "Tesla, Inc.", "EQUITY", 1640000000, 700, 800, 1));
+
+    StringWriter investments = new StringWriter();
+    user.listAllInvestments(investments);
+    assertEquals(investments.toString().length(), user.listAllInvestments().length());
+    assertTrue(investments.toString().contains("\nAsset Symbol   : BTC-USD"));
+
+    StringWriter purchases = new StringWriter();
+    user.listPortfolioPurchasesInRange(0, Long.MAX_VALUE, purchases);
+    assertEquals(purchases.toString(), user.listPortfolioPurchasesInRange(0, Long.MAX_VALUE));
+
+    StringWriter sales = new StringWriter();
+    user.listPortfolioSalesInRange(0, Long.MAX_VALUE, sales);
+    assertEquals(sales.toString(), user.listPortfolioSalesInRange(0, Long.MAX_VALUE));
+    assertTrue(sales.toString().contains("Sale price         : 800.00"));
+  }
+
+  @Test
+  public void testPurchasesAreListedOldestFirst() throws IOException, InterruptedException {
+
+    User user = newUser();
+    StringBuilder out = new StringBuilder();
+
+    // BTC-USD 1612893600, NVDA 1618419600, AAPL 1625504400, TSLA 1633107600
+    user.listPortfolioPurchasesInRange(1612893600, 1625504400, out);
+    String report = out.toString();
+    assertTrue(report.indexOf("Bitcoin USD") < report.indexOf("NVIDIA Corporation"));
+    assertTrue(report.indexOf("NVIDIA Corporation") < report.indexOf("Apple Inc."));
+    assertEquals(report.indexOf("Tesla, Inc."), -1);
+    assertTrue(report.contains("\nPrice Bought   : 139.96\nLive Price     : 150.00"));
+
+    StringBuilder empty = new StringBuilder();
+    user.listPortfolioPurchasesInRange(1625504400, 1612893600, empty);
+    assertEquals(empty.length(), 0);
+  }
+}
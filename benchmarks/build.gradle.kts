@@ -0,0 +1,62 @@
+/*
+ * JMH benchmarks for the portfolio hot paths.
+ *
+ * Run all benchmarks with:   ./gradlew :benchmarks:jmh
+ * Run some of them with:     ./gradlew :benchmarks:jmh -Pjmh.includes=QuoteDecode
+ *
+ * Quotes come from a local stub server, so no API key or network is needed.
+ * Results are written to benchmarks/build/results/jmh/results.json.
+ */
+
+description = """
+    JMH benchmarks for the portfolio system
+"""
+
+
+plugins{
+    java
+
+    //JMH source set, runner and report
+    id("me.champeau.jmh") version "0.6.6"
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(16))
+    }
+}
+
+repositories{
+    mavenCentral()
+}
+
+dependencies{
+
+    //Benchmarked code
+    jmhImplementation(project(":app"))
+}
+
+jmh{
+    jmhVersion.set("1.35")
+
+    //Throughput and latency percentiles for every benchmark
+    benchmarkMode.set(listOf("thrpt", "sample"))
+    timeUnit.set("us")
+
+    //Allocation rate per operation
+    profilers.set(listOf("gc"))
+
+    //Short iterations, trade benchmarks rebuild their portfolio for every iteration
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("2s")
+    iterations.set(5)
+    timeOnIteration.set("2s")
+
+    //Machine readable results to track performance over time
+    resultFormat.set("JSON")
+
+    if (project.hasProperty("jmh.includes")) {
+        includes.set(listOf(project.property("jmh.includes").toString()))
+    }
+}
@@ -0,0 +1,78 @@
+package com.lyit.csd.benchmarks;
+
+import com.lyit.csd.AssetQuote;
+import com.lyit.csd.HeapSaleHistory;
+import com.lyit.csd.HistoryCache;
+import com.lyit.csd.Portfolio;
+import com.lyit.csd.PortfolioAnalytics;
+import com.lyit.csd.SimulatedQuoteProvider;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of portfolio analytics over the last 30 days of the generated year in 15 minute
+ * steps. Historic prices are made once by the simulator, so only the valuation is measured. The
+ * sequential run is the baseline the parallel runs are compared with.
+ */
+@State(Scope.Benchmark)
+public class PortfolioAnalyticsBenchmark {
+
+  @Param({"10000", "1000000"})
+  public int lots;
+
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  private ForkJoinPool pool;
+  private PortfolioAnalytics analytics;
+  private Portfolio portfolio;
+  private Map<String, List<AssetQuote>> history;
+  private long[] timeStamps;
+
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    portfolio = new Portfolio(new HeapSaleHistory());
+    SyntheticPortfolio.fill(portfolio, lots, 42);
+
+    long step = HistoryCache.intervalSeconds("15m");
+    long start = SyntheticPortfolio.END_TIME_STAMP - 30L * 24 * 60 * 60;
+    timeStamps = new long[(int) ((SyntheticPortfolio.END_TIME_STAMP - start) / step)];
+    for (int i = 0; i < timeStamps.length; i++) {
+      timeStamps[i] = start + i * step;
+    }
+
+    SimulatedQuoteProvider simulator = new SimulatedQuoteProvider(42);
+    history = new HashMap<>();
+    for (String symbol : portfolio.getLotsBySymbol().keySet()) {
+      history.put(symbol, simulator.getHistory(symbol, "15m", start - step,
+          SyntheticPortfolio.END_TIME_STAMP));
+    }
+
+    pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    analytics = new PortfolioAnalytics(simulator, pool);
+  }
+
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+
+  @Benchmark
+  public PortfolioAnalytics.Curves analyse() {
+    return analytics.analyse(portfolio, history, timeStamps);
+  }
+}
@@ -0,0 +1,96 @@
+package com.lyit.csd.benchmarks;
+
+import com.lyit.csd.AssetQuote;
+import com.lyit.csd.ConnectionPort;
+import com.lyit.csd.User;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of the PortfolioSystem operations which only read the portfolio. The user keeps its
+ * quote cache, like in the application, so most quotes come from the cache; fetchQuotes measures
+ * the request and decode path on its own.
+ */
+@State(Scope.Benchmark)
+public class PortfolioReadBenchmark {
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int lots;
+
+  private QuoteStubServer server;
+  private User user;
+  private long rangeStart;
+  private long rangeEnd;
+  private List<String> assetNames;
+
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    server = new QuoteStubServer();
+    server.install();
+    user = SyntheticPortfolio.createUser(lots, 42);
+
+    // one percent of the year in the middle of it
+    long length = SyntheticPortfolio.END_TIME_STAMP - SyntheticPortfolio.START_TIME_STAMP;
+    rangeStart = SyntheticPortfolio.START_TIME_STAMP + length / 2;
+    rangeEnd = rangeStart + length / 100;
+    assetNames = List.of("S01", "S02", "S03", "C01-USD");
+  }
+
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    server.stop();
+  }
+
+
+  @Benchmark
+  public double getPortfolioValue() {
+    return user.getPortfolioValue();
+  }
+
+
+  @Benchmark
+  public List<AssetQuote> getAssetInformation() {
+    return user.getAssetInformation(assetNames);
+  }
+
+
+  @Benchmark
+  public String listAllInvestments() {
+    return user.listAllInvestments();
+  }
+
+
+  @Benchmark
+  public String listPortfolioAssetsByType() throws IOException, InterruptedException {
+    return user.listPortfolioAssetsByType("EQUITY");
+  }
+
+
+  @Benchmark
+  public String listPortfolioPurchasesInRange() throws IOException, InterruptedException {
+    return user.listPortfolioPurchasesInRange(rangeStart, rangeEnd);
+  }
+
+
+  @Benchmark
+  public String listPortfolioSalesInRange() {
+    return user.listPortfolioSalesInRange(rangeStart, rangeEnd);
+  }
+
+
+  @Benchmark
+  public Map<String, AssetQuote> fetchQuotes() throws IOException, InterruptedException {
+    return ConnectionPort.requestQuotes(SyntheticPortfolio.symbols(), "benchmark-key",
+        server.getTransport());
+  }
+}
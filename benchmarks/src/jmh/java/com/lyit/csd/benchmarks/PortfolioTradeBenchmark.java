@@ -0,0 +1,66 @@
+package com.lyit.csd.benchmarks;
+
+import com.lyit.csd.SimulatedQuoteProvider;
+import com.lyit.csd.User;
+import java.io.IOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of the PortfolioSystem operations which change the portfolio. Every iteration starts
+ * from a newly generated portfolio, so lots added or sold in one iteration do not pile up. Quotes
+ * come from the local stub server or from the in-process price simulator.
+ */
+@State(Scope.Thread)
+public class PortfolioTradeBenchmark {
+
+  // a small amount, so a sale mostly changes one lot instead of removing it
+  private static final double SELL_AMOUNT = 0.001;
+
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int lots;
+
+  @Param({"stub", "simulated"})
+  public String quotes;
+
+  private QuoteStubServer server;
+  private User user;
+
+
+  @Setup(Level.Trial)
+  public void startServer() throws IOException {
+    server = new QuoteStubServer();
+    server.install();
+  }
+
+
+  @Setup(Level.Iteration)
+  public void createPortfolio() {
+    User empty = quotes.equals("simulated")
+        ? new User(new SimulatedQuoteProvider(42)) : new User("benchmark-key");
+    user = SyntheticPortfolio.createUser(empty, lots, 42);
+  }
+
+
+  @TearDown(Level.Trial)
+  public void stopServer() {
+    server.stop();
+  }
+
+
+  @Benchmark
+  public boolean sellAsset() throws IOException, InterruptedException {
+    return user.sellAsset("S01", SELL_AMOUNT);
+  }
+
+
+  @Benchmark
+  public boolean purchaseAsset() throws IOException, InterruptedException {
+    return user.purchaseAsset("S01", 1);
+  }
+}
@@ -0,0 +1,38 @@
+package com.lyit.csd.benchmarks;
+
+import com.lyit.csd.AssetQuote;
+import com.lyit.csd.ConnectionPort;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark of decoding quote endpoint responses of different sizes, without any network.
+ */
+@State(Scope.Benchmark)
+public class QuoteDecodeBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int quotes;
+
+  private byte[] body;
+
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    body = QuoteStubServer.quoteResponse(
+        SyntheticPortfolio.symbols().subList(0, quotes));
+  }
+
+
+  @Benchmark
+  public List<AssetQuote> parseQuotes() throws IOException {
+    return ConnectionPort.parseQuotes(new ByteArrayInputStream(body));
+  }
+}
@@ -0,0 +1,115 @@
+package com.lyit.csd.benchmarks;
+
+import com.lyit.csd.ConnectionPort;
+import com.lyit.csd.HttpTransport;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * QuoteStubServer class is a local HTTP server answering like the yahoo finance quote endpoint, so
+ * benchmarks run the whole request and decode path without an API key or network. Every symbol
+ * gets a fixed price, symbols ending with "-USD" are cryptocurrencies.
+ */
+public class QuoteStubServer {
+
+  private final HttpServer server;
+  private final HttpTransport transport;
+  private HttpTransport previousDefault;
+
+
+  /**
+   * Starts the server on a free local port.
+   *
+   * @throws IOException if the server can not be started.
+   */
+  public QuoteStubServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/" + ConnectionPort.QUOTE_ENDPOINT, exchange -> {
+      String query = exchange.getRequestURI().getRawQuery();
+      String symbols = query.substring(query.indexOf("symbols=") + "symbols=".length());
+      byte[] body = quoteResponse(Arrays.asList(
+          URLDecoder.decode(symbols, StandardCharsets.UTF_8).split(",")));
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+
+    URI baseUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    transport = new HttpTransport(baseUri, Duration.ofSeconds(2), Duration.ofSeconds(5), 8);
+  }
+
+
+  /**
+   * Makes the stub the default transport, so users created afterwards fetch quotes from it.
+   */
+  public void install() {
+    previousDefault = HttpTransport.getDefault();
+    HttpTransport.setDefault(transport);
+  }
+
+
+  /**
+   * Restores the previous default transport and stops the server.
+   */
+  public void stop() {
+    if (previousDefault != null) {
+      HttpTransport.setDefault(previousDefault);
+    }
+    server.stop(0);
+  }
+
+
+  public HttpTransport getTransport() {
+    return transport;
+  }
+
+
+  /**
+   * Returns fixed price of a symbol.
+   *
+   * @param symbol asset symbol.
+   * @return price in USD.
+   */
+  public static double priceOf(String symbol) {
+    return 50 + Math.floorMod(symbol.hashCode(), 500);
+  }
+
+
+  /**
+   * Builds quote endpoint response body for the symbols.
+   *
+   * @param symbols asset symbols.
+   * @return JSON body.
+   */
+  public static byte[] quoteResponse(List<String> symbols) {
+    StringBuilder body = new StringBuilder("{\"quoteResponse\":{\"result\":[");
+    for (int i = 0; i < symbols.size(); i++) {
+      String symbol = symbols.get(i);
+      if (i > 0) {
+        body.append(',');
+      }
+      body.append("{\"language\":\"en-US\",\"region\":\"US\"")
+          .append(",\"quoteType\":\"")
+          .append(symbol.endsWith("-USD") ? "CRYPTOCURRENCY" : "EQUITY").append('"')
+          .append(",\"currency\":\"USD\",\"marketState\":\"REGULAR\"")
+          .append(",\"shortName\":\"").append(SyntheticPortfolio.fullNameOf(symbol)).append('"')
+          .append(",\"regularMarketTime\":1645000000")
+          .append(",\"regularMarketPrice\":").append(priceOf(symbol))
+          .append(",\"regularMarketChange\":1.25,\"regularMarketChangePercent\":0.5")
+          .append(",\"regularMarketVolume\":1000000,\"exchange\":\"NMS\"")
+          .append(",\"symbol\":\"").append(symbol).append("\"}");
+    }
+    body.append("],\"error\":null}}");
+    return body.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
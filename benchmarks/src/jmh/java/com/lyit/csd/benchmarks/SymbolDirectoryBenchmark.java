@@ -0,0 +1,77 @@
+package com.lyit.csd.benchmarks;
+
+import com.lyit.csd.SymbolDirectory;
+import java.util.List;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of finding symbols by symbol, name, start of name and misspelt name in a directory of
+ * generated tickers with company like names.
+ */
+@State(Scope.Benchmark)
+public class SymbolDirectoryBenchmark {
+
+  private static final String[] WORDS = {"Apple", "Applied", "Global", "Micro", "Systems",
+      "Energy", "Holdings", "Capital", "Bio", "Therapeutics", "Semiconductor", "Networks",
+      "Pacific", "First", "United", "Digital", "Resources", "Financial", "Health", "Motors"};
+
+  @Param({"1000", "50000"})
+  public int tickers;
+
+  private SymbolDirectory directory;
+  private String symbol;
+  private String name;
+  private String prefix;
+  private String misspelt;
+
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    directory = new SymbolDirectory();
+    for (int i = 0; i < tickers; i++) {
+      StringBuilder ticker = new StringBuilder();
+      for (int k = i; ticker.length() < 4; k /= 26) {
+        ticker.append((char) ('A' + k % 26));
+      }
+      String company = WORDS[random.nextInt(WORDS.length)] + " "
+          + WORDS[random.nextInt(WORDS.length)] + " " + ticker + " Inc.";
+      directory.put(ticker.toString(), company);
+    }
+
+    symbol = "QRAA";
+    name = directory.getName(symbol);
+    prefix = name.substring(0, name.indexOf(' ') + 3);
+    misspelt = name.replace("Inc.", "Inc,");
+  }
+
+
+  @Benchmark
+  public List<String> resolveSymbol() {
+    return directory.resolve(symbol);
+  }
+
+
+  @Benchmark
+  public List<String> resolveName() {
+    return directory.resolve(name);
+  }
+
+
+  @Benchmark
+  public List<String> complete() {
+    return directory.complete(prefix, 10);
+  }
+
+
+  @Benchmark
+  public List<String> resolveMisspeltName() {
+    return directory.resolve(misspelt);
+  }
+}
@@ -0,0 +1,114 @@
+package com.lyit.csd.benchmarks;
+
+import com.lyit.csd.Asset;
+import com.lyit.csd.Portfolio;
+import com.lyit.csd.SoldAsset;
+import com.lyit.csd.User;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * SyntheticPortfolio class fills a user's portfolio with generated lots. Lots are spread over a
+ * fixed set of stock and crypto symbols and over one year of purchase times, one sale is recorded
+ * for every ten lots. The same seed always gives the same portfolio.
+ */
+public final class SyntheticPortfolio {
+
+  public static final int STOCK_SYMBOLS = 90;
+  public static final int CRYPTO_SYMBOLS = 10;
+  public static final long START_TIME_STAMP = 1609459200;
+  public static final long END_TIME_STAMP = START_TIME_STAMP + 365L * 24 * 60 * 60;
+
+  private static final List<String> SYMBOLS = new ArrayList<>();
+
+  static {
+    for (int i = 0; i < STOCK_SYMBOLS; i++) {
+      SYMBOLS.add(String.format("S%02d", i));
+    }
+    for (int i = 0; i < CRYPTO_SYMBOLS; i++) {
+      SYMBOLS.add(String.format("C%02d-USD", i));
+    }
+  }
+
+  private SyntheticPortfolio() {
+  }
+
+
+  /**
+   * Returns all generated symbols, stocks first.
+   *
+   * @return list of asset symbols.
+   */
+  public static List<String> symbols() {
+    return SYMBOLS;
+  }
+
+
+  /**
+   * Returns generated full name of a symbol.
+   *
+   * @param symbol asset symbol.
+   * @return asset full name.
+   */
+  public static String fullNameOf(String symbol) {
+    return symbol + " Holdings";
+  }
+
+
+  /**
+   * Creates a user with funds and a portfolio of generated lots.
+   *
+   * @param lots number of lots.
+   * @param seed random seed.
+   * @return new user fetching quotes through the default transport.
+   */
+  public static User createUser(int lots, long seed) {
+    return createUser(new User("benchmark-key"), lots, seed);
+  }
+
+
+  /**
+   * Fills portfolio of a user with generated lots and gives the user funds.
+   *
+   * @param user user to fill.
+   * @param lots number of lots.
+   * @param seed random seed.
+   * @return the same user.
+   */
+  public static User createUser(User user, int lots, long seed) {
+    user.addFunds(1e12);
+    fill(user.getUserPortfolio(), lots, seed);
+    return user;
+  }
+
+
+  /**
+   * Adds generated lots and sales to a portfolio.
+   *
+   * @param portfolio portfolio to fill.
+   * @param lots      number of lots.
+   * @param seed      random seed.
+   */
+  public static void fill(Portfolio portfolio, int lots, long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    long step = (END_TIME_STAMP - START_TIME_STAMP) / lots;
+
+    for (int i = 0; i < lots; i++) {
+      String symbol = SYMBOLS.get(random.nextInt(SYMBOLS.size()));
+      boolean crypto = symbol.endsWith("-USD");
+      double price = QuoteStubServer.priceOf(symbol) * (0.5 + random.nextDouble());
+      double amount = crypto ? random.nextDouble(0.01, 2) : 1 + random.nextInt(100);
+
+      // purchases mostly arrive in time order
+      portfolio.addAsset(new Asset(symbol, fullNameOf(symbol),
+          crypto ? "CRYPTOCURRENCY" : "EQUITY", START_TIME_STAMP + i * step, price, amount));
+
+      if (i % 10 == 0) {
+        portfolio.getSoldAssets().add(new SoldAsset(symbol, fullNameOf(symbol),
+            crypto ? "CRYPTOCURRENCY" : "EQUITY", START_TIME_STAMP + i * step, price,
+            QuoteStubServer.priceOf(symbol), amount));
+      }
+    }
+  }
+}
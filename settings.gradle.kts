@@ -15,6 +15,7 @@ rootProject.name = "Gradle Demo"
 println("In the settings.gradle.kts file - This is executable during initialisation phase")
 println("In the settings,gradle.kts file - Determine which project take part in the build")
 include("app")
+include("benchmarks")
 
 plugins {
   id("com.gradle.enterprise") version("3.9")